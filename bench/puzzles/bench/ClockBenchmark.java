@@ -0,0 +1,39 @@
+package puzzles.bench;
+
+import org.openjdk.jmh.annotations.*;
+import puzzles.common.solver.Configuration;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expanding Clock configurations, the cheapest states of all the puzzles, which makes
+ * this the baseline for the fixed cost of an expansion.
+ *
+ * @author Ashrith V. Mudundi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockBenchmark {
+    @Param({"clock-12-2-11", "clock-1000-42-722"})
+    public String puzzle;
+
+    private Configuration[] states;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        states = Fixtures.reachable(Fixtures.clock(puzzle), Samples.STATES);
+    }
+
+    @Benchmark
+    public Collection<Configuration> getNeighbors() {
+        int i = next;
+        next = i + 1 == states.length ? 0 : i + 1;
+        return states[i].getNeighbors();
+    }
+}
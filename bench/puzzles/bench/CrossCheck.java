@@ -0,0 +1,192 @@
+package puzzles.bench;
+
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Heuristic;
+import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverBudget;
+import puzzles.common.solver.SolverOptions;
+import puzzles.common.solver.SolverResult;
+import puzzles.tilt.model.TiltConfig;
+import puzzles.tilt.model.TiltHeuristic;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that the other search strategies agree with the breadth-first search on every
+ * puzzle the programs are checked against.
+ * <p>
+ *     Each puzzle of {@link Regression} is solved with the plain breadth-first search and
+ *     then with every strategy in {@link #STRATEGIES}, each made by its switch in
+ *     {@link SolverOptions} the way the programs make it. A strategy has to find a path
+ *     exactly as long as the breadth-first one, or none where that finds none, and every
+ *     path has to be a series of moves from the start to a solution. The puzzles in
+ *     {@link #UNSOLVABLE} have no solution, and every strategy has to say so rather than
+ *     run out of its budget; among them the iterative deepening search runs with a
+ *     transposition table far smaller than the configurations it has to rule out.
+ * </p>
+ * <p>
+ *     Every solve has --budget seconds ({@value #DEFAULT_BUDGET_SECONDS} by default). A
+ *     solve of a solvable puzzle that runs out of it is reported and left out, as a slow
+ *     strategy is not a wrong one; on an unsolvable puzzle it is a failure. The failures
+ *     are printed and the program exits with status 1.
+ * </p>
+ * <p>
+ *     Usage: java puzzles.bench.CrossCheck [--budget=seconds] [--only=regex]. It has to
+ *     run from the project directory, or with the puzzles.data and puzzles.output system
+ *     properties pointing at the data and output directories.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class CrossCheck {
+    /** how long a single solve may take */
+    public static final int DEFAULT_BUDGET_SECONDS = 60;
+
+    /** the strategies checked against the breadth-first search, by the switches that select them */
+    static final List<String> STRATEGIES = List.of("--bidirectional", "--astar", "--iddfs", "--frontier",
+            "--external", "--hash-compaction");
+
+    /**
+     * The puzzles without a solution, named like those of {@link Regression}, with the
+     * switches each strategy is run with on them.
+     */
+    static final Map<String, List<String>> UNSOLVABLE = Map.of(
+            "water-10-8-6-1", List.of("--bidirectional", "--astar", "--iddfs", "--iddfs=1024", "--frontier",
+                    "--external", "--hash-compaction"));
+
+    public static void main(String[] args) throws IOException {
+        Duration budget = Duration.ofSeconds(DEFAULT_BUDGET_SECONDS);
+        Pattern only = null;
+        for (String arg : args) {
+            if (arg.startsWith("--budget=")) {
+                budget = Duration.ofSeconds(Long.parseLong(arg.substring("--budget=".length())));
+            } else if (arg.startsWith("--only=")) {
+                only = Pattern.compile(arg.substring("--only=".length()));
+            } else {
+                System.out.println("Usage: java CrossCheck [--budget=seconds] [--only=regex]");
+                return;
+            }
+        }
+        List<String> failures = new ArrayList<>();
+        int checked = 0;
+        for (String puzzle : Regression.puzzles()) {
+            if (only == null || only.matcher(puzzle).find()) {
+                checkSolvable(puzzle, budget, failures);
+                checked++;
+            }
+        }
+        for (Map.Entry<String, List<String>> puzzle : new TreeMap<>(UNSOLVABLE).entrySet()) {
+            if (only == null || only.matcher(puzzle.getKey()).find()) {
+                checkUnsolvable(puzzle.getKey(), puzzle.getValue(), budget, failures);
+                checked++;
+            }
+        }
+        if (!failures.isEmpty()) {
+            System.out.println(failures.size() + " disagreement" + (failures.size() == 1 ? "" : "s") + ":");
+            failures.forEach(System.out::println);
+            System.exit(1);
+        }
+        System.out.println("Every strategy agreed on " + checked + " puzzles");
+    }
+
+    /**
+     * Solves a puzzle with the breadth-first search and then with every strategy.
+     * @param puzzle the puzzle's name
+     * @param budget how long each solve may take
+     * @param failures where to add the disagreements
+     */
+    private static void checkSolvable(String puzzle, Duration budget, List<String> failures) {
+        SolverResult expected = solve(puzzle, null, budget);
+        if (expected.getStatus() == SolverResult.Status.BUDGET_EXHAUSTED) {
+            System.out.printf("%-40s breadth-first over the budget of %d s%n", puzzle, budget.toSeconds());
+            return;
+        }
+        int length = moves(puzzle, "breadth-first", expected, failures);
+        StringBuilder line = new StringBuilder(String.format("%-40s %s", puzzle, describe(length)));
+        for (String strategy : STRATEGIES) {
+            SolverResult result = solve(puzzle, strategy, budget);
+            if (result.getStatus() == SolverResult.Status.BUDGET_EXHAUSTED) {
+                line.append(", ").append(strategy).append(" over the budget");
+                continue;
+            }
+            int found = moves(puzzle, strategy, result, failures);
+            if (found != length) {
+                failures.add(String.format("- %s: %s found %s, breadth-first %s", puzzle, strategy,
+                        describe(found), describe(length)));
+            }
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Solves a puzzle without a solution with every strategy, each of which has to prove
+     * there is none within the budget.
+     * @param puzzle the puzzle's name
+     * @param strategies the switches of the strategies
+     * @param budget how long each solve may take
+     * @param failures where to add the strategies that did not
+     */
+    private static void checkUnsolvable(String puzzle, List<String> strategies, Duration budget,
+                                        List<String> failures) {
+        List<String> all = new ArrayList<>();
+        all.add(null);
+        all.addAll(strategies);
+        for (String strategy : all) {
+            String name = strategy != null ? strategy : "breadth-first";
+            SolverResult result = solve(puzzle, strategy, budget);
+            if (result.getStatus() != SolverResult.Status.UNSOLVABLE) {
+                failures.add(String.format("- %s: %s ended %s instead of finding no solution", puzzle, name,
+                        result.getStatus()));
+            }
+        }
+        System.out.printf("%-40s no solution, %d strategies%n", puzzle, all.size());
+    }
+
+    /**
+     * Solves a puzzle with one strategy within the budget.
+     * @param puzzle the puzzle's name
+     * @param strategy the switch that selects the strategy, or null for the breadth-first search
+     * @param budget how long the solve may take
+     * @return how the search ended
+     */
+    private static SolverResult solve(String puzzle, String strategy, Duration budget) {
+        SolverOptions options = SolverOptions.parse(strategy != null ? new String[]{strategy} : new String[0]);
+        Configuration start = Regression.start(puzzle);
+        Heuristic<Configuration> heuristic = start instanceof TiltConfig tilt ? new TiltHeuristic(tilt) : config -> 0;
+        Solver solver = options.newSolver(heuristic);
+        SolverBudget limits = SolverBudget.UNLIMITED.withTimeout(budget);
+        return options.isBidirectional() ? solver.solveBidirectional(start, limits) : solver.solve(start, limits);
+    }
+
+    /**
+     * Checks the path of a search, move by move.
+     * @param puzzle the puzzle's name
+     * @param strategy the strategy that found it
+     * @param result how the search ended
+     * @param failures where to add a path that is no solution
+     * @return the number of moves, or -1 if there is no solution
+     */
+    private static int moves(String puzzle, String strategy, SolverResult result, List<String> failures) {
+        if (!result.isSolved()) {
+            return -1;
+        }
+        Configuration previous = null;
+        for (Configuration step : result.getPath()) {
+            if (previous != null && !previous.getNeighbors().contains(step)) {
+                failures.add(String.format("- %s: %s made a move that is not one", puzzle, strategy));
+            }
+            previous = step;
+        }
+        if (previous == null || !previous.isSolution()) {
+            failures.add(String.format("- %s: %s ended its path on no solution", puzzle, strategy));
+        }
+        return result.getPath().size() - 1;
+    }
+
+    private static String describe(int path) {
+        return path < 0 ? "no solution" : path + " moves";
+    }
+}
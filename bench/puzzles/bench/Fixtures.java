@@ -0,0 +1,178 @@
+package puzzles.bench;
+
+import puzzles.clock.ClockConfig;
+import puzzles.common.Coordinates;
+import puzzles.common.solver.Configuration;
+import puzzles.tilt.model.TiltConfig;
+import puzzles.tipover.model.TipOverConfig;
+import puzzles.water.WaterConfig;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The puzzles the benchmarks run on. Tilt and TipOver boards are read from the data
+ * directory, and Clock and Water puzzles are named like the files in the output
+ * directory ("clock-12-2-11", "water-4-3-5"), so every benchmark parameter is a
+ * fixture the programs are already checked against. Tilt boards named "random-N" are
+ * generated, to cover every board size from 2 to 16.
+ * <p>
+ *     The benchmarks must run from the project directory, or with the puzzles.data
+ *     system property pointing at the data directory.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public final class Fixtures {
+    /** the directory holding the tilt and tipover boards */
+    private static final Path DATA = Path.of(System.getProperty("puzzles.data", "data"));
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns a Tilt board.
+     * @param name a file in data/tilt without its extension, or "random-N" for a generated N by N board
+     * @return the board
+     */
+    public static TiltConfig tilt(String name) {
+        if (name.startsWith("random-")) {
+            return randomTilt(Integer.parseInt(name.substring("random-".length())));
+        }
+        try (BufferedReader reader = Files.newBufferedReader(DATA.resolve("tilt").resolve(name + ".txt"))) {
+            int size = Integer.parseInt(reader.readLine().trim());
+            Character[][] board = new Character[size][size];
+            int[] expected_count = new int[2];
+            for (int i = 0; i < size; i++) {
+                String[] row = reader.readLine().split(" ");
+                for (int j = 0; j < size; j++) {
+                    board[i][j] = row[j].charAt(0);
+                    if (board[i][j] == 'B') {
+                        expected_count[1]++;
+                    }
+                }
+            }
+            return new TiltConfig(board, expected_count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates a Tilt board with a hole in the middle and, at random but always the
+     * same for a given size, about one block, green and blue ball per eight cells.
+     * @param size the width and height of the board
+     * @return the board
+     */
+    private static TiltConfig randomTilt(int size) {
+        Random random = new Random(size);
+        Character[][] board = new Character[size][size];
+        int[] expected_count = new int[2];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int roll = random.nextInt(8);
+                board[i][j] = roll == 0 ? '*' : roll == 1 ? 'G' : roll == 2 ? 'B' : '.';
+                if (board[i][j] == 'B') {
+                    expected_count[1]++;
+                }
+            }
+        }
+        if (board[size / 2][size / 2] == 'B') {
+            expected_count[1]--;
+        }
+        board[size / 2][size / 2] = 'O';
+        return new TiltConfig(board, expected_count);
+    }
+
+    /**
+     * Returns a TipOver board, read the way the TipOver model reads it.
+     * @param name a file in data/tipover without its extension
+     * @return the board with the tower at its start
+     */
+    public static TipOverConfig tipOver(String name) {
+        try (BufferedReader reader = Files.newBufferedReader(DATA.resolve("tipover").resolve(name + ".txt"))) {
+            String[] settings = reader.readLine().split(" ");
+            int rows = Integer.parseInt(settings[0]);
+            int columns = Integer.parseInt(settings[1]);
+            Coordinates gridSize = new Coordinates(rows, columns);
+            int towerRow = Integer.parseInt(settings[2]);
+            int towerColumn = Integer.parseInt(settings[3]);
+            Coordinates goal = new Coordinates(Integer.parseInt(settings[4]), Integer.parseInt(settings[5]));
+            Map<Coordinates, TipOverConfig> board = new HashMap<>();
+            int towerHeight = 0;
+            for (int r = 0; r < rows; r++) {
+                String[] row = reader.readLine().split(" ");
+                for (int c = 0; c < columns; c++) {
+                    int height = Integer.parseInt(row[c]);
+                    if (height > 0) {
+                        board.put(new Coordinates(r, c), new TipOverConfig(gridSize, height, r, c, goal));
+                    }
+                    if (r == towerRow && c == towerColumn) {
+                        towerHeight = height;
+                    }
+                }
+            }
+            TipOverConfig start = new TipOverConfig(gridSize, towerHeight, towerRow, towerColumn, goal);
+            start.board.putAll(board);
+            return start;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a Water puzzle with every bucket empty.
+     * @param name "water-" followed by the desired amount and the capacities, dash separated
+     * @return the starting configuration
+     */
+    public static WaterConfig water(String name) {
+        int[] numbers = numbers(name, "water-");
+        return new WaterConfig(numbers[0], Arrays.copyOfRange(numbers, 1, numbers.length),
+                new int[numbers.length - 1]);
+    }
+
+    /**
+     * Returns a Clock puzzle.
+     * @param name "clock-" followed by the hours, the start and the finish, dash separated
+     * @return the starting configuration
+     */
+    public static ClockConfig clock(String name) {
+        int[] numbers = numbers(name, "clock-");
+        return new ClockConfig(numbers[0], numbers[1], numbers[2]);
+    }
+
+    /**
+     * Collects the first configurations a breadth-first search from the start would
+     * discover, so that a benchmark runs over the states a solve actually sees.
+     * @param start the starting configuration
+     * @param limit the most configurations to collect
+     * @return the configurations, the start first
+     */
+    public static Configuration[] reachable(Configuration start, int limit) {
+        Set<Configuration> seen = new LinkedHashSet<>();
+        Deque<Configuration> queue = new ArrayDeque<>();
+        seen.add(start);
+        queue.add(start);
+        while (!queue.isEmpty() && seen.size() < limit) {
+            for (Configuration neighbor : queue.remove().getNeighbors()) {
+                if (seen.size() < limit && seen.add(neighbor)) {
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return seen.toArray(new Configuration[0]);
+    }
+
+    private static int[] numbers(String name, String prefix) {
+        String[] parts = name.substring(prefix.length()).split("-");
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            numbers[i] = Integer.parseInt(parts[i]);
+        }
+        return numbers;
+    }
+}
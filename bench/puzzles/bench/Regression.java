@@ -0,0 +1,442 @@
+package puzzles.bench;
+
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverBudget;
+import puzzles.common.solver.SolverOptions;
+import puzzles.common.solver.SolverResult;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Solves every puzzle the programs are checked against, end to end, and fails if any
+ * of them got slower than a stored baseline.
+ * <p>
+ *     The puzzles are the boards in data/tilt and data/tipover and the Clock and Water
+ *     puzzles named by the files in output/clock and output/water. Every solution is
+ *     checked against the puzzle's golden file in the output directory: the path has to
+ *     be as long as the golden one, or there has to be none if the golden file says so.
+ *     The counts are not held to the golden ones, which were written before the search
+ *     learned to stop at the first solution and to fold symmetric configurations, but to
+ *     the baseline's. TipOver boards are only held to the baseline: there is no TipOver
+ *     program to have written their golden files, and the model's moves are not the ones
+ *     those files were written with.
+ * </p>
+ * <p>
+ *     Each puzzle is solved --warmup times unmeasured (at least once), then --repeat
+ *     times measured: the median and least wall time, the configurations expanded per
+ *     second at the median, the peak resident set (reset before every solve where Linux
+ *     allows it) and the garbage collection time. A puzzle whose first solve runs out of
+ *     --budget seconds ({@value #DEFAULT_BUDGET_SECONDS} by default) is not measured.
+ *     Every run is appended to history.csv in the --history directory and written whole
+ *     to a JSON file named after its start time.
+ * </p>
+ * <p>
+ *     The run is then compared with baseline.csv in the same directory, which the first
+ *     run (or one with --update-baseline) stores. A puzzle regresses if its median wall
+ *     time grows by more than --threshold (a fraction, {@value #DEFAULT_THRESHOLD} by
+ *     default) and by more than {@value #NOISE_MILLIS} ms, if its unique count grows at
+ *     all (the counts are deterministic), or if it runs out of budget where the baseline
+ *     did not. The regressions and the golden file mismatches are printed as a diff and
+ *     the program exits with status 1.
+ * </p>
+ * <p>
+ *     Usage: java puzzles.bench.Regression [--warmup=N] [--repeat=N] [--threshold=F]
+ *     [--budget=seconds] [--history=dir] [--update-baseline] [--only=regex] plus any of
+ *     the switches in {@link SolverOptions}. It has to run from the project directory,
+ *     or with the puzzles.data and puzzles.output system properties pointing at the data
+ *     and output directories.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class Regression {
+    /** the largest growth of the median wall time that is not a regression */
+    public static final double DEFAULT_THRESHOLD = 0.10;
+    /** differences of wall time below this many milliseconds are noise */
+    public static final int NOISE_MILLIS = 5;
+    /** how long the first solve of a puzzle may take before it is left out */
+    public static final int DEFAULT_BUDGET_SECONDS = 60;
+    /** the path of a puzzle that ran out of budget */
+    public static final int OVER_BUDGET = -2;
+
+    private static final Path DATA = Path.of(System.getProperty("puzzles.data", "data"));
+    private static final Path OUTPUT = Path.of(System.getProperty("puzzles.output", "output"));
+    private static final String CSV_HEADER =
+            "timestamp,puzzle,solver,runs,path,total,unique,median_ms,min_ms,states_per_s,peak_rss_kb,gc_ms";
+    private static final Path CLEAR_REFS = Path.of("/proc/self/clear_refs");
+    private static final Path STATUS = Path.of("/proc/self/status");
+
+    /**
+     * What the golden file of a puzzle says.
+     * @param path the number of moves in the solution, or -1 if there is none
+     */
+    record Golden(int path) {
+    }
+
+    /**
+     * How the measured solves of a puzzle went.
+     * @param puzzle the puzzle's name, such as "water-4-3-5"
+     * @param solver the solver's class
+     * @param runs the number of measured solves
+     * @param path the number of moves in the solution, -1 if there is none, or
+     *             {@link #OVER_BUDGET}
+     * @param total the total count
+     * @param unique the unique count
+     * @param medianMillis the median wall time
+     * @param minMillis the least wall time
+     * @param statesPerSecond the configurations expanded per second at the median
+     * @param peakRssKb the largest peak resident set, or -1 if it is not known
+     * @param gcMillis the garbage collection time of all the measured solves
+     */
+    record Result(String puzzle, String solver, int runs, int path, long total, long unique,
+                  double medianMillis, double minMillis, double statesPerSecond, long peakRssKb,
+                  long gcMillis) {
+        /**
+         * Reads a result back from a line of a CSV file written by {@link #toCsv}.
+         * @param line the line
+         * @return the result
+         */
+        static Result parse(String line) {
+            String[] cells = line.split(",");
+            return new Result(cells[1], cells[2], Integer.parseInt(cells[3]), Integer.parseInt(cells[4]),
+                    Long.parseLong(cells[5]), Long.parseLong(cells[6]), Double.parseDouble(cells[7]),
+                    Double.parseDouble(cells[8]), Double.parseDouble(cells[9]), Long.parseLong(cells[10]),
+                    Long.parseLong(cells[11]));
+        }
+
+        String toCsv(String timestamp) {
+            return String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%d,%.3f,%.3f,%.0f,%d,%d", timestamp, puzzle,
+                    solver, runs, path, total, unique, medianMillis, minMillis, statesPerSecond, peakRssKb,
+                    gcMillis);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"puzzle\":\"%s\",\"solver\":\"%s\",\"runs\":%d,\"path\":%d,"
+                            + "\"total\":%d,\"unique\":%d,\"medianMillis\":%.3f,\"minMillis\":%.3f,"
+                            + "\"statesPerSecond\":%.0f,\"peakRssKb\":%d,\"gcMillis\":%d}", puzzle, solver, runs,
+                    path, total, unique, medianMillis, minMillis, statesPerSecond, peakRssKb, gcMillis);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int warmup = 2;
+        int repeat = 5;
+        double threshold = DEFAULT_THRESHOLD;
+        Duration budget = Duration.ofSeconds(DEFAULT_BUDGET_SECONDS);
+        Path history = Path.of("perf");
+        boolean updateBaseline = false;
+        Pattern only = null;
+        List<String> solverArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--repeat=")) {
+                repeat = Integer.parseInt(arg.substring("--repeat=".length()));
+            } else if (arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+            } else if (arg.startsWith("--budget=")) {
+                budget = Duration.ofSeconds(Long.parseLong(arg.substring("--budget=".length())));
+            } else if (arg.startsWith("--history=")) {
+                history = Path.of(arg.substring("--history=".length()));
+            } else if (arg.equals("--update-baseline")) {
+                updateBaseline = true;
+            } else if (arg.startsWith("--only=")) {
+                only = Pattern.compile(arg.substring("--only=".length()));
+            } else {
+                solverArgs.add(arg);
+            }
+        }
+        if (repeat < 1) {
+            System.out.println("Usage: java Regression [--warmup=N] [--repeat=N] [--threshold=F] [--budget=seconds]"
+                    + " [--history=dir] [--update-baseline] [--only=regex] " + SolverOptions.USAGE);
+            return;
+        }
+        SolverOptions options = SolverOptions.parse(solverArgs.toArray(new String[0]));
+        List<String> failures = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        for (String puzzle : puzzles()) {
+            if (only != null && !only.matcher(puzzle).find()) {
+                continue;
+            }
+            Result result = measure(puzzle, options.forPuzzle(puzzle), warmup, repeat, budget);
+            results.add(result);
+            if (result.path() == OVER_BUDGET) {
+                System.out.printf("%-40s over the budget of %d s%n", puzzle, budget.toSeconds());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-40s %10.1f ms  %12.0f states/s  %8d kB  gc %5d ms%n", puzzle,
+                    result.medianMillis(), result.statesPerSecond(), result.peakRssKb(), result.gcMillis());
+            check(result, golden(puzzle), failures);
+        }
+
+        String timestamp = LocalDateTime.now().withNano(0).toString();
+        record(history, timestamp, results);
+        Path baselineFile = history.resolve("baseline.csv");
+        if (updateBaseline || !Files.exists(baselineFile)) {
+            writeCsv(baselineFile, timestamp, results);
+            System.out.println("Stored the baseline in " + baselineFile);
+        } else {
+            compare(readBaseline(baselineFile), results, threshold, failures);
+        }
+        if (!failures.isEmpty()) {
+            System.out.println(failures.size() + " regression" + (failures.size() == 1 ? "" : "s") + ":");
+            failures.forEach(System.out::println);
+            System.exit(1);
+        }
+        System.out.println("No regressions in " + results.size() + " puzzles");
+    }
+
+    /**
+     * Lists the puzzles, the ones with a board in the data directory first.
+     * @return the puzzles' names
+     * @throws IOException if a directory cannot be listed
+     */
+    static List<String> puzzles() throws IOException {
+        List<String> puzzles = new ArrayList<>();
+        puzzles.addAll(names(DATA.resolve("tilt"), ".txt"));
+        puzzles.addAll(names(DATA.resolve("tipover"), ".txt"));
+        puzzles.addAll(names(OUTPUT.resolve("clock"), "-out.txt"));
+        puzzles.addAll(names(OUTPUT.resolve("water"), "-out.txt"));
+        return puzzles;
+    }
+
+    private static List<String> names(Path directory, String suffix) throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(suffix))
+                    .map(name -> name.substring(0, name.length() - suffix.length()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Configuration start(String puzzle) {
+        if (puzzle.startsWith("water-")) {
+            return Fixtures.water(puzzle);
+        } else if (puzzle.startsWith("clock-")) {
+            return Fixtures.clock(puzzle);
+        } else if (puzzle.startsWith("tipover-")) {
+            return Fixtures.tipOver(puzzle);
+        }
+        return Fixtures.tilt(puzzle);
+    }
+
+    /**
+     * Solves a puzzle the given number of times after warming up. The first solve is
+     * run within the budget; it is the selected solver's plain search, whatever the
+     * switches, since only that one takes a budget.
+     * @param puzzle the puzzle's name
+     * @param options the solver switches
+     * @param warmup the number of unmeasured solves, including the first
+     * @param repeat the number of measured solves
+     * @param budget how long the first solve may take
+     * @return how the measured solves went
+     */
+    private static Result measure(String puzzle, SolverOptions options, int warmup, int repeat, Duration budget) {
+        Solver first = options.newSolver();
+        SolverResult probe = first.solve(start(puzzle), SolverBudget.UNLIMITED.withTimeout(budget));
+        if (probe.getStatus() == SolverResult.Status.BUDGET_EXHAUSTED) {
+            return new Result(puzzle, first.getClass().getSimpleName(), 0, OVER_BUDGET, first.getTotal(),
+                    first.getUnique(), 0, 0, 0, -1, 0);
+        }
+        for (int i = 1; i < warmup; i++) {
+            options.solve(options.newSolver(), start(puzzle));
+        }
+        long[] nanos = new long[repeat];
+        long[] expanded = new long[repeat];
+        long peakRss = -1;
+        long gcBefore = gcMillis();
+        Solver solver = null;
+        Collection<Configuration> path = null;
+        for (int i = 0; i < repeat; i++) {
+            Configuration start = start(puzzle);
+            solver = options.newSolver();
+            resetPeakRss();
+            long begin = System.nanoTime();
+            path = options.solve(solver, start);
+            nanos[i] = System.nanoTime() - begin;
+            expanded[i] = solver.getStats().getExpanded();
+            peakRss = Math.max(peakRss, peakRssKb());
+        }
+        long gc = gcMillis() - gcBefore;
+        Integer[] order = new Integer[repeat];
+        for (int i = 0; i < repeat; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> nanos[i]));
+        int median = order[repeat / 2];
+        return new Result(puzzle, solver.getClass().getSimpleName(), repeat, path != null ? path.size() - 1 : -1,
+                solver.getTotal(), solver.getUnique(), nanos[median] / 1e6, nanos[order[0]] / 1e6,
+                expanded[median] * 1e9 / Math.max(1, nanos[median]), peakRss, gc);
+    }
+
+    /**
+     * Reads what a puzzle's golden file says.
+     * @param puzzle the puzzle's name
+     * @return the golden solution, or null if the puzzle has none to be checked against
+     * @throws IOException if the golden file cannot be read
+     */
+    static Golden golden(String puzzle) throws IOException {
+        Path file = OUTPUT.resolve(puzzle.substring(0, puzzle.indexOf('-'))).resolve(puzzle + "-out.txt");
+        if (puzzle.startsWith("tipover-") || !Files.exists(file)) {
+            return null;
+        }
+        int steps = 0;
+        boolean unsolvable = false;
+        for (String line : Files.readAllLines(file)) {
+            if (line.startsWith("Step ")) {
+                steps++;
+            } else if (line.startsWith("No solution")) {
+                unsolvable = true;
+            }
+        }
+        return new Golden(unsolvable ? -1 : steps - 1);
+    }
+
+    /**
+     * Checks a result against the puzzle's golden file.
+     * @param result the result
+     * @param golden the golden solution, or null if there is none
+     * @param failures where to add the mismatches
+     */
+    private static void check(Result result, Golden golden, List<String> failures) {
+        if (golden == null || result.path() == OVER_BUDGET || result.path() == golden.path()) {
+            return;
+        }
+        failures.add(String.format("- %s: %s, golden %s", result.puzzle(), describe(result.path()),
+                describe(golden.path())));
+    }
+
+    private static String describe(int path) {
+        return path < 0 ? "no solution" : path + " moves";
+    }
+
+    /**
+     * Compares a run with the baseline.
+     * @param baseline the baseline, by puzzle
+     * @param results the run
+     * @param threshold the largest growth of the median wall time that is not a regression
+     * @param failures where to add the regressions
+     */
+    private static void compare(Map<String, Result> baseline, List<Result> results, double threshold,
+                                List<String> failures) {
+        for (Result result : results) {
+            Result before = baseline.get(result.puzzle());
+            if (before == null || before.path() == OVER_BUDGET) {
+                continue;
+            }
+            if (result.path() == OVER_BUDGET) {
+                failures.add(String.format(Locale.ROOT, "- %s: %.1f ms -> over the budget", result.puzzle(),
+                        before.medianMillis()));
+                continue;
+            }
+            double growth = result.medianMillis() / Math.max(1e-3, before.medianMillis()) - 1;
+            if (growth > threshold && result.medianMillis() - before.medianMillis() > NOISE_MILLIS) {
+                failures.add(String.format(Locale.ROOT, "- %s: %.1f ms -> %.1f ms (%+.0f%%, limit %+.0f%%),"
+                                + " %.0f -> %.0f states/s", result.puzzle(), before.medianMillis(),
+                        result.medianMillis(), 100 * growth, 100 * threshold, before.statesPerSecond(),
+                        result.statesPerSecond()));
+            }
+            if (result.unique() > before.unique()) {
+                failures.add(String.format("- %s: %d -> %d unique configs", result.puzzle(), before.unique(),
+                        result.unique()));
+            }
+        }
+    }
+
+    private static Map<String, Result> readBaseline(Path file) throws IOException {
+        Map<String, Result> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            if (!line.isBlank() && !line.equals(CSV_HEADER)) {
+                Result result = Result.parse(line);
+                baseline.put(result.puzzle(), result);
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Appends a run to the history and writes it to its own JSON file.
+     * @param history the history directory
+     * @param timestamp when the run started
+     * @param results the run
+     * @throws IOException if the files cannot be written
+     */
+    private static void record(Path history, String timestamp, List<Result> results) throws IOException {
+        Files.createDirectories(history);
+        Path csv = history.resolve("history.csv");
+        StringBuilder text = new StringBuilder(Files.exists(csv) ? "" : CSV_HEADER + "\n");
+        for (Result result : results) {
+            text.append(result.toCsv(timestamp)).append('\n');
+        }
+        Files.writeString(csv, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        StringBuilder json = new StringBuilder("{\"timestamp\":\"").append(timestamp)
+                .append("\",\"java\":\"").append(System.getProperty("java.version"))
+                .append("\",\"processors\":").append(Runtime.getRuntime().availableProcessors())
+                .append(",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i == 0 ? "" : ",").append(results.get(i).toJson());
+        }
+        json.append("]}\n");
+        String name = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.parse(timestamp));
+        Files.writeString(history.resolve(name + ".json"), json);
+    }
+
+    private static void writeCsv(Path file, String timestamp, List<Result> results) throws IOException {
+        StringBuilder text = new StringBuilder(CSV_HEADER + "\n");
+        for (Result result : results) {
+            text.append(result.toCsv(timestamp)).append('\n');
+        }
+        Files.writeString(file, text);
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Resets the peak resident set of the process, which Linux allows by writing 5 to
+     * /proc/self/clear_refs; elsewhere the peak is that of the whole run so far.
+     */
+    private static void resetPeakRss() {
+        try {
+            Files.writeString(CLEAR_REFS, "5");
+        } catch (IOException | UnsupportedOperationException e) {
+            // the peak then covers the earlier solves too
+        }
+    }
+
+    /**
+     * Reads the peak resident set of the process.
+     * @return the peak in kilobytes, or -1 if it is not known
+     */
+    private static long peakRssKb() {
+        try {
+            for (String line : Files.readAllLines(STATUS)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,14 @@
+package puzzles.bench;
+
+/**
+ * Sizes shared by the benchmarks.
+ *
+ * @author Ashrith V. Mudundi
+ */
+final class Samples {
+    /** how many reachable states a per-state benchmark cycles through */
+    static final int STATES = 4096;
+
+    private Samples() {
+    }
+}
@@ -0,0 +1,94 @@
+package puzzles.bench;
+
+import org.openjdk.jmh.annotations.*;
+import puzzles.common.solver.Configuration;
+import puzzles.tilt.model.TiltConfig;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-state costs of Tilt: generating neighbors, the four tilts they are made of,
+ * and the hashing and comparing the visited set does on every neighbor. Each call
+ * works on the next of a few thousand boards a search from the fixture reaches.
+ *
+ * @author Ashrith V. Mudundi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TiltBenchmark {
+    @Param({"tilt-1", "tilt-5", "tilt-10", "random-2", "random-4", "random-6", "random-8",
+            "random-10", "random-12", "random-14", "random-16"})
+    public String board;
+
+    private TiltConfig[] states;
+    /** a copy of each state that is equal to it but does not share its rows */
+    private TiltConfig[] copies;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Configuration[] reachable = Fixtures.reachable(Fixtures.tilt(board), Samples.STATES);
+        states = new TiltConfig[reachable.length];
+        copies = new TiltConfig[reachable.length];
+        for (int i = 0; i < reachable.length; i++) {
+            states[i] = (TiltConfig) reachable[i];
+            Character[][] board = states[i].getBoard();
+            Character[][] copy = new Character[board.length][];
+            for (int row = 0; row < board.length; row++) {
+                copy[row] = board[row].clone();
+            }
+            copies[i] = new TiltConfig(copy, states[i].getExpected_count());
+        }
+    }
+
+    private int pick() {
+        int i = next;
+        next = i + 1 == states.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Collection<Configuration> getNeighbors() {
+        return states[pick()].getNeighbors();
+    }
+
+    @Benchmark
+    public Character[][] tiltUp() {
+        TiltConfig state = states[pick()];
+        return state.tilt_up(state.getBoard());
+    }
+
+    @Benchmark
+    public Character[][] tiltDown() {
+        TiltConfig state = states[pick()];
+        return state.tilt_down(state.getBoard());
+    }
+
+    @Benchmark
+    public Character[][] tiltLeft() {
+        TiltConfig state = states[pick()];
+        return state.tilt_left(state.getBoard());
+    }
+
+    @Benchmark
+    public Character[][] tiltRight() {
+        TiltConfig state = states[pick()];
+        return state.tilt_right(state.getBoard());
+    }
+
+    @Benchmark
+    public int hash() {
+        return states[pick()].hashCode();
+    }
+
+    @Benchmark
+    public boolean equal() {
+        int i = pick();
+        return states[i].equals(copies[i]);
+    }
+}
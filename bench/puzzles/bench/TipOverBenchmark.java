@@ -0,0 +1,37 @@
+package puzzles.bench;
+
+import org.openjdk.jmh.annotations.*;
+import puzzles.common.solver.Configuration;
+import puzzles.tipover.model.TipOverConfig;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating the neighbors of a TipOver board. Only the starting configuration of a
+ * board carries the crates, so that is the one expanded.
+ *
+ * @author Ashrith V. Mudundi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TipOverBenchmark {
+    @Param({"tipover-0", "tipover-5", "tipover-a"})
+    public String board;
+
+    private TipOverConfig start;
+
+    @Setup
+    public void setUp() {
+        start = Fixtures.tipOver(board);
+    }
+
+    @Benchmark
+    public Collection<Configuration> getNeighbors() {
+        return start.getNeighbors();
+    }
+}
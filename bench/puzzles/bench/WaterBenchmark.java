@@ -0,0 +1,48 @@
+package puzzles.bench;
+
+import org.openjdk.jmh.annotations.*;
+import puzzles.common.solver.Configuration;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating the neighbors of Water configurations, with two to six buckets. The
+ * six-bucket puzzle is the five-bucket one from the output directory with one more
+ * bucket, as none of the fixtures has six.
+ *
+ * @author Ashrith V. Mudundi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WaterBenchmark {
+    @Param({"water-4-3-5", "water-2-5-9-14", "water-42-70-39-1001", "water-1042-1086-1097-1100-2163",
+            "water-37-5-11-17-29-41", "water-37-5-11-17-29-41-53"})
+    public String puzzle;
+
+    private Configuration[] states;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        states = Fixtures.reachable(Fixtures.water(puzzle), Samples.STATES);
+    }
+
+    @Benchmark
+    public Collection<Configuration> getNeighbors() {
+        int i = next;
+        next = i + 1 == states.length ? 0 : i + 1;
+        return states[i].getNeighbors();
+    }
+
+    @Benchmark
+    public int hash() {
+        int i = next;
+        next = i + 1 == states.length ? 0 : i + 1;
+        return states[i].hashCode();
+    }
+}
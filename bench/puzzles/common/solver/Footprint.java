@@ -0,0 +1,105 @@
+package puzzles.common.solver;
+
+import puzzles.bench.Fixtures;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prints the bytes each visited state keeps alive in the solver's tables, which the
+ * allocation rate of the benchmarks cannot show: the heap in use is compared before
+ * and after filling each table with the states a search from the fixture reaches.
+ * <p>
+ *     Usage: java puzzles.common.solver.Footprint fixture [states]
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class Footprint {
+    /** the states the tables are filled with */
+    private static Configuration[] states;
+    /** keeps the table being measured reachable until the heap has been measured */
+    private static Object table;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java Footprint fixture [states]");
+            return;
+        }
+        String puzzle = args[0];
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        Configuration start = puzzle.startsWith("water-") ? Fixtures.water(puzzle)
+                : puzzle.startsWith("clock-") ? Fixtures.clock(puzzle) : Fixtures.tilt(puzzle);
+        long before = used();
+        states = Fixtures.reachable(start, limit);
+        int count = states.length;
+        System.out.println(puzzle + ": " + count + " states");
+        report("Configurations", used() - before, count);
+
+        before = used();
+        table = fillHashMap();
+        report("HashMap", used() - before, count);
+        table = null;
+
+        before = used();
+        table = fillArena();
+        report("StateArena", used() - before, count);
+        table = null;
+
+        if (start instanceof PackedConfiguration packed && packed.packedLongs() > 0) {
+            before = used();
+            table = fillPacked(packed.packedLongs());
+            report("PackedStateTable", used() - before, count);
+            table = null;
+        }
+    }
+
+    private static Map<Configuration, Configuration> fillHashMap() {
+        Map<Configuration, Configuration> predecessors = new HashMap<>();
+        for (Configuration state : states) {
+            predecessors.put(state, state);
+        }
+        return predecessors;
+    }
+
+    private static StateArena fillArena() {
+        StateArena arena = new StateArena();
+        for (int i = 0; i < states.length; i++) {
+            arena.add(states[i], i - 1);
+        }
+        return arena;
+    }
+
+    private static PackedStateTable fillPacked(int longs) {
+        PackedStateTable packedTable = new PackedStateTable(longs, false);
+        for (int i = 0; i < states.length; i++) {
+            PackedConfiguration state = (PackedConfiguration) states[i];
+            packedTable.add(state.packLow(), state.packHigh(), i - 1);
+        }
+        return packedTable;
+    }
+
+    private static void report(String name, long bytes, int count) {
+        System.out.printf("%-18s %8.1f bytes/state%n", name, (double) bytes / count);
+    }
+
+    /**
+     * Returns the heap in use once the garbage has been collected. The collector does
+     * not always free everything at the first request, so it is asked a few times.
+     * @return the bytes in use
+     */
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
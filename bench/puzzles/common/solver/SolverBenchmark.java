@@ -0,0 +1,103 @@
+package puzzles.common.solver;
+
+import org.openjdk.jmh.annotations.*;
+import puzzles.bench.Fixtures;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The solver's insert and lookup path: adding a batch of states to the visited set,
+ * and looking up states that are already in it, which is what most neighbors of a
+ * search turn out to be. The state arena the solver uses is measured against the
+ * HashMap of configurations it replaced and against the packed table. The scores are
+ * per state, so with the gc profiler gc.alloc.rate.norm is the bytes allocated per
+ * state added. Whole solves of small fixtures are measured as well.
+ * <p>
+ *     It lives in the solver's package to reach the package-private tables.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolverBenchmark {
+    /** states per batch */
+    private static final int BATCH = 65536;
+
+    @Param({"water-37-5-11-17-29-41", "tilt-10"})
+    public String puzzle;
+
+    private Configuration[] states;
+    private StateArena filled;
+
+    @Setup
+    public void setUp() {
+        Configuration start = puzzle.startsWith("water-") ? Fixtures.water(puzzle) : Fixtures.tilt(puzzle);
+        states = Fixtures.reachable(start, BATCH);
+        filled = new StateArena();
+        for (Configuration state : states) {
+            filled.add(state, StateArena.NO_PARENT);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public StateArena arenaInsert() {
+        StateArena arena = new StateArena();
+        for (int i = 0; i < states.length; i++) {
+            arena.add(states[i], i - 1);
+        }
+        return arena;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Map<Configuration, Configuration> hashMapInsert() {
+        Map<Configuration, Configuration> predecessors = new HashMap<>();
+        Configuration previous = null;
+        for (Configuration state : states) {
+            predecessors.put(state, previous);
+            previous = state;
+        }
+        return predecessors;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public PackedStateTable packedInsert() {
+        PackedConfiguration first = (PackedConfiguration) states[0];
+        PackedStateTable table = new PackedStateTable(first.packedLongs(), false);
+        for (int i = 0; i < states.length; i++) {
+            PackedConfiguration state = (PackedConfiguration) states[i];
+            table.add(state.packLow(), state.packHigh(), i - 1);
+        }
+        return table;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int arenaLookup() {
+        int present = 0;
+        for (Configuration state : states) {
+            if (filled.add(state, StateArena.NO_PARENT) == StateArena.PRESENT) {
+                present++;
+            }
+        }
+        return present;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Collection<Configuration> solve() {
+        Configuration start = puzzle.startsWith("water-") ? Fixtures.water(puzzle) : Fixtures.tilt(puzzle);
+        return new Solver().solve(start);
+    }
+}
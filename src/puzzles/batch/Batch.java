@@ -0,0 +1,239 @@
+package puzzles.batch;
+
+import puzzles.common.solver.SolverOptions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Solves many puzzles in one run, several at a time, and writes each solution to the
+ * output tree in the same form as the puzzle's own program.
+ * <p>
+ *     The arguments are puzzle directories and manifests. Every .txt file in a directory
+ *     such as data/tilt is a puzzle of the kind the directory is named after. A manifest
+ *     has one puzzle per line: its kind followed by the arguments its program takes, for
+ *     example "water 4 3 5" or "tilt data/tilt/tilt-3.txt"; blank lines and lines
+ *     starting with # are skipped.
+ * </p>
+ * <p>
+ *     The puzzles are shared out on a work-stealing pool, one thread per processor
+ *     unless --threads says otherwise. Once they are all done the throughput and the
+ *     time each puzzle took are printed, slowest first. A puzzle that takes long prints
+ *     a heartbeat line with its progress to the standard error every --progress
+ *     seconds, {@value SolverOptions#DEFAULT_HEARTBEAT_SECONDS} by default.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class Batch {
+    /** the switches of the batch itself, as shown in the usage message */
+    public static final String USAGE = "[--threads=N] [--output=dir]";
+
+    /**
+     * A puzzle to solve and, once it has been, how long it took.
+     */
+    private static class Job {
+        private final String kind;
+        private final String[] args;
+        private final Path output;
+        private long nanos;
+        private String failure;
+
+        /**
+         * Constructor for the Job class.
+         * @param kind the kind of puzzle
+         * @param args the arguments its program takes
+         * @param output the file the solution goes in
+         */
+        Job(String kind, String[] args, Path output) {
+            this.kind = kind;
+            this.args = args;
+            this.output = output;
+        }
+
+        /**
+         * Solves the puzzle and writes the solution. The file is only written once the
+         * whole solution is known, so a failed puzzle leaves any earlier one in place.
+         * The heartbeat lines of a long search name the output file.
+         * A puzzle that fails, even by running out of memory or stack, is recorded as
+         * failed instead of stopping the batch.
+         * @param options the solver switches
+         */
+        void run(SolverOptions options) {
+            long start = System.nanoTime();
+            try {
+                String text = Programs.run(kind, args, options.forPuzzle(output.getFileName().toString()));
+                Files.createDirectories(output.getParent());
+                Files.writeString(output, text);
+            } catch (Exception | Error e) {
+                failure = e.toString(); // an error in one puzzle must not lose the others
+            }
+            nanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Solves a range of the jobs, splitting it in two until a single job is left so that
+     * idle threads can steal the other half.
+     */
+    private static class Jobs extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Job> jobs;
+        private final int from;
+        private final int to;
+        private final SolverOptions options;
+
+        /**
+         * Constructor for the Jobs class.
+         * @param jobs all the jobs
+         * @param from the first job of the range
+         * @param to the end of the range, exclusive
+         * @param options the solver switches
+         */
+        Jobs(List<Job> jobs, int from, int to, SolverOptions options) {
+            this.jobs = jobs;
+            this.from = from;
+            this.to = to;
+            this.options = options;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                jobs.get(from).run(options);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Jobs(jobs, from, middle, options), new Jobs(jobs, middle, to, options));
+            }
+        }
+    }
+
+    /**
+     * Run the batch.
+     *
+     * @param args the puzzle directories and manifests, plus --threads=N (the number of
+     *             puzzles solved at once), --output=dir (where the output tree is, output
+     *             by default) and any of the switches in {@link SolverOptions} except
+     *             --json, which would have every puzzle write the same file.
+     * @throws IOException if a directory or manifest cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path outputDir = Path.of("output");
+        List<String> solverArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--output=")) {
+                outputDir = Path.of(arg.substring("--output=".length()));
+            } else if (arg.startsWith("--json")) {
+                System.out.println("Ignoring " + arg + " in a batch");
+            } else {
+                solverArgs.add(arg);
+            }
+        }
+        SolverOptions options = SolverOptions.parse(solverArgs.toArray(new String[0]))
+                .withDefaultHeartbeat(SolverOptions.DEFAULT_HEARTBEAT_SECONDS);
+        if (options.getArguments().length == 0) {
+            System.out.println("Usage: java Batch directory-or-manifest... " + USAGE + " " + SolverOptions.USAGE);
+            return;
+        }
+        List<Job> jobs = new ArrayList<>();
+        for (String source : options.getArguments()) {
+            Path path = Path.of(source);
+            if (Files.isDirectory(path)) {
+                addDirectory(jobs, path, outputDir);
+            } else {
+                addManifest(jobs, path, outputDir);
+            }
+        }
+        if (jobs.isEmpty()) {
+            System.out.println("No puzzles to solve");
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new Jobs(jobs, 0, jobs.size(), options));
+        } finally {
+            pool.shutdown();
+        }
+        summarize(jobs, System.nanoTime() - start, threads);
+    }
+
+    /**
+     * Adds every puzzle file in a directory, named after the kind of puzzle it holds.
+     * @param jobs the jobs so far
+     * @param directory the directory, such as data/tilt
+     * @param outputDir the root of the output tree
+     * @throws IOException if the directory cannot be listed
+     */
+    private static void addDirectory(List<Job> jobs, Path directory, Path outputDir) throws IOException {
+        String kind = directory.getFileName().toString();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.toString().endsWith(".txt")).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Path output = outputDir.resolve(kind).resolve(name.substring(0, name.length() - 4) + "-out.txt");
+            jobs.add(new Job(kind, new String[] {file.toString()}, output));
+        }
+    }
+
+    /**
+     * Adds the puzzles listed in a manifest. A puzzle given by its parameters is named
+     * after them, like water-4-3-5; one given by its file is named after the file.
+     * @param jobs the jobs so far
+     * @param manifest the manifest
+     * @param outputDir the root of the output tree
+     * @throws IOException if the manifest cannot be read
+     */
+    private static void addManifest(List<Job> jobs, Path manifest, Path outputDir) throws IOException {
+        for (String line : Files.readAllLines(manifest)) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] words = line.split("\\s+");
+            String kind = words[0];
+            String[] args = Arrays.copyOfRange(words, 1, words.length);
+            String name;
+            if (args.length == 1 && args[0].endsWith(".txt")) {
+                String file = Path.of(args[0]).getFileName().toString();
+                name = file.substring(0, file.length() - 4);
+            } else {
+                name = kind + "-" + String.join("-", args);
+            }
+            jobs.add(new Job(kind, args, outputDir.resolve(kind).resolve(name + "-out.txt")));
+        }
+    }
+
+    /**
+     * Prints the throughput of the batch and the time each puzzle took, slowest first.
+     * @param jobs the jobs, all run
+     * @param nanos the wall time of the whole batch
+     * @param threads the number of threads that solved them
+     */
+    private static void summarize(List<Job> jobs, long nanos, int threads) {
+        long failed = jobs.stream().filter(job -> job.failure != null).count();
+        System.out.printf(Locale.ROOT, "Solved %d of %d puzzles in %.1f ms on %d thread%s: %.2f puzzles/s%n",
+                jobs.size() - failed, jobs.size(), nanos / 1e6, threads, threads == 1 ? "" : "s",
+                jobs.size() * 1e9 / nanos);
+        List<Job> slowest = new ArrayList<>(jobs);
+        slowest.sort(Comparator.comparingLong((Job job) -> job.nanos).reversed());
+        for (Job job : slowest) {
+            System.out.printf(Locale.ROOT, "%10.1f ms  %s%n", job.nanos / 1e6,
+                    job.failure == null ? job.output : job.output + "  FAILED: " + job.failure);
+        }
+    }
+}
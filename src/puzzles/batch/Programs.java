@@ -0,0 +1,64 @@
+package puzzles.batch;
+
+import puzzles.clock.Clock;
+import puzzles.common.solver.SolverOptions;
+import puzzles.tilt.solver.Tilt;
+import puzzles.water.Water;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The solver programs that can be run by the name of their puzzle, for the batch and
+ * the solver daemon.
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class Programs {
+    /**
+     * Solves a puzzle and prints the solution.
+     */
+    @FunctionalInterface
+    public interface Program {
+        /**
+         * @param args the puzzle's arguments
+         * @param options the solver switches
+         * @param out where to print the solution
+         * @throws IOException if the puzzle cannot be read
+         */
+        void solve(String[] args, SolverOptions options, PrintStream out) throws IOException;
+    }
+
+    /** the puzzles that have a solver program, by the name their files start with */
+    private static final Map<String, Program> PROGRAMS = Map.of(
+            "clock", Clock::solve,
+            "water", Water::solve,
+            "tilt", Tilt::solve);
+
+    private Programs() {
+    }
+
+    /**
+     * Runs a puzzle's program.
+     * @param kind the kind of puzzle, such as "tilt"
+     * @param args the puzzle's arguments
+     * @param options the solver switches
+     * @return what the program printed
+     * @throws IOException if the puzzle cannot be read
+     * @throws UnsupportedOperationException if there is no program for the puzzle
+     */
+    public static String run(String kind, String[] args, SolverOptions options) throws IOException {
+        Program program = PROGRAMS.get(kind);
+        if (program == null) {
+            throw new UnsupportedOperationException("no solver program for " + kind + " puzzles");
+        }
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(text, false, StandardCharsets.UTF_8)) {
+            program.solve(args, options, out);
+        }
+        return text.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,249 @@
+package puzzles.batch;
+
+import puzzles.common.solver.SolverClient;
+import puzzles.common.solver.SolverOptions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-running solver that answers the requests of {@link SolverClient} on the loopback
+ * interface, so that the solver programs run in a JVM that has already started and
+ * warmed up.
+ * <p>
+ *     Every connection gets a thread of its own, which mostly waits. The searches run on
+ *     a bounded pool of workers, one per processor but one; when its queue is full a
+ *     request is turned down and the client solves the puzzle itself. Requests for the
+ *     same puzzle with the same switches that arrive while it is being solved share that
+ *     search instead of starting another.
+ * </p>
+ * <p>
+ *     The "stats" request returns the number of requests and the median and 99th
+ *     percentile latency for each kind of puzzle.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class SolverDaemon {
+    /** the searches that may wait for a worker before requests are turned down */
+    private static final int QUEUE = 64;
+
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "solver-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ThreadPoolExecutor workers;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the SolverDaemon class.
+     * @param threads the number of searches run at once
+     */
+    public SolverDaemon(int threads) {
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE), runnable -> {
+                    Thread thread = new Thread(runnable, "solver-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Answers requests until the program is stopped.
+     * @param port the port to listen on
+     * @throws IOException if the port cannot be listened on
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Solver daemon listening on " + server.getLocalSocketAddress()
+                    + " with " + workers.getCorePoolSize() + " workers");
+            while (true) {
+                Socket socket = server.accept();
+                connections.execute(() -> answer(socket));
+            }
+        }
+    }
+
+    /**
+     * Reads a request from a connection, answers it and closes the connection.
+     * @param socket the connection
+     */
+    private void answer(Socket socket) {
+        long start = System.nanoTime();
+        try (socket) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            String reply;
+            String kind = null;
+            if (line == null || line.isEmpty()) {
+                reply = SolverClient.ERROR + " empty request\n";
+            } else if (line.equals("stats")) {
+                reply = SolverClient.OK + "\n" + stats();
+            } else {
+                String[] words = line.split("\t");
+                kind = words[0];
+                reply = solve(kind, Arrays.copyOfRange(words, 1, words.length));
+            }
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(reply);
+            writer.flush();
+            if (kind != null) {
+                latencies.computeIfAbsent(kind, k -> new Latencies()).add(System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            // the client went away; there is nobody to tell
+        }
+    }
+
+    /**
+     * Solves a puzzle, or waits for the search already solving it.
+     * @param kind the kind of puzzle
+     * @param args the program's arguments and switches
+     * @return the reply, status line included
+     */
+    private String solve(String kind, String[] args) {
+        if (Arrays.stream(args).anyMatch(arg -> arg.startsWith("--json"))) {
+            return SolverClient.ERROR + " --json is not supported by the daemon\n";
+        }
+        String key = key(kind, args);
+        CompletableFuture<String> search = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, search);
+        if (running != null) {
+            latencies.computeIfAbsent(kind, k -> new Latencies()).shared();
+            search = running;
+        } else {
+            CompletableFuture<String> result = search;
+            try {
+                workers.execute(() -> {
+                    try {
+                        String text = Programs.run(kind, args, SolverOptions.parse(args));
+                        inFlight.remove(key, result);
+                        result.complete(SolverClient.OK + "\n" + text);
+                    } catch (Exception | Error e) {
+                        inFlight.remove(key, result);
+                        result.complete(SolverClient.ERROR + " " + e + "\n");
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key, result);
+                return SolverClient.ERROR + " busy\n";
+            }
+        }
+        try {
+            return search.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return SolverClient.ERROR + " " + e + "\n";
+        }
+    }
+
+    /**
+     * Returns what identifies a request: its puzzle arguments in order and its switches
+     * in any order, since the switches do not depend on their order.
+     * @param kind the kind of puzzle
+     * @param args the program's arguments and switches
+     * @return the key of the request
+     */
+    private static String key(String kind, String[] args) {
+        List<String> arguments = new ArrayList<>();
+        List<String> switches = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? switches : arguments).add(arg);
+        }
+        switches.sort(null);
+        return kind + '\t' + String.join("\t", arguments) + '\t' + String.join("\t", switches);
+    }
+
+    /**
+     * Returns the latency figures of every kind of puzzle asked for so far.
+     * @return one line per kind of puzzle
+     */
+    private String stats() {
+        StringBuilder text = new StringBuilder();
+        new TreeMap<>(latencies).forEach((kind, times) -> text.append(kind).append(": ").append(times).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * The latencies of the most recent requests for one kind of puzzle.
+     */
+    private static class Latencies {
+        private static final int KEPT = 4096;
+        private final long[] nanos = new long[KEPT];
+        private long requests;
+        private long shared;
+
+        synchronized void add(long latency) {
+            nanos[(int) (requests++ % KEPT)] = latency;
+        }
+
+        synchronized void shared() {
+            shared++;
+        }
+
+        /**
+         * Returns the count and percentiles, such as "12 requests (3 shared), p50 1.2 ms, p99 40.1 ms".
+         * @return the figures
+         */
+        @Override
+        public synchronized String toString() {
+            long[] sorted = Arrays.copyOf(nanos, (int) Math.min(requests, KEPT));
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT, "%d requests (%d shared), p50 %.1f ms, p99 %.1f ms",
+                    requests, shared, percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+        }
+    }
+
+    /**
+     * Runs the daemon.
+     * @param args [--port=N] (default {@value SolverClient#DEFAULT_PORT}) and
+     *             [--threads=N] (the number of searches run at once)
+     * @throws IOException if the port cannot be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        int port = SolverClient.DEFAULT_PORT;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                System.out.println("Usage: java SolverDaemon [--port=N] [--threads=N]");
+                return;
+            }
+        }
+        new SolverDaemon(threads).serve(port);
+    }
+}
@@ -1,9 +1,11 @@
 package puzzles.clock;
 
-import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solution;
 import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverClient;
+import puzzles.common.solver.SolverOptions;
 
-import java.util.Collection;
+import java.io.PrintStream;
 
 /**
  * Main class for the clock puzzle.
@@ -16,33 +18,49 @@ public class Clock {
      *
      * @param args [0]: the number of hours in the clock;
      *             [1]: the starting hour;
-     *             [2]: the finish hour.
+     *             [2]: the finish hour;
+     *             plus any of the switches in {@link SolverOptions}.
      */
     public static void main(String[] args) {
+        SolverOptions options = SolverOptions.parse(args);
+        args = options.getArguments();
         if (args.length < 3) {
-            System.out.println(("Usage: java Clock hours start finish"));
-        } else {
-            // TODO YOUR MAIN CODE HERE
-            int hours = Integer.parseInt(args[0]);
-            int start = Integer.parseInt(args[1]);
-            int end = Integer.parseInt(args[2]);
+            System.out.println(("Usage: java Clock hours start finish " + SolverOptions.USAGE));
+        } else if (!SolverClient.forward("clock", options, System.out)) {
+            solve(args, options, System.out);
+        }
+    }
+
+    /**
+     * Solve an instance of the clock puzzle and print the solution.
+     *
+     * @param args [0]: the number of hours in the clock;
+     *             [1]: the starting hour;
+     *             [2]: the finish hour.
+     * @param options the solver switches
+     * @param out where to print the solution
+     */
+    public static void solve(String[] args, SolverOptions options, PrintStream out) {
+        int hours = Integer.parseInt(args[0]);
+        int start = Integer.parseInt(args[1]);
+        int end = Integer.parseInt(args[2]);
 
-            ClockConfig clockConfig = new ClockConfig(hours, start, end);
-            Solver solver = new Solver();
-            Collection<Configuration> path = solver.solve(clockConfig);
+        ClockConfig clockConfig = new ClockConfig(hours, start, end);
+        Solver solver = options.newSolver();
+        Solution path = options.solve(solver, clockConfig);
 
-            System.out.println("Hours: " + hours + ", Start: " + start + ", End: " + end);
-            System.out.println("Total configs: " + solver.getTotal());
-            System.out.println("Unique configs: " + solver.getUnique());
-            if (path != null) {
-                int temp= 0;
-                for (Configuration config : path) {
-                    System.out.println("Step "+temp+":"+config.toString());
-                    temp++;
-                }
-            } else {
-                System.out.println("No solution");
-            }
+        out.println("Hours: " + hours + ", Start: " + start + ", End: " + end);
+        out.println("Total configs: " + solver.getTotal());
+        out.println("Unique configs: " + solver.getUnique());
+        options.report(solver, out);
+        if (path != null) {
+            path.print(out, (step, config, to) -> {
+                to.append("Step ").append(Integer.toString(step)).append(':');
+                config.appendTo(to);
+                to.append(System.lineSeparator());
+            });
+        } else {
+            out.println("No solution");
         }
     }
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 package puzzles.clock;
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.PackedConfiguration;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Main class for the clock puzzle.
@@ -15,7 +17,7 @@ import java.util.List;
  * </p>
  * @author Ashrith V. Mudundi
  */
-public class ClockConfig implements Configuration {
+public class ClockConfig implements PackedConfiguration {
     private final int hours;
     private final int current;
     private final int end;
@@ -51,13 +53,88 @@ public class ClockConfig implements Configuration {
         // Returns a collection of neighboring hours from the current hour. there are two neighbors
         // for each hour. For example, if the current hour is 3, the neighbors are 2 and 4.
         // The current hour can never be equal to 0 or hours + 1.
-        if(this.current == 1){//if the current hour is 1
-            return List.of(new ClockConfig(this.hours, this.hours, this.end), new ClockConfig(this.hours, this.current+1, this.end));
-        }
-        if(this.current == this.hours){//if the current hour is the last hour
-            return List.of(new ClockConfig(this.hours, this.current-1, this.end), new ClockConfig(this.hours, 1, this.end));
+        return List.of(turned(-1), turned(1));
+    }
+
+    /**
+     * Hands the hour before and the hour after the current one to the action.
+     * @param action what to do with each neighbor
+     */
+    @Override
+    public void forEachNeighbor(Consumer<Configuration> action) {
+        action.accept(turned(-1));
+        action.accept(turned(1));
+    }
+
+    /**
+     * Returns the configuration with the hand moved, wrapping around past the first
+     * and the last hour.
+     * @param step the number of hours to move the hand, negative to move it back
+     * @return the configuration with the hand moved
+     */
+    private ClockConfig turned(int step) {
+        return new ClockConfig(this.hours, Math.floorMod(this.current - 1 + step, this.hours) + 1, this.end);
+    }
+
+    /**
+     * Returns the configurations that lead to this one. The hand can move both ways,
+     * so these are the same as the neighbors.
+     * @return a collection of the configurations that lead to this configuration.
+     */
+    @Override
+    public Collection<Configuration> getPredecessors() {
+        return getNeighbors();
+    }
+
+    /**
+     * Returns the only goal of the puzzle, the finish hour.
+     * @return the finish hour, or nothing if it is not on the clock.
+     */
+    @Override
+    public Collection<Configuration> getGoals() {
+        if (this.end < 1 || this.end > this.hours) {
+            return List.of();
         }
-        return List.of(new ClockConfig(this.hours, this.current-1, this.end), new ClockConfig(this.hours, this.current+1, this.end));
+        return List.of(new ClockConfig(this.hours, this.end, this.end));
+    }
+
+    /**
+     * The current hour always fits in a single long.
+     * @return 1
+     */
+    @Override
+    public int packedLongs() {
+        return 1;
+    }
+
+    /**
+     * Packs this configuration as its current hour.
+     * @return the current hour
+     */
+    @Override
+    public long packLow() {
+        return this.current;
+    }
+
+    /**
+     * Rebuilds a configuration of this clock from its current hour.
+     * @param low the current hour
+     * @param high unused
+     * @return the configuration
+     */
+    @Override
+    public PackedConfiguration unpack(long low, long high) {
+        return new ClockConfig(this.hours, (int) low, this.end);
+    }
+
+    /**
+     * Returns the fingerprint of this configuration, which unlike its string includes
+     * the size of the clock and the finish hour.
+     * @return the fingerprint of this configuration.
+     */
+    @Override
+    public long fingerprint() {
+        return Configuration.fingerprint("clock " + this.hours + " " + this.current + " " + this.end);
     }
 
     /**
@@ -0,0 +1,95 @@
+package puzzles.common;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Hands the events of a puzzle model to its observers.
+ * <p>
+ *     By default an event is delivered at once, on the thread that published it, so a
+ *     text view prints every move as it is made. Given a dispatcher (a JavaFX view
+ *     passes Platform::runLater), the bus instead delivers on the dispatcher, and the
+ *     events published before a delivery has run are merged into one (see
+ *     {@link ModelEvent#merge(ModelEvent)}): a burst of moves, such as a whole solution
+ *     played at once, reaches the view as a single redraw of the cells it changed.
+ *     Events may then be published from any thread.
+ * </p>
+ *
+ * @param <Subject> the model
+ * @param <Cell> what a cell of the model's board holds
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class EventBus<Subject, Cell> {
+    private final Subject subject;
+    private final List<Observer<Subject, ModelEvent<Cell>>> observers = new CopyOnWriteArrayList<>();
+    private volatile Executor dispatcher;
+    /** the events waiting for the dispatcher, merged; null if there are none */
+    private ModelEvent<Cell> pending;
+
+    /**
+     * Constructor for the EventBus class.
+     * @param subject the model whose events these are
+     */
+    public EventBus(Subject subject) {
+        this.subject = subject;
+    }
+
+    /**
+     * Add an observer, which is told of every event from now on.
+     * @param observer the observer
+     */
+    public void subscribe(Observer<Subject, ModelEvent<Cell>> observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * Sets where the events are delivered.
+     * @param dispatcher the executor that delivers merged events, or null to deliver
+     *                   each one at once on the thread that publishes it
+     */
+    public void setDispatcher(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Publishes an event.
+     * @param event the event
+     */
+    public void publish(ModelEvent<Cell> event) {
+        Executor to = dispatcher;
+        if (to == null) {
+            deliver(event);
+            return;
+        }
+        synchronized (this) {
+            if (pending != null) {
+                pending = pending.merge(event);
+                return; // the delivery already asked for takes this one too
+            }
+            pending = event;
+        }
+        to.execute(this::flush);
+    }
+
+    /**
+     * Delivers the events that have been merged so far.
+     */
+    private void flush() {
+        ModelEvent<Cell> event;
+        synchronized (this) {
+            event = pending;
+            pending = null;
+        }
+        if (event != null) {
+            deliver(event);
+        }
+    }
+
+    private void deliver(ModelEvent<Cell> event) {
+        for (Observer<Subject, ModelEvent<Cell>> observer : observers) {
+            observer.update(subject, event);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package puzzles.common;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What a puzzle model tells its views: what happened, the message to show and the
+ * cells of the board that changed, with what they hold now. A view can redraw from
+ * the event alone, without reading the model, so it does not matter which thread the
+ * model was changed on.
+ * <p>
+ *     An event either carries the whole board (a puzzle was loaded or reset) or only
+ *     the cells that changed. Events that arrive faster than a view can draw them are
+ *     merged by the {@link EventBus} with {@link #merge(ModelEvent)}: the merged event
+ *     carries every cell that any of them changed, as it was last, and the kind and
+ *     message of the last one.
+ * </p>
+ *
+ * @param kind what happened
+ * @param message the message for the user
+ * @param changed the cells that changed, by their coordinates, with what they hold now
+ * @param wholeBoard true if the cells are the whole board, which may have changed size
+ * @param count the number of events merged into this one
+ * @param <Cell> what a cell of the board holds
+ *
+ * @author Ashrith V. Mudundi
+ */
+public record ModelEvent<Cell>(Kind kind, String message, Map<Coordinates, Cell> changed, boolean wholeBoard,
+                               int count) {
+    /**
+     * What happened to the model.
+     */
+    public enum Kind {
+        /** a puzzle was loaded; the event carries the whole board */
+        LOADED,
+        /** a puzzle could not be loaded */
+        LOAD_FAILED,
+        /** the puzzle was set back to its start; the event carries the whole board */
+        RESET,
+        /** a move was made */
+        MOVED,
+        /** a move was made and the puzzle is solved */
+        SOLVED,
+        /** a move was refused */
+        ILLEGAL_MOVE,
+        /** a hint search started */
+        HINT_SEARCHING,
+        /** a hint search got further; the model has the latest snapshot */
+        HINT_PROGRESS,
+        /** a hint was found; a hint that is played comes as a move instead */
+        HINT_READY,
+        /** no hint could be given */
+        HINT_FAILED
+    }
+
+    /**
+     * Creates an event that changes no cells.
+     * @param kind what happened
+     * @param message the message for the user
+     * @param <Cell> what a cell of the board holds
+     * @return the event
+     */
+    public static <Cell> ModelEvent<Cell> of(Kind kind, String message) {
+        return new ModelEvent<>(kind, message, Map.of(), false, 1);
+    }
+
+    /**
+     * Creates an event that changes some cells.
+     * @param kind what happened
+     * @param message the message for the user
+     * @param changed the cells that changed, with what they hold now
+     * @param <Cell> what a cell of the board holds
+     * @return the event
+     */
+    public static <Cell> ModelEvent<Cell> cells(Kind kind, String message, Map<Coordinates, Cell> changed) {
+        return new ModelEvent<>(kind, message, Collections.unmodifiableMap(changed), false, 1);
+    }
+
+    /**
+     * Creates an event that carries the whole board.
+     * @param kind what happened
+     * @param message the message for the user
+     * @param board every cell of the board
+     * @param <Cell> what a cell of the board holds
+     * @return the event
+     */
+    public static <Cell> ModelEvent<Cell> board(Kind kind, String message, Map<Coordinates, Cell> board) {
+        return new ModelEvent<>(kind, message, Collections.unmodifiableMap(board), true, 1);
+    }
+
+    /**
+     * Merges an event that came after this one into it. A hint progress event does not
+     * hide the kind and message of the events before it.
+     * @param later the later event
+     * @return the event with the cells of both and the kind and message of the later one
+     */
+    public ModelEvent<Cell> merge(ModelEvent<Cell> later) {
+        Map<Coordinates, Cell> cells;
+        if (later.wholeBoard()) {
+            cells = later.changed();
+        } else if (later.changed().isEmpty()) {
+            cells = changed;
+        } else {
+            cells = new LinkedHashMap<>(changed);
+            cells.putAll(later.changed());
+            cells = Collections.unmodifiableMap(cells);
+        }
+        boolean last = later.kind() != Kind.HINT_PROGRESS || kind == Kind.HINT_PROGRESS;
+        return new ModelEvent<>(last ? later.kind() : kind, last ? later.message() : message, cells,
+                wholeBoard || later.wholeBoard(), count + later.count());
+    }
+}
@@ -0,0 +1,174 @@
+package puzzles.common.solver;
+
+import java.util.*;
+
+/**
+ * A best-first (A*) solver. Configurations are expanded in order of moves made so far
+ * plus the heuristic's estimate of the moves left, using a binary heap with lazy
+ * deletion: when a shorter way to a configuration turns up, a new entry is pushed and
+ * the old one is skipped once it reaches the top of the heap.
+ * <p>
+ *     With an admissible heuristic the path returned is a shortest one, like the
+ *     breadth-first {@link Solver}; with a heuristic that is always zero it simply
+ *     behaves like one.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class AStarSolver extends Solver {
+    private final Heuristic<Configuration> heuristic;
+
+    /**
+     * Constructor for the AStarSolver class.
+     * @param heuristic the estimate of the moves left from a configuration
+     */
+    public AStarSolver(Heuristic<Configuration> heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Searches for a solution, always expanding the open configuration with the
+     * smallest estimated path length next. A search that runs out of budget reports
+     * the path to the expanded configuration with the lowest estimate, preferring the
+     * deeper one on ties.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    @Override
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
+        total=1;
+        unique=1;
+        stats = newStats();
+        Map<Configuration, Node> best = new HashMap<>();
+        try {
+            return expand(initialConfig, initialConfig.canonicalize(), budget, best);
+        } finally {
+            stats.finish(total, unique, best.size());
+        }
+    }
+
+    /**
+     * Runs the search over canonical forms. The open list has no depths, so the
+     * statistics only time the expansions.
+     * @param initialConfig the starting configuration
+     * @param canonicalStart its canonical form
+     * @param budget the limits the search has to stay within
+     * @param best the cheapest known entry of every configuration seen
+     * @return how the search ended
+     */
+    private SolverResult expand(Configuration initialConfig, Configuration canonicalStart, SolverBudget budget,
+                                Map<Configuration, Node> best) {
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        int estimate = heuristic.estimate(canonicalStart);
+        if (estimate == Heuristic.UNREACHABLE) {
+            return SolverResult.unsolvable(0, stats);
+        }
+        boolean folded = canonicalStart != initialConfig;
+        long order = 0;
+        Node root = new Node(canonicalStart, null, 0, estimate, order++);
+        best.put(canonicalStart, root);
+        open.add(root);
+        Node closest = root;
+        int deepest = 0;
+        while (!open.isEmpty()) {
+            Node current = open.remove();
+            if (best.get(current.config) != current) {
+                continue; // a shorter way here was found after this entry was pushed
+            }
+            if (current.config.isSolution()) {
+                return SolverResult.solved(real(initialConfig, backtrace(current), folded), stats);
+            }
+            if (budget.isExhausted(stats.getExpanded())) {
+                return SolverResult.exhausted(real(initialConfig, backtrace(closest), folded), closest.estimate,
+                        deepest, stats);
+            }
+            if (current.estimate < closest.estimate
+                    || (current.estimate == closest.estimate && current.moves > closest.moves)) {
+                closest = current;
+            }
+            deepest = Math.max(deepest, current.moves);
+            int moves = current.moves + 1;
+            long start = System.nanoTime();
+            Collection<Configuration> neighbors = current.config.getNeighbors();
+            long generated = System.nanoTime();
+            for (Configuration original : neighbors) {
+                total++;
+                Configuration neighbor = original.canonicalize();
+                folded |= neighbor != original;
+                Node known = best.get(neighbor);
+                if (known != null && known.moves <= moves) {
+                    continue;
+                }
+                if (known == null) {
+                    unique++;
+                    estimate = heuristic.estimate(neighbor);
+                    if (estimate == Heuristic.UNREACHABLE) {
+                        best.put(neighbor, new Node(neighbor, null, 0, estimate, order++));
+                        continue;
+                    }
+                } else {
+                    estimate = known.estimate;
+                }
+                Node next = new Node(neighbor, current, moves, estimate, order++);
+                best.put(neighbor, next);
+                open.add(next);
+            }
+            stats.expanded(generated - start, System.nanoTime() - generated);
+        }
+        return SolverResult.unsolvable(deepest, stats);
+    }
+
+    /**
+     * Turns a path through canonical forms into real moves, if it needs to be.
+     * @param initialConfig the starting configuration
+     * @param path the path through the canonical forms
+     * @param folded true if any configuration was replaced by its canonical form
+     * @return the path of real configurations
+     */
+    private static Collection<Configuration> real(Configuration initialConfig, Collection<Configuration> path,
+                                                  boolean folded) {
+        return folded ? unfold(initialConfig, path) : path;
+    }
+
+    /**
+     * Rebuilds the path by following the parent links back to the start.
+     * @param node the solution's node
+     * @return the path from the start to the solution
+     */
+    private Collection<Configuration> backtrace(Node node) {
+        LinkedList<Configuration> path = new LinkedList<>();
+        for (; node != null; node = node.parent) {
+            path.addFirst(node.config);
+        }
+        return path;
+    }
+
+    /**
+     * An entry in the open list. Entries are ordered on the estimated path length,
+     * preferring the deeper entry on ties and then the one pushed first.
+     */
+    private static class Node implements Comparable<Node> {
+        private final Configuration config;
+        private final Node parent;
+        private final int moves;
+        private final int estimate;
+        private final long order;
+
+        Node(Configuration config, Node parent, int moves, int estimate, long order) {
+            this.config = config;
+            this.parent = parent;
+            this.moves = moves;
+            this.estimate = estimate;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            int result = Integer.compare(this.moves + this.estimate, other.moves + other.estimate);
+            if (result == 0) result = Integer.compare(other.moves, this.moves);
+            if (result == 0) result = Long.compare(this.order, other.order);
+            return result;
+        }
+    }
+}
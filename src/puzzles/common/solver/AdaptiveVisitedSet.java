@@ -0,0 +1,260 @@
+package puzzles.common.solver;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The visited set and parent links of the breadth-first search, which change to a more
+ * compact representation when the search is about to run out of heap.
+ * <p>
+ *     A search starts out with its configurations as objects in a {@link StateArena}.
+ *     Every {@value #SAMPLE_EVERY} new configurations, and at the start of every depth,
+ *     the set's own footprint is estimated and divided by the number of configurations to
+ *     get the bytes each one costs (sets smaller than that are left alone); at the start
+ *     of a depth the size of the next one is projected from how the last one grew. When
+ *     the projected footprint crosses the given fraction of the maximum heap,
+ *     {@link PackedConfiguration}s are moved into a {@link PackedStateTable} under the
+ *     same numbers, so the search carries on where it was. If even that is projected to
+ *     outgrow the heap, the search is handed to the disk (see {@link ExternalSolver}) at
+ *     the start of the next depth.
+ * </p>
+ * <p>
+ *     The footprint of the objects is the arena's arrays plus, for every configuration,
+ *     the size of the newest one less what it shares with the start (see
+ *     {@link ObjectSizes}); the footprint of the packed table is its arrays' capacity.
+ *     Only the search's own structures are counted, so searches running side by side do
+ *     not see each other's heap. Every switch is recorded in the search's
+ *     {@link SolverStats}.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+class AdaptiveVisitedSet {
+    /**
+     * How the configurations are held.
+     */
+    enum Representation {
+        /** as objects, with their hashCode and equals */
+        OBJECTS,
+        /** packed into longs in primitive arrays */
+        PACKED,
+        /** in depth files on disk */
+        DISK
+    }
+
+    private static final int SAMPLE_EVERY = 1 << 12;
+
+    private final long limitBytes;
+    private final SolverStats stats;
+    private final List<Integer> depthStarts = new ArrayList<>();
+    private Representation representation = Representation.OBJECTS;
+    private StateArena arena = new StateArena();
+    private PackedStateTable table;
+    private PackedConfiguration packedRoot;
+    private Set<Object> sharedWithStart;
+    private long projectedSize;
+    private int nextSample = SAMPLE_EVERY;
+
+    /**
+     * Constructor for the AdaptiveVisitedSet class. The first configuration added is
+     * the start.
+     * @param heapFraction the share of the maximum heap the search may project to fill
+     * @param stats the statistics the switches are recorded in
+     */
+    AdaptiveVisitedSet(double heapFraction, SolverStats stats) {
+        this.limitBytes = (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        this.stats = stats;
+    }
+
+    /**
+     * Adds a configuration unless it is already in the set.
+     * @param config the configuration
+     * @param parent the number of the configuration it was reached from
+     * @return the new configuration's number, or a negative number if it was seen before
+     */
+    int add(Configuration config, int parent) {
+        int id;
+        if (table != null) {
+            PackedConfiguration packed = (PackedConfiguration) config;
+            id = table.add(packed.packLow(), packed.packHigh(), parent);
+        } else {
+            id = arena.add(config, parent);
+        }
+        if (id >= nextSample) {
+            nextSample = id + SAMPLE_EVERY;
+            adapt(false);
+        }
+        return id;
+    }
+
+    /**
+     * Starts a new depth: projects the size the set will have once it is expanded and
+     * switches representation if that will not fit.
+     * @param frontierStart the number of the first configuration of the new depth
+     * @return the representation to carry on with; DISK if the caller has to hand the
+     * search over to the disk
+     */
+    Representation beginDepth(int frontierStart) {
+        int frontier = size() - frontierStart;
+        if (!depthStarts.isEmpty()) {
+            int previous = frontierStart - depthStarts.get(depthStarts.size() - 1);
+            projectedSize = size() + (long) Math.ceil((double) frontier * frontier / Math.max(1, previous));
+        } else {
+            projectedSize = size();
+        }
+        depthStarts.add(frontierStart);
+        adapt(true);
+        return representation;
+    }
+
+    /**
+     * Switches to the next representation while the projected footprint crosses the limit.
+     * @param atDepthStart true if no configuration of the current depth has been expanded yet
+     */
+    private void adapt(boolean atDepthStart) {
+        if (size() < SAMPLE_EVERY) {
+            return; // too few to tell what each one costs
+        }
+        long size = Math.max(size(), projectedSize);
+        long bytesPerState = bytesPerState();
+        if (bytesPerState * size <= limitBytes) {
+            return;
+        }
+        if (representation == Representation.OBJECTS
+                && arena.get(0) instanceof PackedConfiguration root && root.packedLongs() > 0) {
+            packedRoot = root;
+            pack();
+            record(Representation.PACKED, bytesPerState, size);
+            bytesPerState = bytesPerState();
+        }
+        if (representation == Representation.PACKED && atDepthStart && bytesPerState * size > limitBytes) {
+            representation = Representation.DISK;
+            record(Representation.DISK, bytesPerState, size);
+        }
+    }
+
+    /**
+     * Moves every configuration into a packed table under the same number and lets go of
+     * the objects.
+     */
+    private void pack() {
+        PackedStateTable packed = new PackedStateTable(packedRoot.packedLongs(), false);
+        for (int id = 0; id < arena.size(); id++) {
+            PackedConfiguration state = (PackedConfiguration) arena.get(id);
+            packed.add(state.packLow(), state.packHigh(), arena.parent(id));
+        }
+        table = packed;
+        arena = null;
+        sharedWithStart = null;
+        representation = Representation.PACKED;
+    }
+
+    private void record(Representation to, long bytesPerState, long size) {
+        stats.switched(new SolverStats.Switch(to.name().toLowerCase(), depthStarts.size() - 1, size(),
+                bytesPerState, bytesPerState * size, limitBytes));
+    }
+
+    /**
+     * Estimates the heap each configuration costs from the footprint of the set.
+     * @return the estimated bytes per configuration
+     */
+    private long bytesPerState() {
+        long footprint;
+        if (table != null) {
+            footprint = table.footprint();
+        } else {
+            if (sharedWithStart == null) {
+                sharedWithStart = ObjectSizes.reachable(arena.get(0));
+            }
+            footprint = arena.footprint(ObjectSizes.deepSize(arena.get(size() - 1), sharedWithStart));
+        }
+        return Math.max(1, footprint / Math.max(1, size()));
+    }
+
+    /**
+     * Get the number of configurations in the set.
+     * @return the size
+     */
+    int size() {
+        return table != null ? table.size() : arena.size();
+    }
+
+    /**
+     * Get a configuration by its number.
+     * @param id the number
+     * @return the configuration
+     */
+    Configuration get(int id) {
+        return table != null ? packedRoot.unpack(table.low(id), table.high(id)) : arena.get(id);
+    }
+
+    /**
+     * Get the number of the configuration another one was reached from.
+     * @param id the configuration's number
+     * @return the parent's number, or a negative number for the start
+     */
+    int parent(int id) {
+        return table != null ? table.parent(id) : arena.parent(id);
+    }
+
+    /**
+     * Rebuilds the path from the start to a configuration.
+     * @param id the number of the last configuration on the path
+     * @return the path, starting with the start configuration
+     */
+    List<Configuration> path(int id) {
+        if (table == null) {
+            return arena.path(id);
+        }
+        LinkedList<Configuration> path = new LinkedList<>();
+        for (int step = id; step != PackedStateTable.NO_PARENT; step = table.parent(step)) {
+            path.addFirst(get(step));
+        }
+        return path;
+    }
+
+    /**
+     * Get the numbers at which the depths so far start, the current depth last.
+     * @return the first number of every depth
+     */
+    List<Integer> getDepthStarts() {
+        return depthStarts;
+    }
+
+    /**
+     * Takes up the depths of a search that is carried on from a {@link Checkpoint}.
+     * @param starts the number of the first configuration of every depth so far
+     */
+    void resumeDepths(List<Integer> starts) {
+        depthStarts.clear();
+        depthStarts.addAll(starts);
+    }
+
+    /**
+     * Get the start, which the packed table's configurations are unpacked against.
+     * @return the start, or null while the configurations are objects
+     */
+    PackedConfiguration getPackedRoot() {
+        return packedRoot;
+    }
+
+    /**
+     * Get the way the configurations are held now.
+     * @return the representation
+     */
+    Representation getRepresentation() {
+        return representation;
+    }
+
+    /**
+     * Hands the packed table over for writing to disk; the set holds nothing afterwards.
+     * @return the table
+     */
+    PackedStateTable release() {
+        PackedStateTable released = table;
+        table = null;
+        return released;
+    }
+}
@@ -0,0 +1,43 @@
+package puzzles.common.solver;
+
+/**
+ * Lets one thread stop a search running on another. The search checks the token
+ * before every expansion, so it stops soon after {@link #cancel()} is called and
+ * reports whatever it found so far.
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class CancellationToken {
+    private final CancellationToken parent;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor for the CancellationToken class.
+     */
+    public CancellationToken() {
+        this(null);
+    }
+
+    /**
+     * Constructor for a CancellationToken that is also cancelled along with another one.
+     * @param parent the token whose cancellation cancels this one too, or null
+     */
+    public CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Asks the searches holding this token to stop.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Has the search been asked to stop?
+     * @return true once {@link #cancel()} has been called, on this token or its parent
+     */
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+}
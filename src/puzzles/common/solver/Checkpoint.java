@@ -0,0 +1,250 @@
+package puzzles.common.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The checkpoint file of a breadth-first search, from which a search that was killed
+ * can carry on exactly where it was.
+ * <p>
+ *     A checkpoint holds every configuration the search has discovered, in the order it
+ *     discovered them, packed by the puzzle's own {@link PackedConfiguration} and
+ *     followed by the number of its parent; then where the depths start, the number of
+ *     the next configuration to expand and the counters. Everything below that number
+ *     has been expanded and everything from it on has not, so that is the whole state of
+ *     the search. The file is named after the fingerprint of the starting configuration
+ *     and written under a temporary name of its own run first, so a search killed while
+ *     writing one leaves the previous checkpoint intact.
+ * </p>
+ * <p>
+ *     Searches of the same puzzle share that name, so a search has to {@link #claim()}
+ *     the checkpoint before reading or writing it, by locking a ".lock" file next to it.
+ *     The lock is held until the search {@link #release() releases} it, and a search
+ *     that cannot get it, because another program or another search in this one is
+ *     running the same puzzle, goes without checkpoints.
+ * </p>
+ * <p>
+ *     Writing is spread out so that it costs at most {@value #OVERHEAD} of the search's
+ *     time: after a checkpoint that took a given time to write, the search runs for
+ *     that time divided by {@value #OVERHEAD} before the next, and never for less than
+ *     the interval it was given.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+class Checkpoint {
+    /**
+     * Where a search stood at a checkpoint, besides its visited set.
+     * @param nextId the number of the next configuration to expand
+     * @param depth the depth being expanded
+     * @param depthEnd the number of the first configuration of the next depth
+     * @param depthStarts the number of the first configuration of every depth so far
+     * @param total the total count
+     * @param unique the unique count
+     * @param folded whether a configuration was replaced by its canonical form
+     */
+    record Progress(int nextId, int depth, int depthEnd, List<Integer> depthStarts,
+                    long total, long unique, boolean folded) {
+    }
+
+    /** the share of the search's time that writing checkpoints may take */
+    static final double OVERHEAD = 0.02;
+    /** where the checkpoints are kept */
+    static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".puzzles", "checkpoints");
+    /** the least time between two checkpoints unless told otherwise */
+    static final int DEFAULT_SECONDS = 10;
+
+    private static final int MAGIC = 0x505a436b; // "PZCk"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Path partial;
+    private final long fingerprint;
+    private final int longs;
+    private final long intervalNanos;
+    private long due;
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    /**
+     * Constructor for the Checkpoint class.
+     * @param directory the directory the checkpoints are kept in
+     * @param initialConfig the starting configuration, which names the file
+     * @param longs how many longs the puzzle packs into
+     * @param intervalNanos the least time between two checkpoints
+     */
+    Checkpoint(Path directory, Configuration initialConfig, int longs, long intervalNanos) {
+        this.fingerprint = initialConfig.fingerprint();
+        this.file = directory.resolve(String.format("%016x.checkpoint", fingerprint));
+        this.partial = file.resolveSibling(String.format("%s.%d-%08x.partial", file.getFileName(),
+                ProcessHandle.current().pid(), ThreadLocalRandom.current().nextInt()));
+        this.longs = longs;
+        this.intervalNanos = intervalNanos;
+        this.due = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Takes the lock on the checkpoint for this search, and removes what runs that were
+     * killed while writing it left behind.
+     * @return true if the search may read and write the checkpoint; false if another
+     * search holds it
+     * @throws IOException if the lock file cannot be opened
+     */
+    boolean claim() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // another search in this program holds it
+        }
+        if (lock == null) {
+            channel.close();
+            return false;
+        }
+        lockChannel = channel;
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(file.toAbsolutePath().getParent(),
+                file.getFileName() + ".*.partial")) {
+            for (Path leftover : stale) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lets go of the lock taken by {@link #claim()}.
+     */
+    void release() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            // the lock goes with the channel, or with the program at the latest
+        }
+        lock = null;
+        lockChannel = null;
+    }
+
+    /**
+     * Is it time for the next checkpoint?
+     * @return true once the search has run long enough since the last one
+     */
+    boolean isDue() {
+        return System.nanoTime() - due >= 0;
+    }
+
+    /**
+     * Writes a checkpoint, replacing the previous one.
+     * @param visited the search's visited set
+     * @param progress where the search stands
+     * @throws IOException if the file cannot be written
+     */
+    void write(AdaptiveVisitedSet visited, Progress progress) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(longs);
+            int size = visited.size();
+            out.writeInt(size);
+            for (int id = 0; id < size; id++) {
+                PackedConfiguration state = (PackedConfiguration) visited.get(id);
+                out.writeLong(state.packLow());
+                if (longs > 1) {
+                    out.writeLong(state.packHigh());
+                }
+                out.writeInt(visited.parent(id));
+            }
+            out.writeInt(progress.depthStarts().size());
+            for (int depthStart : progress.depthStarts()) {
+                out.writeInt(depthStart);
+            }
+            out.writeInt(progress.nextId());
+            out.writeInt(progress.depth());
+            out.writeInt(progress.depthEnd());
+            out.writeLong(progress.total());
+            out.writeLong(progress.unique());
+            out.writeBoolean(progress.folded());
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long spent = System.nanoTime() - start;
+        due = System.nanoTime() + Math.max(intervalNanos, (long) (spent / OVERHEAD));
+    }
+
+    /**
+     * Reads the checkpoint of the search, if there is one, back into its visited set.
+     * @param visited the visited set, holding only the start
+     * @param root the canonical form of the start, which states are unpacked against
+     * @return where the search stood, or null if there is no checkpoint for this search
+     * @throws IOException if the checkpoint cannot be read or is not one of this search
+     */
+    Progress read(AdaptiveVisitedSet visited, PackedConfiguration root) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint
+                    || in.readInt() != longs) {
+                throw new IOException(file + " is not a checkpoint of this puzzle");
+            }
+            int size = in.readInt();
+            for (int id = 0; id < size; id++) {
+                long low = in.readLong();
+                long high = longs > 1 ? in.readLong() : 0L;
+                int parent = in.readInt();
+                if (id > 0 && visited.add(root.unpack(low, high), parent) != id) {
+                    throw new IOException(file + " holds a configuration twice");
+                }
+            }
+            int depths = in.readInt();
+            List<Integer> depthStarts = new ArrayList<>(depths);
+            for (int i = 0; i < depths; i++) {
+                depthStarts.add(in.readInt());
+            }
+            return new Progress(in.readInt(), in.readInt(), in.readInt(), depthStarts,
+                    in.readLong(), in.readLong(), in.readBoolean());
+        }
+    }
+
+    /**
+     * Removes the checkpoint once the search is over.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // a stale checkpoint only costs disk space
+        }
+    }
+
+    /**
+     * Get the file the checkpoints are written to.
+     * @return the file
+     */
+    Path getFile() {
+        return file;
+    }
+}
@@ -1,6 +1,8 @@
 package puzzles.common.solver;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * The representation of a single configuration for a puzzle.
@@ -20,6 +22,97 @@ public interface Configuration {
      */
     Collection<Configuration> getNeighbors();
 
+    /**
+     * Hands each neighbor of the current configuration to an action as soon as it is
+     * made, without collecting them first. Unlike {@link #getNeighbors()} the same
+     * neighbor may be handed over more than once. The default collects the neighbors
+     * anyway, so puzzles override it to save the collection on every expansion.
+     * @param action what to do with each neighbor
+     */
+    default void forEachNeighbor(Consumer<Configuration> action) {
+        getNeighbors().forEach(action);
+    }
+
+    /**
+     * Returns the representative of this configuration among those that are the same up
+     * to a symmetry of the puzzle, such as a board that looks the same turned around.
+     * The breadth-first, packed and A* searches keep only the representatives, and turn
+     * the path they find back into real moves at the end. A symmetry must keep
+     * solutions solutions and turn the moves from a configuration into the moves from
+     * its image. The default knows no symmetries.
+     * @return the canonical form, or this configuration itself if it is already canonical
+     */
+    default Configuration canonicalize() {
+        return this;
+    }
+
+    /**
+     * Get the collection of configurations that have the current configuration as one
+     * of their neighbors. Only the bidirectional search needs this, and only for
+     * puzzles that also supply their goals.
+     * @return All the predecessors, or null if the puzzle cannot undo its moves
+     * @see #getGoals()
+     */
+    default Collection<Configuration> getPredecessors() {
+        return null;
+    }
+
+    /**
+     * Get the solutions of the puzzle this configuration belongs to, for the backward
+     * half of the bidirectional search. The search only guarantees a shortest path
+     * when every reachable solution is in this collection.
+     * @return All the goal configurations, or null if the puzzle cannot be searched backwards
+     * @see #getPredecessors()
+     */
+    default Collection<Configuration> getGoals() {
+        return null;
+    }
+
+    /**
+     * Does {@link #getGoals()} list every solution of the puzzle? Only then is the path
+     * the bidirectional search finds guaranteed to be a shortest one.
+     * @return true if every reachable solution is among the goals; the default
+     */
+    default boolean hasAllGoals() {
+        return true;
+    }
+
+    /**
+     * Writes what {@link #toString()} returns, for printing long solutions without
+     * making a string per step. The default writes the string, so puzzles with large
+     * boards override it (and build their string with it).
+     * @param out where to write the configuration
+     * @throws IOException if it cannot be written
+     */
+    default void appendTo(Appendable out) throws IOException {
+        out.append(toString());
+    }
+
+    /**
+     * Get a 64-bit fingerprint that tells this configuration apart from every other
+     * configuration of every puzzle, for the {@link SolutionCache}. The default hashes
+     * the class name and {@link #toString()}, so puzzles whose string leaves out part of
+     * the state (the capacities of the buckets, say) must override it.
+     * @return the fingerprint
+     */
+    default long fingerprint() {
+        return fingerprint(getClass().getName() + '\n' + this);
+    }
+
+    /**
+     * Hashes a description of a configuration into a fingerprint (64-bit FNV-1a).
+     * @param text the description of the configuration
+     * @return the fingerprint
+     */
+    static long fingerprint(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     //////////////////////////////////////////////////////////////////////////////////////
     // The predecessor map from the BFS Solver forces to any puzzle configuration       //
     // to override the equals and hashCode methods.                                     //
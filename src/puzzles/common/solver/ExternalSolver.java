@@ -0,0 +1,601 @@
+package puzzles.common.solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * A breadth-first solver that keeps its search on disk instead of in the heap, for
+ * state spaces that do not fit in memory. It needs {@link PackedConfiguration}s;
+ * any other configuration is solved in memory by {@link Solver}.
+ * <p>
+ *     Every depth of the search is a file of records (packed configuration, packed
+ *     parent) sorted on the configuration. A depth is expanded by streaming its file
+ *     through memory-mapped windows into a fixed-size buffer of children; each time the
+ *     buffer fills up it is sorted and written out as a run. Duplicates are detected
+ *     late: the runs are merged, and every child that is already in one of the earlier
+ *     depth files is dropped during the same merge. The path is rebuilt by looking each
+ *     parent up in the file of the depth before it.
+ * </p>
+ * <p>
+ *     The regular breadth-first search hands its depths over to this one when its
+ *     visited set is about to outgrow the heap (see {@link AdaptiveVisitedSet}).
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class ExternalSolver extends Solver {
+    /**
+     * What the search did for one depth.
+     * @param depth the depth
+     * @param states the number of new configurations at this depth
+     * @param bytesWritten the bytes written to build this depth (runs and depth file)
+     * @param bytesRead the bytes read to build this depth (previous depths and runs)
+     */
+    public record Layer(int depth, long states, long bytesWritten, long bytesRead) {
+        @Override
+        public String toString() {
+            return "Depth " + depth + ": " + states + " configs, " + bytesWritten + " bytes written, "
+                    + bytesRead + " bytes read";
+        }
+    }
+
+    private static final int RECORD_LONGS = 4; // low, high, parent low, parent high
+    private static final int RECORD_BYTES = RECORD_LONGS * Long.BYTES;
+    private static final int WINDOW_BYTES = 1 << 24;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final int bufferRecords;
+    private final List<Layer> layers = new ArrayList<>();
+    private long bytesWritten;
+    private long bytesRead;
+
+    /**
+     * Constructor for the ExternalSolver class.
+     * @param directory where the search files are kept while solving
+     * @param bufferBytes the heap used for the buffer of children
+     */
+    public ExternalSolver(Path directory, long bufferBytes) {
+        this.directory = directory;
+        this.bufferRecords = (int) Math.max(1, Math.min(bufferBytes / RECORD_BYTES, Integer.MAX_VALUE / RECORD_LONGS));
+    }
+
+    /**
+     * Returns what the last search did at each depth.
+     * @return the depths, starting at the initial configuration
+     */
+    public List<Layer> getLayers() {
+        return Collections.unmodifiableList(layers);
+    }
+
+    /**
+     * Searches for a solution on disk. The budget is checked between depths; a search
+     * that runs out of it reports the path to the first configuration of the depth it
+     * stopped at. The search files are removed afterwards.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    @Override
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
+        layers.clear();
+        if (!(initialConfig instanceof PackedConfiguration start) || start.packedLongs() == 0) {
+            return super.search(initialConfig, budget);
+        }
+        total=1;
+        unique=1;
+        stats = newStats();
+        Path work = null;
+        try {
+            Files.createDirectories(directory);
+            work = Files.createTempDirectory(directory, "bfs-");
+            return searchLayers(start, work, budget);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            stats.finish(total, unique, unique);
+            if (work != null) {
+                delete(work);
+            }
+        }
+    }
+
+    /**
+     * Writes the start as the first depth file and expands the depth files from there.
+     * @param start the starting configuration
+     * @param work the directory for this search's files
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     * @throws IOException if a search file cannot be read or written
+     */
+    private SolverResult searchLayers(PackedConfiguration start, Path work, SolverBudget budget) throws IOException {
+        bytesWritten = 0;
+        bytesRead = 0;
+        PackedConfiguration root = (PackedConfiguration) start.canonicalize();
+        try (RecordWriter first = new RecordWriter(layerFile(work, 0))) {
+            first.write(root.packLow(), root.packHigh(), root.packLow(), root.packHigh());
+        }
+        layers.add(new Layer(0, 1, bytesWritten, bytesRead));
+        return expandLayers(start, root, work, 0, budget);
+    }
+
+    /**
+     * Carries on a breadth-first search whose visited set no longer fits in the heap.
+     * Every depth found so far is written out as a depth file, the visited set lets go
+     * of its table, and the search continues on disk from the last depth, which has not
+     * been expanded yet. The counters and statistics carry on from the search's; the
+     * budget is checked between depths. The search files are removed afterwards.
+     * @param initialConfig the starting configuration
+     * @param visited the search's visited set, packed
+     * @param total the search's total count so far
+     * @param unique the search's unique count so far
+     * @param stats the search's statistics
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     * @see AdaptiveVisitedSet
+     */
+    SolverResult resume(Configuration initialConfig, AdaptiveVisitedSet visited, long total, long unique,
+                        SolverStats stats, SolverBudget budget) {
+        layers.clear();
+        this.total = total;
+        this.unique = unique;
+        this.stats = stats;
+        List<Integer> depthStarts = visited.getDepthStarts();
+        Path work = null;
+        try {
+            Files.createDirectories(directory);
+            work = Files.createTempDirectory(directory, "bfs-");
+            writeDepths(work, visited.release(), depthStarts);
+            return expandLayers(initialConfig, visited.getPackedRoot(), work, depthStarts.size() - 1, budget);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (work != null) {
+                delete(work);
+            }
+        }
+    }
+
+    /**
+     * Writes the depths of a packed table out as depth files, through sorted runs like
+     * the children of an expansion.
+     * @param work the directory for this search's files
+     * @param states the table, numbered depth by depth from the start
+     * @param depthStarts the number of the first state of every depth
+     * @throws IOException if a search file cannot be written
+     */
+    private void writeDepths(Path work, PackedStateTable states, List<Integer> depthStarts) throws IOException {
+        bytesWritten = 0;
+        bytesRead = 0;
+        try (RecordWriter first = new RecordWriter(layerFile(work, 0))) {
+            first.write(states.low(0), states.high(0), states.low(0), states.high(0));
+        }
+        layers.add(new Layer(0, 1, bytesWritten, bytesRead));
+        long[] buffer = new long[bufferRecords * RECORD_LONGS];
+        for (int depth = 1; depth < depthStarts.size(); depth++) {
+            bytesWritten = 0;
+            bytesRead = 0;
+            int end = depth + 1 < depthStarts.size() ? depthStarts.get(depth + 1) : states.size();
+            List<Path> runs = new ArrayList<>();
+            int count = 0;
+            for (int id = depthStarts.get(depth); id < end; id++) {
+                int parent = states.parent(id);
+                int at = count * RECORD_LONGS;
+                buffer[at] = states.low(id);
+                buffer[at + 1] = states.high(id);
+                buffer[at + 2] = states.low(parent);
+                buffer[at + 3] = states.high(parent);
+                if (++count == bufferRecords) {
+                    runs.add(writeRun(work, runs.size(), buffer, count));
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                runs.add(writeRun(work, runs.size(), buffer, count));
+            }
+            layers.add(new Layer(depth, merge(work, depth - 1, runs), bytesWritten, bytesRead));
+        }
+    }
+
+    /**
+     * Expands the depth files until a solution turns up or a depth comes out empty.
+     * The visited set is the depth files themselves, so everything seen counts as visited.
+     * Configurations are kept in their canonical form, and tested as soon as they are
+     * generated.
+     * @param initialConfig the starting configuration
+     * @param root the canonical form of the start, which states are unpacked against
+     * @param work the directory for this search's files
+     * @param from the first depth to expand; its file and the earlier ones are written
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     * @throws IOException if a search file cannot be read or written
+     */
+    private SolverResult expandLayers(Configuration initialConfig, PackedConfiguration root, Path work, int from,
+                                      SolverBudget budget) throws IOException {
+        long[] buffer = new long[bufferRecords * RECORD_LONGS];
+        for (int depth = from; ; depth++) {
+            if (budget.isExhausted(stats.getExpanded())) {
+                try (RecordReader reader = new RecordReader(layerFile(work, depth))) {
+                    reader.next();
+                    Collection<Configuration> deepest = unfold(initialConfig, backtrace(root, work, depth,
+                            reader.parentLow, reader.parentHigh, root.unpack(reader.low, reader.high)));
+                    return SolverResult.exhausted(deepest, SolverResult.NO_ESTIMATE, depth, stats);
+                }
+            }
+            stats.beginDepth(layers.get(depth).states(), total, unique);
+            stats.expanded(layers.get(depth).states());
+            bytesWritten = 0;
+            bytesRead = 0;
+            List<Path> runs = new ArrayList<>();
+            int count = 0;
+            try (RecordReader reader = new RecordReader(layerFile(work, depth))) {
+                while (reader.next()) {
+                    PackedConfiguration current = root.unpack(reader.low, reader.high);
+                    if (depth == 0 && current.isSolution()) {
+                        return SolverResult.solved(unfold(initialConfig, List.of(current)), stats);
+                    }
+                    for (Configuration neighbor : current.getNeighbors()) {
+                        total++;
+                        PackedConfiguration packed = (PackedConfiguration) neighbor.canonicalize();
+                        if (packed.isSolution()) {
+                            // had it been seen before, the search would have stopped there
+                            unique++;
+                            List<Configuration> path = backtrace(root, work, depth,
+                                    reader.parentLow, reader.parentHigh, current);
+                            path.add(packed);
+                            return SolverResult.solved(unfold(initialConfig, path), stats);
+                        }
+                        int at = count * RECORD_LONGS;
+                        buffer[at] = packed.packLow();
+                        buffer[at + 1] = packed.packHigh();
+                        buffer[at + 2] = reader.low;
+                        buffer[at + 3] = reader.high;
+                        if (++count == bufferRecords) {
+                            runs.add(writeRun(work, runs.size(), buffer, count));
+                            count = 0;
+                        }
+                    }
+                }
+            }
+            if (count > 0) {
+                runs.add(writeRun(work, runs.size(), buffer, count));
+            }
+            long states = merge(work, depth, runs);
+            layers.add(new Layer(depth + 1, states, bytesWritten, bytesRead));
+            unique += states;
+            if (states == 0) {
+                return SolverResult.unsolvable(depth, stats);
+            }
+        }
+    }
+
+    /**
+     * Sorts the buffered children, drops repeats and writes them out as a run.
+     * @param work the directory for this search's files
+     * @param number the number of the run
+     * @param buffer the children
+     * @param count the number of children in the buffer
+     * @return the run file
+     * @throws IOException if the run cannot be written
+     */
+    private Path writeRun(Path work, int number, long[] buffer, int count) throws IOException {
+        sort(buffer, 0, count);
+        Path run = work.resolve("run-" + number + ".bin");
+        try (RecordWriter writer = new RecordWriter(run)) {
+            for (int i = 0; i < count; i++) {
+                int at = i * RECORD_LONGS;
+                if (i == 0 || compare(buffer[at + 1], buffer[at], buffer[at - 3], buffer[at - 4]) != 0) {
+                    writer.write(buffer[at], buffer[at + 1], buffer[at + 2], buffer[at + 3]);
+                }
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges the runs into the file of the next depth, keeping one record per configuration
+     * and only the configurations that are not in any earlier depth file.
+     * @param work the directory for this search's files
+     * @param depth the depth that was just expanded
+     * @param runs the runs of its children
+     * @return the number of configurations in the next depth
+     * @throws IOException if a file cannot be read or written
+     */
+    private long merge(Path work, int depth, List<Path> runs) throws IOException {
+        List<RecordReader> open = new ArrayList<>();
+        PriorityQueue<RecordReader> inputs = new PriorityQueue<>(
+                Math.max(1, runs.size()), (a, b) -> compare(a.high, a.low, b.high, b.low));
+        List<RecordReader> earlier = new ArrayList<>();
+        long states = 0;
+        try (RecordWriter writer = new RecordWriter(layerFile(work, depth + 1))) {
+            for (Path run : runs) {
+                RecordReader reader = new RecordReader(run);
+                open.add(reader);
+                if (reader.next()) {
+                    inputs.add(reader);
+                }
+            }
+            for (int previous = 0; previous <= depth; previous++) {
+                RecordReader reader = new RecordReader(layerFile(work, previous));
+                open.add(reader);
+                earlier.add(reader);
+                reader.next();
+            }
+            boolean first = true;
+            long lastLow = 0;
+            long lastHigh = 0;
+            while (!inputs.isEmpty()) {
+                RecordReader top = inputs.remove();
+                if (first || top.low != lastLow || top.high != lastHigh) {
+                    first = false;
+                    lastLow = top.low;
+                    lastHigh = top.high;
+                    if (!seenBefore(earlier, top.low, top.high)) {
+                        writer.write(top.low, top.high, top.parentLow, top.parentHigh);
+                        states++;
+                    }
+                }
+                if (top.next()) {
+                    inputs.add(top);
+                }
+            }
+        } finally {
+            for (RecordReader reader : open) {
+                reader.close();
+            }
+        }
+        for (Path run : runs) {
+            Files.delete(run);
+        }
+        return states;
+    }
+
+    /**
+     * Checks whether a configuration is in one of the earlier depth files. The keys
+     * asked about only ever grow, so each file is read through at most once per merge.
+     * @param earlier readers over the earlier depth files
+     * @param low the low bits of the configuration
+     * @param high the high bits of the configuration
+     * @return true if the configuration was seen before
+     * @throws IOException if a file cannot be read
+     */
+    private boolean seenBefore(List<RecordReader> earlier, long low, long high) throws IOException {
+        for (RecordReader reader : earlier) {
+            while (reader.valid && compare(reader.high, reader.low, high, low) < 0) {
+                reader.next();
+            }
+            if (reader.valid && reader.low == low && reader.high == high) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the path by looking each parent up in the depth file before it.
+     * @param root the canonical form of the start, which states are unpacked against
+     * @param work the directory for this search's files
+     * @param depth the depth of the last configuration
+     * @param parentLow the low bits of its parent
+     * @param parentHigh the high bits of its parent
+     * @param last the last configuration
+     * @return the path through the canonical forms from the start to the configuration
+     * @throws IOException if a depth file cannot be read
+     */
+    private List<Configuration> backtrace(PackedConfiguration root, Path work, int depth,
+                                          long parentLow, long parentHigh,
+                                          Configuration last) throws IOException {
+        LinkedList<Configuration> path = new LinkedList<>();
+        path.addFirst(last);
+        long[] record = new long[RECORD_LONGS];
+        for (int previous = depth - 1; previous >= 0; previous--) {
+            find(layerFile(work, previous), parentLow, parentHigh, record);
+            path.addFirst(root.unpack(record[0], record[1]));
+            parentLow = record[2];
+            parentHigh = record[3];
+        }
+        return path;
+    }
+
+    /**
+     * Binary searches a depth file for a configuration.
+     * @param file the depth file
+     * @param low the low bits of the configuration
+     * @param high the high bits of the configuration
+     * @param record filled in with the record that was found
+     * @throws IOException if the file cannot be read or does not hold the configuration
+     */
+    private void find(Path file, long low, long high, long[] record) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(RECORD_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long from = 0;
+            long to = channel.size() / RECORD_BYTES;
+            while (from < to) {
+                long middle = (from + to) >>> 1;
+                bytes.clear();
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, middle * RECORD_BYTES + bytes.position()) < 0) {
+                        throw new IOException("truncated search file " + file);
+                    }
+                }
+                bytesRead += RECORD_BYTES;
+                bytes.flip();
+                for (int i = 0; i < RECORD_LONGS; i++) {
+                    record[i] = bytes.getLong();
+                }
+                int order = compare(record[1], record[0], high, low);
+                if (order == 0) {
+                    return;
+                } else if (order < 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+        }
+        throw new IOException("parent missing from " + file);
+    }
+
+    private static Path layerFile(Path work, int depth) {
+        return work.resolve("depth-" + depth + ".bin");
+    }
+
+    private static int compare(long highA, long lowA, long highB, long lowB) {
+        int result = Long.compare(highA, highB);
+        if (result == 0) result = Long.compare(lowA, lowB);
+        return result;
+    }
+
+    /**
+     * Sorts the records in the buffer on their configuration (quicksort, finished off
+     * with an insertion sort for short ranges).
+     * @param records the buffer
+     * @param from the first record to sort
+     * @param to one past the last record to sort
+     */
+    private static void sort(long[] records, int from, int to) {
+        while (to - from > 16) {
+            int middle = ((from + to) >>> 1) * RECORD_LONGS;
+            long pivotLow = records[middle];
+            long pivotHigh = records[middle + 1];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(records[i * RECORD_LONGS + 1], records[i * RECORD_LONGS], pivotHigh, pivotLow) < 0) i++;
+                while (compare(records[j * RECORD_LONGS + 1], records[j * RECORD_LONGS], pivotHigh, pivotLow) > 0) j--;
+                if (i <= j) {
+                    swap(records, i++, j--);
+                }
+            }
+            // recurse into the smaller half, loop on the larger one
+            if (j - from < to - i) {
+                sort(records, from, j + 1);
+                from = i;
+            } else {
+                sort(records, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(records[j * RECORD_LONGS + 1], records[j * RECORD_LONGS],
+                    records[(j - 1) * RECORD_LONGS + 1], records[(j - 1) * RECORD_LONGS]) < 0; j--) {
+                swap(records, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(long[] records, int a, int b) {
+        for (int k = 0; k < RECORD_LONGS; k++) {
+            long temp = records[a * RECORD_LONGS + k];
+            records[a * RECORD_LONGS + k] = records[b * RECORD_LONGS + k];
+            records[b * RECORD_LONGS + k] = temp;
+        }
+    }
+
+    /**
+     * Removes a directory and everything in it. A failure is only noted in the statistics.
+     * @param work the directory
+     */
+    private void delete(Path work) {
+        try (Stream<Path> files = Files.list(work)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(work);
+        } catch (IOException e) {
+            stats.noticed("Could not remove " + work + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends records to a search file through a small direct buffer.
+     */
+    private class RecordWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+
+        RecordWriter(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        void write(long low, long high, long parentLow, long parentHigh) throws IOException {
+            if (buffer.remaining() < RECORD_BYTES) {
+                flush();
+            }
+            buffer.putLong(low).putLong(high).putLong(parentLow).putLong(parentHigh);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the records of a search file in order, mapping a window of it at a time.
+     */
+    private class RecordReader implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private MappedByteBuffer window;
+        private boolean valid;
+        private long low;
+        private long high;
+        private long parentLow;
+        private long parentHigh;
+
+        RecordReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        /**
+         * Moves on to the next record.
+         * @return false once the file is used up
+         * @throws IOException if the file cannot be read
+         */
+        boolean next() throws IOException {
+            if (position >= size) {
+                valid = false;
+                return false;
+            }
+            if (window == null || !window.hasRemaining()) {
+                long length = Math.min(WINDOW_BYTES, size - position);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                bytesRead += length;
+            }
+            low = window.getLong();
+            high = window.getLong();
+            parentLow = window.getLong();
+            parentHigh = window.getLong();
+            position += RECORD_BYTES;
+            valid = true;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package puzzles.common.solver;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A breadth-first solver that forgets every depth but the last ones, so that its memory
+ * grows with the width of the puzzle instead of the number of configurations in it.
+ * <p>
+ *     Only the depth before, the depth being expanded and the next one are kept, and a
+ *     neighbor found in any of them is a duplicate. When every move can be undone (the
+ *     clock, for one) a neighbor cannot lie any further back, so this is exact. When
+ *     some moves cannot be undone, a configuration from further back can come up again
+ *     and is searched once more; the path found is still a shortest one. Since the next
+ *     depth only depends on the two before it, the depths then repeat sooner or later
+ *     if the puzzle is unsolvable: each depth keeps the sum of the 64-bit hashes of its
+ *     configurations as its signature, and the search gives up once a pair of
+ *     signatures comes back. That may take long, so a {@link SolverBudget} is advisable.
+ * </p>
+ * <p>
+ *     With no parents to follow, the path is recovered by divide and conquer. Once a
+ *     solution turns up at depth d, the search from the start is run again to that
+ *     solution, with every configuration carrying its ancestor at depth d/2; the
+ *     solution's ancestor is a middle point of a shortest path, and the two halves are
+ *     recovered the same way until they are single moves. That costs about one more
+ *     search, since the halves are much smaller than the whole.
+ * </p>
+ * <p>
+ *     Configurations are kept packed if the puzzle packs. The unique count is the
+ *     number of configurations added to a depth, over all the searches, and the peak
+ *     visited count is the most configurations held at once.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class FrontierSolver extends Solver {
+    /**
+     * A configuration found by a search of the depths, with its ancestor at the middle depth.
+     * @param state the configuration
+     * @param middle its ancestor at the middle depth, or null if none was asked for
+     * @param depth the depth it was found at
+     */
+    private record Found(Configuration state, Configuration middle, int depth) {
+    }
+
+    /**
+     * The signatures of two consecutive depths.
+     * @param previous the signature of the first
+     * @param current the signature of the second
+     */
+    private record Signatures(long previous, long current) {
+    }
+
+    private PackedConfiguration packer;
+    private long peak;
+    private int deepest;
+    private boolean outOfBudget;
+
+    /**
+     * Searches for a shortest solution keeping only the last depths, then recovers the
+     * path to it. A search that runs out of budget reports only the start, since the
+     * path to the deepest configuration is not known.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    @Override
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
+        total=1;
+        unique=1;
+        stats = newStats();
+        peak = 1;
+        deepest = 0;
+        outOfBudget = false;
+        Configuration root = initialConfig.canonicalize();
+        packer = root instanceof PackedConfiguration packed && packed.packedLongs() > 0 ? packed : null;
+        try {
+            if (root.isSolution()) {
+                return SolverResult.solved(List.of(initialConfig), stats);
+            }
+            Found solution = layers(root, null, -1, budget);
+            List<Configuration> path = solution != null
+                    ? between(root, solution.state(), solution.depth(), budget) : null;
+            if (outOfBudget) {
+                return SolverResult.exhausted(List.of(initialConfig), SolverResult.NO_ESTIMATE, deepest, stats);
+            }
+            if (path == null) {
+                return SolverResult.unsolvable(deepest, stats);
+            }
+            return SolverResult.solved(unfold(initialConfig, path), stats);
+        } finally {
+            stats.finish(total, unique, peak);
+        }
+    }
+
+    /**
+     * Recovers a shortest path between two configurations a known number of moves apart.
+     * @param from the first configuration
+     * @param to the last configuration
+     * @param moves the number of moves between them
+     * @param budget the limits the search has to stay within
+     * @return the path through canonical forms, or null if the budget ran out
+     */
+    private List<Configuration> between(Configuration from, Configuration to, int moves, SolverBudget budget) {
+        if (moves <= 1) {
+            return new ArrayList<>(moves == 0 ? List.of(from) : List.of(from, to));
+        }
+        int half = moves / 2;
+        Found found = layers(from, to, half, budget);
+        if (found == null) {
+            return null;
+        }
+        List<Configuration> first = between(from, found.middle(), half, budget);
+        List<Configuration> second = first != null ? between(found.middle(), to, moves - half, budget) : null;
+        if (second == null) {
+            return null;
+        }
+        first.addAll(second.subList(1, second.size()));
+        return first;
+    }
+
+    /**
+     * Searches breadth first from a configuration, keeping only the last depths. Only
+     * the search for a solution (with no target) is recorded depth by depth in the
+     * statistics.
+     * @param from the configuration to start from, in its canonical form
+     * @param target the configuration to look for, or null to look for a solution
+     * @param middle the depth whose configurations the ones after them carry, or -1 for none
+     * @param budget the limits the search has to stay within
+     * @return what was found, or null if nothing was or the budget ran out
+     */
+    private Found layers(Configuration from, Configuration target, int middle, SolverBudget budget) {
+        boolean recorded = target == null;
+        Layer previous = new Layer(packer);
+        Layer current = new Layer(packer);
+        current.start(from);
+        Layer middles = middle == 0 ? current : null;
+        Expansion expansion = new Expansion(target);
+        Set<Signatures> seen = new HashSet<>();
+        for (int depth = 0; current.size() > 0; depth++) {
+            if (recorded) {
+                if (!seen.add(new Signatures(previous.signature, current.signature))) {
+                    return null; // the depths repeat from here on, without a solution
+                }
+                stats.beginDepth(current.size(), total, unique);
+                deepest = depth;
+            }
+            Layer next = new Layer(packer);
+            for (int id = 0; id < current.size(); id++) {
+                if (budget.isExhausted(stats.getExpanded())) {
+                    outOfBudget = true;
+                    return null;
+                }
+                int carried = depth + 1 == middle ? Expansion.ITSELF : current.middle(id);
+                Configuration found = expansion.expand(current.get(id), carried, previous, current, next);
+                if (found != null) {
+                    Configuration ancestor = middles != null ? middles.get(next.middle(next.size() - 1)) : null;
+                    return new Found(found, ancestor, depth + 1);
+                }
+            }
+            long held = previous.size() + current.size() + next.size();
+            peak = Math.max(peak, middles != null && middles != previous && middles != current
+                    ? held + middles.size() : held);
+            if (depth + 1 == middle) {
+                middles = next;
+            }
+            previous = current;
+            current = next;
+        }
+        return null;
+    }
+
+    /**
+     * Expands a configuration into the next depth, leaving out the neighbors that are
+     * in the depths kept.
+     */
+    private class Expansion implements Consumer<Configuration> {
+        static final int ITSELF = -2;
+        private final Configuration target;
+        private Layer previous;
+        private Layer current;
+        private Layer next;
+        private int carried;
+        private Configuration found;
+
+        /**
+         * Constructor for the Expansion class.
+         * @param target the configuration to look for, or null to look for a solution
+         */
+        Expansion(Configuration target) {
+            this.target = target;
+        }
+
+        /**
+         * Expands one configuration.
+         * @param state the configuration
+         * @param carried the number of the middle configuration its neighbors carry, or
+         *                ITSELF if the neighbors are at the middle depth
+         * @param previous the depth before the configuration's
+         * @param current the configuration's depth
+         * @param next the next depth
+         * @return the neighbor that was looked for, or null if there is none
+         */
+        Configuration expand(Configuration state, int carried, Layer previous, Layer current, Layer next) {
+            this.previous = previous;
+            this.current = current;
+            this.next = next;
+            this.carried = carried;
+            this.found = null;
+            long start = System.nanoTime();
+            state.forEachNeighbor(this);
+            stats.expandedUntimed(System.nanoTime() - start);
+            return found;
+        }
+
+        @Override
+        public void accept(Configuration neighbor) {
+            if (found != null) {
+                return;
+            }
+            total++;
+            Configuration canonical = neighbor.canonicalize();
+            long low = 0;
+            long high = 0;
+            if (packer != null) {
+                PackedConfiguration packed = (PackedConfiguration) canonical;
+                low = packed.packLow();
+                high = packed.packHigh();
+            }
+            if (previous.contains(canonical, low, high) || current.contains(canonical, low, high)) {
+                return;
+            }
+            if (next.add(canonical, low, high, carried == ITSELF ? next.size() : carried) >= 0) {
+                unique++;
+                if (target == null ? canonical.isSolution() : canonical.equals(target)) {
+                    found = canonical;
+                }
+            }
+        }
+    }
+
+    /**
+     * The configurations of one depth, each with the number of its ancestor at the middle
+     * depth, packed into a {@link PackedStateTable} if the puzzle packs and in a
+     * {@link StateArena} otherwise, and the signature of the depth.
+     */
+    private static class Layer {
+        static final int NONE = -1;
+        private final PackedConfiguration packer;
+        private final PackedStateTable table;
+        private final StateArena arena;
+        private long signature;
+
+        /**
+         * Constructor for the Layer class.
+         * @param packer the start, which packed configurations are unpacked against, or
+         *               null to keep the configurations as objects
+         */
+        Layer(PackedConfiguration packer) {
+            this.packer = packer;
+            this.table = packer != null ? new PackedStateTable(packer.packedLongs(), false) : null;
+            this.arena = packer != null ? null : new StateArena();
+        }
+
+        /**
+         * Adds a configuration unless it is already in this depth. A packed layer only
+         * looks at the packed longs, which the caller works out once for all the layers.
+         * @param state the configuration
+         * @param low its low bits, if the puzzle packs
+         * @param high its high bits, if the puzzle packs
+         * @param middle the number of its ancestor at the middle depth
+         * @return its number, or a negative number if it was already there
+         */
+        int add(Configuration state, long low, long high, int middle) {
+            int id = table != null ? table.add(low, high, middle) : arena.add(state, middle);
+            if (id >= 0) {
+                signature += table != null
+                        ? ProbabilisticSolver.hash(low, high, packer.packedLongs() > 1)
+                        : ProbabilisticSolver.hash(state);
+            }
+            return id;
+        }
+
+        /**
+         * Adds the configuration a search starts from.
+         * @param state the configuration, in its canonical form
+         */
+        void start(Configuration state) {
+            if (table != null) {
+                PackedConfiguration packed = (PackedConfiguration) state;
+                add(state, packed.packLow(), packed.packHigh(), NONE);
+            } else {
+                add(state, 0, 0, NONE);
+            }
+        }
+
+        boolean contains(Configuration state, long low, long high) {
+            return table != null ? table.contains(low, high) : arena.contains(state);
+        }
+
+        int size() {
+            return table != null ? table.size() : arena.size();
+        }
+
+        Configuration get(int id) {
+            return table != null ? packer.unpack(table.low(id), table.high(id)) : arena.get(id);
+        }
+
+        int middle(int id) {
+            return table != null ? table.parent(id) : arena.parent(id);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package puzzles.common.solver;
+
+/**
+ * An estimate of the number of moves left from a configuration to the closest solution.
+ * The {@link AStarSolver} only returns shortest paths when the estimate never exceeds
+ * the real number of moves (the heuristic is admissible).
+ *
+ * @param <C> the kind of configuration the heuristic knows how to estimate
+ *
+ * @author Ashrith V. Mudundi
+ */
+@FunctionalInterface
+public interface Heuristic<C extends Configuration> {
+    /** the estimate for configurations that can never reach a solution */
+    int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Estimate the number of moves from the configuration to a solution.
+     * @param config the configuration to estimate
+     * @return a lower bound on the moves left, or {@link #UNREACHABLE} for a dead end
+     */
+    int estimate(C config);
+}
@@ -0,0 +1,406 @@
+package puzzles.common.solver;
+
+import java.util.*;
+
+/**
+ * An iterative-deepening depth-first solver. Each iteration searches depth first down to
+ * a depth limit one deeper than the last, so the first solution found is a shortest one,
+ * and only the path being explored (with the unexplored neighbors along it) is kept:
+ * memory grows with the depth of the solution instead of the breadth of the puzzle.
+ * <p>
+ *     A fixed-size transposition table remembers at which depth configurations were
+ *     reached in the current iteration, and a configuration reached again no shallower
+ *     is not searched a second time. When two configurations compete for a place in the
+ *     table the {@link Replacement} policy decides which one stays; a configuration that
+ *     is forgotten can only cost time, never a wrong answer. Configurations that pack
+ *     into longs are kept packed, and the table never takes more than
+ *     {@value #HEAP_SHARE} of the maximum heap.
+ * </p>
+ * <p>
+ *     The unique count is the number of configurations searched that the table did not
+ *     prune, over all iterations. A puzzle is proven unsolvable when an iteration reaches
+ *     nothing at its depth limit, or when an iteration the table forgot nothing of holds
+ *     no more configurations than the one before. A configuration already on the path
+ *     being explored is never searched again, so every path is a simple one and an
+ *     iteration deeper than the puzzle has configurations reaches nothing at its limit.
+ *     With a table much smaller than the puzzle that can take very long, as there are
+ *     far more simple paths than configurations, so a {@link SolverBudget} is advisable.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class IDDFSSolver extends Solver {
+    /** the number of table entries unless told otherwise */
+    public static final int DEFAULT_ENTRIES = 1 << 20;
+    /** the share of the maximum heap the table may take */
+    public static final double HEAP_SHARE = 0.125;
+
+    /**
+     * Which configuration keeps a table entry when a new one maps to it.
+     */
+    public enum Replacement {
+        /** the new configuration always takes the entry */
+        ALWAYS,
+        /** the new configuration only takes the entry if it was reached no deeper */
+        SHALLOWER,
+        /**
+         * entries come in pairs: one is kept for the shallower configuration, the other
+         * always takes the newest one
+         */
+        TWO_WAY
+    }
+
+    /**
+     * A configuration to search, with the canonical form the table and the path know it by.
+     * @param config the configuration
+     * @param key its canonical form
+     */
+    private record Step(Configuration config, Configuration key) {
+    }
+
+    private final int entries;
+    private final Replacement replacement;
+
+    /**
+     * Constructor for the IDDFSSolver class, with a table of {@value #DEFAULT_ENTRIES}
+     * entries in pairs.
+     */
+    public IDDFSSolver() {
+        this(DEFAULT_ENTRIES, Replacement.TWO_WAY);
+    }
+
+    /**
+     * Constructor for the IDDFSSolver class.
+     * @param entries the number of configurations the table holds, rounded up to a power
+     * of two, or down to what fits in {@value #HEAP_SHARE} of the maximum heap
+     * @param replacement the replacement policy of the table
+     */
+    public IDDFSSolver(int entries, Replacement replacement) {
+        this.entries = entries;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Searches for a shortest solution by deepening the search one move at a time. A
+     * search that runs out of budget reports the path it was exploring.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    @Override
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
+        total=1;
+        unique=1;
+        stats = newStats();
+        TranspositionTable table = new TranspositionTable(entries, replacement, initialConfig.canonicalize());
+        try {
+            return deepen(initialConfig, budget, table);
+        } finally {
+            stats.finish(total, unique, table.used());
+        }
+    }
+
+    /**
+     * Runs one iteration after another until one finds a solution, one proves there is
+     * none or the budget runs out. Every iteration is a depth of the statistics, whose
+     * frontier is the number of configurations the iteration expanded.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @param table the transposition table
+     * @return how the search ended
+     */
+    private SolverResult deepen(Configuration initialConfig, SolverBudget budget, TranspositionTable table) {
+        if (initialConfig.isSolution()) {
+            return SolverResult.solved(List.of(initialConfig), stats);
+        }
+        List<Configuration> path = new ArrayList<>();
+        List<Configuration> keys = new ArrayList<>();
+        Set<Configuration> onPath = new HashSet<>();
+        List<Iterator<Step>> branches = new ArrayList<>();
+        int deepest = 0;
+        int heldBefore = -1; // the configurations the last iteration held, or -1 if it forgot some
+        SolverResult result = null;
+        for (int limit = 1; result == null; limit++) {
+            long expandedBefore = stats.getExpanded();
+            long totalBefore = total;
+            long uniqueBefore = unique;
+            boolean cutOff = false;
+            Configuration root = initialConfig.canonicalize();
+            table.beginIteration();
+            table.visit(root, 0, limit);
+            path.add(initialConfig);
+            keys.add(root);
+            onPath.add(root);
+            while (!path.isEmpty()) {
+                Iterator<Step> branch;
+                if (branches.size() < path.size()) {
+                    // the last configuration on the path has not been expanded yet
+                    if (budget.isExhausted(stats.getExpanded())) {
+                        result = SolverResult.exhausted(new ArrayList<>(path), SolverResult.NO_ESTIMATE, deepest,
+                                stats);
+                        break;
+                    }
+                    deepest = Math.max(deepest, path.size() - 1);
+                    List<Step> children = expand(path, onPath, table, limit);
+                    if (children == null) {
+                        result = SolverResult.solved(new ArrayList<>(path), stats);
+                        break;
+                    }
+                    if (path.size() == limit) {
+                        cutOff |= !children.isEmpty(); // they would be expanded past the limit
+                        children = List.of();
+                    }
+                    branch = children.iterator();
+                    branches.add(branch);
+                } else {
+                    branch = branches.get(branches.size() - 1);
+                }
+                if (branch.hasNext()) {
+                    Step next = branch.next();
+                    path.add(next.config());
+                    keys.add(next.key());
+                    onPath.add(next.key());
+                } else {
+                    branches.remove(branches.size() - 1);
+                    path.remove(path.size() - 1);
+                    onPath.remove(keys.remove(keys.size() - 1));
+                }
+            }
+            stats.beginDepth(stats.getExpanded() - expandedBefore, totalBefore, uniqueBefore);
+            if (result == null) {
+                int held = table.forgot() ? -1 : table.held();
+                if (!cutOff || held >= 0 && held == heldBefore) {
+                    result = SolverResult.unsolvable(deepest, stats);
+                }
+                heldBefore = held;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Expands the last configuration on the path. Its neighbors are entered in the table
+     * straight away, so that neither is searched again below the other; neighbors that
+     * are already on the path are left out.
+     * @param path the path from the start to the configuration
+     * @param onPath the canonical forms of the configurations on the path
+     * @param table the transposition table
+     * @param limit the depth limit of the iteration
+     * @return the neighbors to search, or null if one is a solution (it is then added to the path)
+     */
+    private List<Step> expand(List<Configuration> path, Set<Configuration> onPath, TranspositionTable table,
+                              int limit) {
+        int depth = path.size();
+        long start = System.nanoTime();
+        Collection<Configuration> neighbors = path.get(depth - 1).getNeighbors();
+        long generated = System.nanoTime();
+        List<Step> children = new ArrayList<>(neighbors.size());
+        try {
+            for (Configuration neighbor : neighbors) {
+                total++;
+                Configuration key = neighbor.canonicalize();
+                if (!onPath.contains(key) && !table.visit(key, depth, limit)) {
+                    unique++;
+                    if (neighbor.isSolution()) {
+                        path.add(neighbor);
+                        return null;
+                    }
+                    children.add(new Step(neighbor, key));
+                }
+            }
+            return children;
+        } finally {
+            stats.expanded(generated - start, System.nanoTime() - generated);
+        }
+    }
+
+    /**
+     * A table of a fixed number of entries, each holding a configuration, the depth it
+     * was reached at and the iteration (depth limit) that reached it. Entries of earlier
+     * iterations count as empty. Configurations that pack into longs are held as their
+     * longs, the others as objects.
+     */
+    private static class TranspositionTable {
+        private final Replacement replacement;
+        private final PackedConfiguration packedRoot;
+        private final Configuration[] states;
+        private final long[] lows;
+        private final long[] highs;
+        private final int[] depths;
+        private final int[] limits;
+        private final int mask;
+        private int used;
+        private int held;
+        private boolean forgot;
+
+        /**
+         * Constructor for the TranspositionTable class.
+         * @param entries the most entries, rounded up to a power of two
+         * @param replacement the replacement policy
+         * @param root the canonical form of the start, which tells how configurations are held
+         */
+        TranspositionTable(int entries, Replacement replacement, Configuration root) {
+            this.packedRoot = root instanceof PackedConfiguration packed && packed.packedLongs() > 0 ? packed : null;
+            long entryBytes = 8L + (packedRoot == null
+                    ? ObjectSizes.REFERENCE + ObjectSizes.deepSize(root, Set.of())
+                    : 8L * packedRoot.packedLongs());
+            long fits = Math.max(2, (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE / entryBytes));
+            int size = Integer.highestOneBit(Math.max(2, entries - 1)) << 1;
+            while (size > fits) {
+                size >>= 1;
+            }
+            this.replacement = replacement;
+            this.states = packedRoot == null ? new Configuration[size] : null;
+            this.lows = packedRoot != null ? new long[size] : null;
+            this.highs = packedRoot != null && packedRoot.packedLongs() > 1 ? new long[size] : null;
+            this.depths = new int[size];
+            this.limits = new int[size];
+            this.mask = size - 1;
+        }
+
+        /**
+         * Starts counting the configurations an iteration holds over again.
+         */
+        void beginIteration() {
+            held = 0;
+            forgot = false;
+        }
+
+        /**
+         * Records that a configuration was reached.
+         * @param state the configuration, in its canonical form
+         * @param depth the depth it was reached at
+         * @param limit the depth limit of the iteration
+         * @return true if it was already reached at this depth or shallower in this iteration
+         */
+        boolean visit(Configuration state, int depth, int limit) {
+            long low = 0;
+            long high = 0;
+            if (packedRoot != null) {
+                PackedConfiguration packed = (PackedConfiguration) state;
+                low = packed.packLow();
+                high = packed.packHigh();
+            }
+            int slot = index(state, low, high);
+            int last = replacement == Replacement.TWO_WAY ? slot + 1 : slot;
+            for (int i = slot; i <= last; i++) {
+                if (limits[i] == limit && holds(i, state, low, high)) {
+                    if (depths[i] <= depth) {
+                        return true;
+                    }
+                    depths[i] = depth;
+                    return false;
+                }
+            }
+            held++;
+            switch (replacement) {
+                case ALWAYS -> store(slot, state, low, high, depth, limit);
+                case SHALLOWER -> {
+                    if (!current(slot, limit) || depths[slot] >= depth) {
+                        store(slot, state, low, high, depth, limit);
+                    } else {
+                        forgot = true;
+                    }
+                }
+                case TWO_WAY -> {
+                    if (!current(slot, limit) || depths[slot] >= depth) {
+                        if (current(slot, limit)) {
+                            move(slot, slot + 1);
+                        }
+                        store(slot, state, low, high, depth, limit);
+                    } else {
+                        store(slot + 1, state, low, high, depth, limit);
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the number of entries that have ever been filled.
+         * @return the entries in use
+         */
+        int used() {
+            return used;
+        }
+
+        /**
+         * Returns the number of configurations the current iteration entered in the table.
+         * @return the count, which is the number of configurations the iteration reached
+         * unless it {@link #forgot()} some
+         */
+        int held() {
+            return held;
+        }
+
+        /**
+         * Has the current iteration lost a configuration it entered, to make room or
+         * because the replacement policy turned it away?
+         * @return true if it has
+         */
+        boolean forgot() {
+            return forgot;
+        }
+
+        private boolean current(int slot, int limit) {
+            return limits[slot] == limit && (packedRoot != null || states[slot] != null);
+        }
+
+        private boolean holds(int slot, Configuration state, long low, long high) {
+            if (packedRoot == null) {
+                return states[slot] != null && states[slot].equals(state);
+            }
+            return lows[slot] == low && (highs == null || highs[slot] == high);
+        }
+
+        private void store(int slot, Configuration state, long low, long high, int depth, int limit) {
+            if (limits[slot] == 0) {
+                used++;
+            } else if (limits[slot] == limit) {
+                forgot = true;
+            }
+            if (packedRoot == null) {
+                states[slot] = state;
+            } else {
+                lows[slot] = low;
+                if (highs != null) {
+                    highs[slot] = high;
+                }
+            }
+            depths[slot] = depth;
+            limits[slot] = limit;
+        }
+
+        private void move(int from, int to) {
+            if (limits[to] == 0) {
+                used++;
+            } else if (limits[to] == limits[from]) {
+                forgot = true;
+            }
+            if (packedRoot == null) {
+                states[to] = states[from];
+            } else {
+                lows[to] = lows[from];
+                if (highs != null) {
+                    highs[to] = highs[from];
+                }
+            }
+            depths[to] = depths[from];
+            limits[to] = limits[from];
+        }
+
+        /**
+         * Returns the entry a configuration maps to, the first of its pair for TWO_WAY.
+         * @param state the configuration
+         * @param low the low bits of its packed form, if the table holds them
+         * @param high the high bits of its packed form, if the table holds them
+         * @return the entry's index
+         */
+        private int index(Configuration state, long low, long high) {
+            int hash = packedRoot == null ? state.hashCode() : Long.hashCode(low * 0x9E3779B97F4A7C15L ^ high);
+            hash *= 0x9e3779b9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            return replacement == Replacement.TWO_WAY ? slot & ~1 : slot;
+        }
+    }
+}
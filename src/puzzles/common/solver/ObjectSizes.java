@@ -0,0 +1,142 @@
+package puzzles.common.solver;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estimates the heap an object takes up by walking its fields and arrays by reflection.
+ * <p>
+ *     Sizes follow the usual 64-bit HotSpot layout: a 12-byte object header, a 16-byte
+ *     array header, references of 4 bytes while the heap is small enough for compressed
+ *     ones, and every object rounded up to 8 bytes. Fields of classes that are not open
+ *     to this package (the JDK's own, for one) are counted but not followed.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+final class ObjectSizes {
+    /** the bytes a reference takes up in a field or an array */
+    static final int REFERENCE = Runtime.getRuntime().maxMemory() < (32L << 30) ? 4 : 8;
+
+    private static final int HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return Layout.of(type);
+        }
+    };
+
+    private ObjectSizes() {
+    }
+
+    /**
+     * Get every object reachable from an object, the object included.
+     * @param root the object
+     * @return the objects, compared by identity
+     */
+    static Set<Object> reachable(Object root) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        walk(root, Set.of(), seen);
+        return seen;
+    }
+
+    /**
+     * Estimates the heap an object and everything it alone refers to take up.
+     * @param object the object
+     * @param shared the objects it may refer to that are not counted against it
+     * @return the bytes
+     */
+    static long deepSize(Object object, Set<Object> shared) {
+        return walk(object, shared, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private static long walk(Object root, Set<Object> shared, Set<Object> seen) {
+        long bytes = 0;
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            if (shared.contains(object) || !seen.add(object)) {
+                continue;
+            }
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                int length = Array.getLength(object);
+                Class<?> component = type.getComponentType();
+                bytes += align(ARRAY_HEADER + (long) length * width(component));
+                if (!component.isPrimitive()) {
+                    for (Object element : (Object[]) object) {
+                        follow(element, pending);
+                    }
+                }
+            } else {
+                Layout layout = LAYOUTS.get(type);
+                bytes += layout.bytes();
+                for (Field field : layout.references()) {
+                    try {
+                        follow(field.get(object), pending);
+                    } catch (IllegalAccessException e) {
+                        // counted as a reference but not followed
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static void follow(Object value, Deque<Object> pending) {
+        if (value != null && !(value instanceof Class<?>)) {
+            pending.push(value);
+        }
+    }
+
+    private static int width(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return REFERENCE;
+        } else if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * The shallow size of instances of a class and the reference fields that can be followed.
+     * @param bytes the shallow size
+     * @param references the reference fields open to reflection
+     */
+    private record Layout(long bytes, List<Field> references) {
+        static Layout of(Class<?> type) {
+            long bytes = HEADER;
+            List<Field> references = new ArrayList<>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    bytes += width(field.getType());
+                    if (!field.getType().isPrimitive() && field.trySetAccessible()) {
+                        references.add(field);
+                    }
+                }
+            }
+            return new Layout(align(bytes), references);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package puzzles.common.solver;
+
+/**
+ * A configuration that can be squeezed into one or two longs. The packed solver keeps
+ * visited configurations in primitive arrays instead of as objects in a map, and only
+ * turns a state back into a configuration when it is expanded or printed.
+ * <p>
+ *     Anything that is the same for every configuration of a puzzle (the number of
+ *     hours, the bucket capacities, the walls of the board) is not packed; it is taken
+ *     from the configuration {@link #unpack(long, long)} is called on.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public interface PackedConfiguration extends Configuration {
+    /**
+     * How many longs this puzzle needs for a configuration.
+     * @return 1 or 2, or 0 if the configurations of this puzzle do not fit
+     */
+    int packedLongs();
+
+    /**
+     * Get the first (or only) long of the packed configuration.
+     * @return the low bits
+     */
+    long packLow();
+
+    /**
+     * Get the second long of the packed configuration.
+     * @return the high bits, 0 for puzzles that pack into a single long
+     */
+    default long packHigh() {
+        return 0L;
+    }
+
+    /**
+     * Rebuild a configuration of the same puzzle from its packed form.
+     * @param low the low bits
+     * @param high the high bits
+     * @return the configuration
+     */
+    PackedConfiguration unpack(long low, long high);
+}
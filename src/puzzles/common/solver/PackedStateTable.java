@@ -0,0 +1,200 @@
+package puzzles.common.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * The visited set and parent links of the packed solver, kept in primitive arrays.
+ * <p>
+ *     States are numbered in the order they are added, and their packed longs and parent
+ *     numbers are stored in that order, so a breadth-first frontier is simply a range of
+ *     numbers. An open-addressing table of numbers (linear probing) finds the number of
+ *     a state. The arrays can live on the heap or, to keep them away from the garbage
+ *     collector entirely, in direct buffers.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+class PackedStateTable {
+    /** returned by {@link #add(long, long, int)} for a state that is already in the table */
+    static final int PRESENT = -1;
+    /** the parent of the start state */
+    static final int NO_PARENT = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.7;
+
+    private final boolean wide;
+    private final boolean offHeap;
+    private LongBuffer low;
+    private LongBuffer high;
+    private IntBuffer parent;
+    private IntBuffer slots; // state number + 1, 0 for an empty slot
+    private int size;
+
+    /**
+     * Constructor for the PackedStateTable class.
+     * @param longs the number of longs per state, 1 or 2
+     * @param offHeap true to keep the arrays in direct buffers
+     */
+    PackedStateTable(int longs, boolean offHeap) {
+        this.wide = longs > 1;
+        this.offHeap = offHeap;
+        this.low = longs(INITIAL_CAPACITY);
+        this.high = wide ? longs(INITIAL_CAPACITY) : null;
+        this.parent = ints(INITIAL_CAPACITY);
+        this.slots = ints(INITIAL_CAPACITY * 2);
+    }
+
+    /**
+     * Adds a state unless it is already present.
+     * @param lo the low bits of the state
+     * @param hi the high bits of the state
+     * @param parentId the number of the state it was reached from
+     * @return the new state's number, or PRESENT
+     */
+    int add(long lo, long hi, int parentId) {
+        if (size + 1 > slots.capacity() * MAX_LOAD) {
+            rehash();
+        }
+        int mask = slots.capacity() - 1;
+        int slot = hash(lo, hi) & mask;
+        int entry;
+        while ((entry = slots.get(slot)) != 0) {
+            int id = entry - 1;
+            if (low.get(id) == lo && (!wide || high.get(id) == hi)) {
+                return PRESENT;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == low.capacity()) {
+            grow();
+        }
+        int id = size++;
+        low.put(id, lo);
+        if (wide) {
+            high.put(id, hi);
+        }
+        parent.put(id, parentId);
+        slots.put(slot, id + 1);
+        return id;
+    }
+
+    /**
+     * Is a state already in the table?
+     * @param lo the low bits of the state
+     * @param hi the high bits of the state
+     * @return true if it is
+     */
+    boolean contains(long lo, long hi) {
+        int mask = slots.capacity() - 1;
+        int slot = hash(lo, hi) & mask;
+        int entry;
+        while ((entry = slots.get(slot)) != 0) {
+            int id = entry - 1;
+            if (low.get(id) == lo && (!wide || high.get(id) == hi)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of states in the table.
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the low bits of a state.
+     * @param id the state's number
+     * @return the low bits
+     */
+    long low(int id) {
+        return low.get(id);
+    }
+
+    /**
+     * Get the high bits of a state.
+     * @param id the state's number
+     * @return the high bits, 0 for narrow states
+     */
+    long high(int id) {
+        return wide ? high.get(id) : 0L;
+    }
+
+    /**
+     * Get the number of the state a state was reached from.
+     * @param id the state's number
+     * @return the parent's number, or NO_PARENT for the start
+     */
+    int parent(int id) {
+        return parent.get(id);
+    }
+
+    /**
+     * Get the number of bytes held by the arrays.
+     * @return the footprint of the table
+     */
+    long footprint() {
+        return (long) low.capacity() * (wide ? 16 : 8) + parent.capacity() * 4L + slots.capacity() * 4L;
+    }
+
+    private static int hash(long lo, long hi) {
+        long h = (lo ^ (hi * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Grows the state arrays by half, which wastes less of them than doubling would.
+     */
+    private void grow() {
+        int capacity = low.capacity() + (low.capacity() >> 1);
+        low = copy(low, longs(capacity));
+        if (wide) {
+            high = copy(high, longs(capacity));
+        }
+        IntBuffer newParent = ints(capacity);
+        for (int id = 0; id < size; id++) {
+            newParent.put(id, parent.get(id));
+        }
+        parent = newParent;
+    }
+
+    /**
+     * Doubles the slot table and puts every state back in.
+     */
+    private void rehash() {
+        slots = ints(slots.capacity() * 2);
+        int mask = slots.capacity() - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(low.get(id), high(id)) & mask;
+            while (slots.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.put(slot, id + 1);
+        }
+    }
+
+    private LongBuffer copy(LongBuffer from, LongBuffer to) {
+        for (int id = 0; id < size; id++) {
+            to.put(id, from.get(id));
+        }
+        return to;
+    }
+
+    private LongBuffer longs(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.wrap(new long[capacity]);
+    }
+
+    private IntBuffer ints(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.wrap(new int[capacity]);
+    }
+}
@@ -0,0 +1,346 @@
+package puzzles.common.solver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A solver that races several search strategies against each other, each on a thread
+ * of its own (at most one per processor), and returns the first answer that is proven:
+ * a shortest solution, or that there is none. Only exact strategies are raced, so
+ * whichever finishes first is right: the bidirectional search is left out for puzzles
+ * without goals or predecessors, and for those whose goals are not all of their
+ * solutions (see {@link Configuration#hasAllGoals()}). The others are cancelled and
+ * waited for, so that their memory is free again when the solve returns.
+ * <p>
+ *     Every race is recorded in a {@link Wins} table by kind of puzzle. A strategy that
+ *     has run {@value Wins#TRIALS} races on a kind of puzzle without winning one is not
+ *     started on that kind of puzzle any more, so over time each kind of puzzle only
+ *     gets the strategies that pay off for it. With fewer processors than strategies,
+ *     the ones with the best record race.
+ * </p>
+ * <p>
+ *     The counters and statistics are those of the winning strategy.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class PortfolioSolver extends Solver {
+    /**
+     * A search strategy of the portfolio.
+     */
+    public enum Strategy {
+        /** the breadth-first {@link Solver} */
+        BFS,
+        /** the bidirectional search, for puzzles that list all their goals */
+        BIDIRECTIONAL,
+        /** the {@link AStarSolver} with the puzzle's heuristic */
+        ASTAR,
+        /** the {@link IDDFSSolver} */
+        IDDFS;
+
+        /**
+         * Can this strategy solve the puzzle at all?
+         * @param initialConfig the starting configuration
+         * @return false for the bidirectional search of a puzzle without goals or
+         * predecessors, or with solutions that are not among its goals, as it might not
+         * find a shortest path
+         */
+        boolean appliesTo(Configuration initialConfig) {
+            return this != BIDIRECTIONAL || initialConfig.getGoals() != null && initialConfig.hasAllGoals()
+                    && initialConfig.getPredecessors() != null;
+        }
+
+        /**
+         * Creates a solver for this strategy.
+         * @param heuristic the puzzle's heuristic
+         * @return a new solver
+         */
+        Solver newSolver(Heuristic<Configuration> heuristic) {
+            return switch (this) {
+                case BFS, BIDIRECTIONAL -> new Solver();
+                case ASTAR -> new AStarSolver(heuristic);
+                case IDDFS -> new IDDFSSolver();
+            };
+        }
+
+        /**
+         * Runs this strategy's search.
+         * @param solver the solver made by {@link #newSolver(Heuristic)}
+         * @param initialConfig the starting configuration
+         * @param budget the limits the search has to stay within
+         * @return how the search ended
+         */
+        SolverResult run(Solver solver, Configuration initialConfig, SolverBudget budget) {
+            return this == BIDIRECTIONAL
+                    ? solver.solveBidirectional(initialConfig, budget)
+                    : solver.solve(initialConfig, budget);
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * How many races each strategy has run and won, by kind of puzzle. The table can be
+     * kept in a text file of lines "puzzle strategy wins races", which is rewritten
+     * after every race. It is safe to share between solvers on different threads.
+     */
+    public static class Wins {
+        /** the races a strategy may run on a kind of puzzle without winning before it is dropped */
+        public static final int TRIALS = 10;
+        /** where the table is kept unless told otherwise */
+        public static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".puzzles", "portfolio.txt");
+
+        private final Path file;
+        private final Map<String, Map<Strategy, long[]>> table = new TreeMap<>(); // {wins, races}
+
+        /**
+         * Constructor for a Wins table that is only kept in memory.
+         */
+        public Wins() {
+            this.file = null;
+        }
+
+        /**
+         * Constructor for a Wins table kept in a file, read from it if it exists.
+         * @param file the file
+         * @throws IOException if the file exists but cannot be read
+         */
+        public Wins(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file)) {
+                for (String line : Files.readAllLines(file)) {
+                    String[] words = line.strip().split("\\s+");
+                    if (words.length == 4) {
+                        Strategy strategy = Strategy.valueOf(words[1].toUpperCase());
+                        table.computeIfAbsent(words[0], k -> new EnumMap<>(Strategy.class))
+                                .put(strategy, new long[] {Long.parseLong(words[2]), Long.parseLong(words[3])});
+                    }
+                }
+            }
+        }
+
+        /**
+         * Chooses the strategies to race on a kind of puzzle: those that have won there
+         * or have not yet run {@value #TRIALS} races there (all of them if that leaves
+         * none), and of those the ones with the best share of wins (counting one win and
+         * one loss extra, so that untried strategies come before losing ones) if there
+         * are more than there are threads to run them.
+         * @param puzzle the kind of puzzle
+         * @param candidates the strategies that apply to the puzzle, in order of preference on ties
+         * @param threads the most strategies to race at once
+         * @return the strategies to race
+         */
+        synchronized List<Strategy> select(String puzzle, List<Strategy> candidates, int threads) {
+            Map<Strategy, long[]> counts = table.getOrDefault(puzzle, Map.of());
+            List<Strategy> selected = new ArrayList<>();
+            for (Strategy strategy : candidates) {
+                long[] count = counts.get(strategy);
+                if (count == null || count[0] > 0 || count[1] < TRIALS) {
+                    selected.add(strategy);
+                }
+            }
+            if (selected.isEmpty()) {
+                selected.addAll(candidates);
+            }
+            selected.sort(Comparator.comparingDouble((Strategy strategy) -> {
+                long[] count = counts.getOrDefault(strategy, new long[2]);
+                return (count[0] + 1.0) / (count[1] + 2.0);
+            }).reversed());
+            return new ArrayList<>(selected.subList(0, Math.min(Math.max(1, threads), selected.size())));
+        }
+
+        /**
+         * Records a race, and writes the table to its file if it has one.
+         * @param puzzle the kind of puzzle
+         * @param raced the strategies that raced
+         * @param winner the one that won, or null if none did
+         * @throws IOException if the file cannot be written; the race is still recorded
+         */
+        synchronized void record(String puzzle, Collection<Strategy> raced, Strategy winner) throws IOException {
+            Map<Strategy, long[]> counts = table.computeIfAbsent(puzzle, k -> new EnumMap<>(Strategy.class));
+            for (Strategy strategy : raced) {
+                long[] count = counts.computeIfAbsent(strategy, k -> new long[2]);
+                count[1]++;
+                if (strategy == winner) {
+                    count[0]++;
+                }
+            }
+            if (file != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                Files.writeString(file, toString());
+            }
+        }
+
+        /**
+         * Get the races a strategy has won on a kind of puzzle.
+         * @param puzzle the kind of puzzle
+         * @param strategy the strategy
+         * @return the number of wins
+         */
+        public synchronized long getWins(String puzzle, Strategy strategy) {
+            long[] count = table.getOrDefault(puzzle, Map.of()).get(strategy);
+            return count == null ? 0 : count[0];
+        }
+
+        /**
+         * Get the races a strategy has run on a kind of puzzle.
+         * @param puzzle the kind of puzzle
+         * @param strategy the strategy
+         * @return the number of races
+         */
+        public synchronized long getRaces(String puzzle, Strategy strategy) {
+            long[] count = table.getOrDefault(puzzle, Map.of()).get(strategy);
+            return count == null ? 0 : count[1];
+        }
+
+        /**
+         * Returns the table in the form it is kept in its file.
+         * @return one line per kind of puzzle and strategy
+         */
+        @Override
+        public synchronized String toString() {
+            StringBuilder text = new StringBuilder();
+            table.forEach((puzzle, counts) -> counts.forEach((strategy, count) ->
+                    text.append(puzzle).append(' ').append(strategy).append(' ')
+                            .append(count[0]).append(' ').append(count[1]).append('\n')));
+            return text.toString();
+        }
+    }
+
+    /**
+     * A strategy that has finished its search.
+     * @param strategy the strategy
+     * @param solver its solver
+     * @param result how its search ended, or null if it failed
+     */
+    private record Finish(Strategy strategy, Solver solver, SolverResult result) {
+        boolean proven() {
+            return result != null && result.getStatus() != SolverResult.Status.BUDGET_EXHAUSTED;
+        }
+    }
+
+    /** the threads the strategies run on; daemons that time out when idle */
+    private static final ExecutorService RACERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "portfolio");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Heuristic<Configuration> heuristic;
+    private final Wins wins;
+    private Strategy winner;
+    private List<Strategy> raced = List.of();
+
+    /**
+     * Constructor for the PortfolioSolver class.
+     * @param heuristic the puzzle's heuristic, for the A* search
+     * @param wins the table the races are recorded in and strategies are chosen by
+     */
+    public PortfolioSolver(Heuristic<Configuration> heuristic, Wins wins) {
+        this.heuristic = heuristic;
+        this.wins = wins;
+    }
+
+    /**
+     * Get the strategy that won the last race.
+     * @return the winner, or null if none proved anything
+     */
+    public Strategy getWinner() {
+        return winner;
+    }
+
+    /**
+     * Get the strategies that ran in the last race.
+     * @return the strategies, in the order they were started
+     */
+    public List<Strategy> getRaced() {
+        return raced;
+    }
+
+    /**
+     * Races the strategies chosen for the puzzle and returns the first proven result.
+     * If none proves anything within the budget, the result of the first to stop is
+     * returned.
+     * @param initialConfig the starting configuration
+     * @param budget the limits each strategy has to stay within
+     * @return how the winning search ended
+     */
+    @Override
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
+        String puzzle = initialConfig.getClass().getSimpleName();
+        List<Strategy> candidates = new ArrayList<>();
+        for (Strategy strategy : Strategy.values()) {
+            if (strategy.appliesTo(initialConfig)) {
+                candidates.add(strategy);
+            }
+        }
+        raced = wins.select(puzzle, candidates, Runtime.getRuntime().availableProcessors());
+        winner = null;
+        CancellationToken race = new CancellationToken(budget.getToken());
+        SolverBudget raceBudget = budget.withCancellation(race);
+        BlockingQueue<Finish> finished = new LinkedBlockingQueue<>();
+        for (Strategy strategy : raced) {
+            Solver solver = strategy.newSolver(heuristic);
+            RACERS.execute(() -> {
+                SolverResult result = null;
+                try {
+                    result = strategy.run(solver, initialConfig, raceBudget);
+                } catch (RuntimeException e) {
+                    // this strategy cannot solve the puzzle; the others carry on
+                } catch (Error e) {
+                    race.cancel(); // out of memory most likely, which starves the others too
+                } finally {
+                    finished.add(new Finish(strategy, solver, result));
+                }
+            });
+        }
+        Finish first = null;
+        boolean interrupted = false;
+        for (int i = 0; i < raced.size(); i++) {
+            Finish finish;
+            try {
+                finish = finished.take();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                race.cancel();
+                i--;
+                continue;
+            }
+            if (winner == null && finish.proven()) {
+                winner = finish.strategy();
+                first = finish;
+                race.cancel();
+            } else if (first == null && finish.result() != null) {
+                first = finish;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        String unsaved = null;
+        try {
+            wins.record(puzzle, raced, winner);
+        } catch (IOException e) {
+            unsaved = "Cannot save the portfolio wins: " + e.getMessage();
+        }
+        if (first == null) {
+            throw new IllegalStateException("every strategy failed on " + puzzle);
+        }
+        total = first.solver().getTotal();
+        unique = first.solver().getUnique();
+        stats = first.solver().getStats();
+        if (unsaved != null) {
+            stats.noticed(unsaved);
+        }
+        return first.result();
+    }
+}
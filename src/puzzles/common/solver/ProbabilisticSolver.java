@@ -0,0 +1,573 @@
+package puzzles.common.solver;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A breadth-first solver for exploring puzzles too big to visit exactly. Instead of the
+ * configurations themselves its visited set keeps only a 64-bit hash of each, in one of
+ * two ways (see {@link Mode}), and accepts a small chance that a configuration never
+ * seen before is taken for one that was, and so is never searched. Such an omission can
+ * make the solution found longer than the shortest, or a solvable puzzle look
+ * unsolvable; {@link #getExpectedOmissions()} estimates how likely that was.
+ * <p>
+ *     Only the frontier is kept whole: the depth being expanded and the next one, packed
+ *     into longs if the puzzle packs and as objects otherwise. For the path, every
+ *     configuration leaves behind the position of its parent in the depth before and
+ *     which of the parent's moves reached it, five bytes in all; once a solution turns up
+ *     the moves are replayed from the start. Configurations of a
+ *     {@link PackedConfiguration} are hashed from their packed longs, which for puzzles
+ *     that pack into a single long is exact; others are hashed by their
+ *     {@link Configuration#fingerprint()}.
+ * </p>
+ * <p>
+ *     The unique count is the number of configurations the visited set took for new.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class ProbabilisticSolver extends Solver {
+    /** the size of the bit array unless told otherwise */
+    public static final long DEFAULT_BITSTATE_BYTES = 64L << 20;
+    /** the number of hash functions of the bit array unless told otherwise */
+    public static final int DEFAULT_HASHES = 3;
+    /** the bytes of path information each configuration leaves behind */
+    private static final int TRAIL_BYTES = Integer.BYTES + Byte.BYTES;
+
+    /**
+     * How the visited set remembers configurations.
+     */
+    public enum Mode {
+        /**
+         * bitstate hashing: k hashes of each configuration set k bits of a fixed bit
+         * array (a Bloom filter), and a configuration whose k bits are all set is taken
+         * as visited. Memory is fixed; omissions grow as the array fills up.
+         */
+        BITSTATE,
+        /**
+         * hash compaction: the 64-bit hash of each configuration is kept in an
+         * open-addressing table, and only two configurations with the same hash are
+         * mistaken for each other.
+         */
+        HASH_COMPACTION
+    }
+
+    private final Mode mode;
+    private final long bits;
+    private final int hashes;
+    private HashFilter filter;
+    private long trailBytes;
+
+    /**
+     * An omission can make the solution longer than the shortest, so none of them go
+     * into the cache.
+     * @return false
+     */
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    /**
+     * Constructor for a ProbabilisticSolver in the hash compaction mode.
+     */
+    public ProbabilisticSolver() {
+        this.mode = Mode.HASH_COMPACTION;
+        this.bits = 0;
+        this.hashes = 0;
+    }
+
+    /**
+     * Constructor for a ProbabilisticSolver in the bitstate mode.
+     * @param bytes the size of the bit array, rounded up to a power of two
+     * @param hashes the number of bits set for each configuration
+     */
+    public ProbabilisticSolver(long bytes, int hashes) {
+        this.mode = Mode.BITSTATE;
+        this.bits = Long.highestOneBit(Math.max(64, bytes * 8 - 1)) << 1;
+        this.hashes = Math.max(1, hashes);
+    }
+
+    /**
+     * Get the mode of the visited set.
+     * @return the mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Estimates the number of configurations the last search missed: for the bit array
+     * the sum, over every configuration added, of the chance that all its bits were
+     * already set; for both modes the chance of two configurations sharing a hash.
+     * @return the expected number of configurations taken for visited by mistake
+     */
+    public double getExpectedOmissions() {
+        return filter == null ? 0 : filter.expectedOmissions();
+    }
+
+    /**
+     * Estimates the chance that the last search missed any configuration at all.
+     * @return the probability of at least one omission
+     */
+    public double getOmissionProbability() {
+        return -Math.expm1(-getExpectedOmissions());
+    }
+
+    /**
+     * Get the memory the visited set and the path information of the last search took,
+     * not counting the frontier.
+     * @return the bytes
+     */
+    public long getVisitedBytes() {
+        return filter == null ? 0 : filter.bytes() + trailBytes;
+    }
+
+    /**
+     * Describes the visited set of the last search, such as "Bitstate: 2^29 bits, 3
+     * hashes, 1.20% set, 64.5 MB for 1234567 states (54.8 bytes each); expected
+     * omissions 1.50e-05 (probability 0.00150%)".
+     * @return the description
+     */
+    public String getSummary() {
+        long states = Math.max(1, unique);
+        String memory = String.format(Locale.ROOT, "%.1f MB for %d states (%.1f bytes each)",
+                getVisitedBytes() / 1048576.0, unique, (double) getVisitedBytes() / states);
+        String set = mode == Mode.BITSTATE
+                ? String.format(Locale.ROOT, "Bitstate: 2^%d bits, %d hashes, %.2f%% set, ",
+                        Long.numberOfTrailingZeros(bits), hashes, 100.0 * ((BitArray) filter).fill())
+                : "Hash compaction: ";
+        return set + memory + String.format(Locale.ROOT, "; expected omissions %.3g (probability %.3g%%)",
+                getExpectedOmissions(), 100 * getOmissionProbability());
+    }
+
+    /**
+     * Searches breadth first with the probabilistic visited set. A search that runs out
+     * of budget reports the path to the configuration it was about to expand.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    @Override
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
+        total=1;
+        unique=1;
+        stats = newStats();
+        trailBytes = 0;
+        Configuration root = initialConfig.canonicalize();
+        boolean exact = root instanceof PackedConfiguration packed && packed.packedLongs() == 1;
+        filter = mode == Mode.BITSTATE ? new BitArray(bits, hashes, exact) : new FingerprintTable(exact);
+        filter.add(hash(root));
+        try {
+            return breadthFirst(initialConfig, root, budget);
+        } finally {
+            stats.finish(total, unique, unique);
+        }
+    }
+
+    /**
+     * Expands one depth after another, keeping only the frontier and the trail of each
+     * depth.
+     * @param initialConfig the starting configuration
+     * @param root its canonical form
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    private SolverResult breadthFirst(Configuration initialConfig, Configuration root, SolverBudget budget) {
+        if (root.isSolution()) {
+            return SolverResult.solved(List.of(initialConfig), stats);
+        }
+        PackedConfiguration packer = root instanceof PackedConfiguration packed && packed.packedLongs() > 0
+                ? packed : null;
+        List<Layer> trail = new ArrayList<>();
+        Layer frontier = new Layer(packer);
+        frontier.add(root, -1, 0);
+        Expansion expansion = new Expansion();
+        while (frontier.size > 0) {
+            stats.beginDepth(frontier.size, total, unique);
+            Layer next = new Layer(packer);
+            for (int i = 0; i < frontier.size; i++) {
+                if (budget.isExhausted(stats.getExpanded())) {
+                    Collection<Configuration> deepest = path(initialConfig, root, trail, i);
+                    return SolverResult.exhausted(deepest, SolverResult.NO_ESTIMATE, deepest.size() - 1, stats);
+                }
+                if (expansion.expand(frontier.get(i), i, next)) {
+                    trail.add(next);
+                    return SolverResult.solved(path(initialConfig, root, trail, next.size - 1), stats);
+                }
+            }
+            frontier.release();
+            trailBytes += (long) next.size * TRAIL_BYTES;
+            trail.add(next);
+            frontier = next;
+        }
+        return SolverResult.unsolvable(trail.size() - 1, stats);
+    }
+
+    /**
+     * Rebuilds the path to a configuration of the deepest depth of the trail by
+     * replaying the moves that reached it from the start.
+     * @param initialConfig the starting configuration
+     * @param root its canonical form
+     * @param trail the trail of every depth after the start
+     * @param index the configuration's position in its depth
+     * @return the path of real configurations
+     */
+    private static Collection<Configuration> path(Configuration initialConfig, Configuration root,
+                                                  List<Layer> trail, int index) {
+        int[] moves = new int[trail.size()];
+        for (int depth = trail.size() - 1; depth >= 0; depth--) {
+            Layer layer = trail.get(depth);
+            moves[depth] = layer.moves[index] & 0xff;
+            index = layer.parents[index];
+        }
+        List<Configuration> canonicalPath = new ArrayList<>(moves.length + 1);
+        Configuration current = root;
+        canonicalPath.add(current);
+        for (int move : moves) {
+            current = Solution.move(current, move).canonicalize();
+            canonicalPath.add(current);
+        }
+        return unfold(initialConfig, canonicalPath);
+    }
+
+    /**
+     * Hashes a configuration for the visited set: its packed longs if it has them,
+     * otherwise its fingerprint.
+     * @param config the configuration, in its canonical form
+     * @return the 64-bit hash
+     */
+    static long hash(Configuration config) {
+        if (config instanceof PackedConfiguration packed && packed.packedLongs() > 0) {
+            return hash(packed.packLow(), packed.packHigh(), packed.packedLongs() > 1);
+        }
+        return config.fingerprint();
+    }
+
+    /**
+     * Hashes a packed configuration.
+     * @param low the low bits
+     * @param high the high bits
+     * @param wide true if the puzzle packs into two longs
+     * @return the 64-bit hash, which for one long tells every configuration apart
+     */
+    static long hash(long low, long high, boolean wide) {
+        long h = mix(low);
+        return wide ? h ^ Long.rotateLeft(mix(high + 0x9E3779B97F4A7C15L), 29) : h;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which is a bijection on longs.
+     * @param value the value
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Expands configurations of one depth into the next, numbering the moves of each.
+     */
+    private class Expansion implements Consumer<Configuration> {
+        private Layer next;
+        private int parent;
+        private int move;
+        private boolean solved;
+
+        /**
+         * Expands one configuration.
+         * @param current the configuration
+         * @param index its position in its depth
+         * @param next the next depth, which its new neighbors are added to
+         * @return true if one of them is a solution; it is then the last of the next depth
+         */
+        boolean expand(Configuration current, int index, Layer next) {
+            this.next = next;
+            this.parent = index;
+            this.move = 0;
+            this.solved = false;
+            long start = System.nanoTime();
+            current.forEachNeighbor(this);
+            stats.expandedUntimed(System.nanoTime() - start);
+            return solved;
+        }
+
+        @Override
+        public void accept(Configuration neighbor) {
+            if (solved) {
+                return;
+            }
+            if (move > 0xff) {
+                throw new IllegalStateException("More than 256 moves from a configuration");
+            }
+            total++;
+            Configuration canonical = neighbor.canonicalize();
+            if (filter.add(hash(canonical))) {
+                unique++;
+                next.add(canonical, parent, move);
+                solved = canonical.isSolution();
+            }
+            move++;
+        }
+    }
+
+    /**
+     * The configurations of one depth and their trail: the position of each one's parent
+     * in the depth before and the move that reached it. The configurations are kept
+     * packed if the puzzle packs, and are let go once the depth has been expanded.
+     */
+    private static class Layer {
+        private final PackedConfiguration packer;
+        private List<Configuration> states;
+        private long[] lows;
+        private long[] highs;
+        private int[] parents = new int[16];
+        private byte[] moves = new byte[16];
+        private int size;
+
+        /**
+         * Constructor for the Layer class.
+         * @param packer the start, which packed configurations are unpacked against, or
+         *               null to keep the configurations as objects
+         */
+        Layer(PackedConfiguration packer) {
+            this.packer = packer;
+            if (packer != null) {
+                lows = new long[16];
+                highs = packer.packedLongs() > 1 ? new long[16] : null;
+            } else {
+                states = new ArrayList<>();
+            }
+        }
+
+        void add(Configuration state, int parent, int move) {
+            if (size == parents.length) {
+                int capacity = size + (size >> 1);
+                parents = Arrays.copyOf(parents, capacity);
+                moves = Arrays.copyOf(moves, capacity);
+                if (lows != null) {
+                    lows = Arrays.copyOf(lows, capacity);
+                }
+                if (highs != null) {
+                    highs = Arrays.copyOf(highs, capacity);
+                }
+            }
+            if (packer != null) {
+                PackedConfiguration packed = (PackedConfiguration) state;
+                lows[size] = packed.packLow();
+                if (highs != null) {
+                    highs[size] = packed.packHigh();
+                }
+            } else {
+                states.add(state);
+            }
+            parents[size] = parent;
+            moves[size] = (byte) move;
+            size++;
+        }
+
+        Configuration get(int index) {
+            return packer != null ? packer.unpack(lows[index], highs != null ? highs[index] : 0L) : states.get(index);
+        }
+
+        /**
+         * Lets go of the configurations, keeping the trail, and trims it.
+         */
+        void release() {
+            states = null;
+            lows = null;
+            highs = null;
+            parents = Arrays.copyOf(parents, size);
+            moves = Arrays.copyOf(moves, size);
+        }
+    }
+
+    /**
+     * A visited set that only sees the hashes of configurations.
+     */
+    private interface HashFilter {
+        /**
+         * Adds a configuration unless it looks visited.
+         * @param hash the configuration's hash
+         * @return true if it was taken for new
+         */
+        boolean add(long hash);
+
+        /**
+         * Estimates the configurations taken for visited by mistake so far.
+         * @return the expected number of omissions
+         */
+        double expectedOmissions();
+
+        /**
+         * Get the memory the set takes.
+         * @return the bytes
+         */
+        long bytes();
+    }
+
+    /**
+     * The chance that some of n configurations share a 64-bit hash, as the expected
+     * number of pairs that do: n(n-1)/2 pairs, each with a chance of 2^-64.
+     * @param n the number of configurations
+     * @return the expected number of collisions
+     */
+    private static double collisions(long n) {
+        return (double) n * (n - 1) / 0x1p65;
+    }
+
+    /**
+     * The bit array of the bitstate mode. The k bit positions of a hash come from double
+     * hashing: the hash itself and an odd step mixed from it.
+     */
+    private static class BitArray implements HashFilter {
+        private final long[] words;
+        private final long mask;
+        private final int hashes;
+        private final boolean exact;
+        private long set;
+        private long added;
+        private double omissions;
+
+        /**
+         * Constructor for the BitArray class.
+         * @param bits the number of bits, a power of two
+         * @param hashes the number of bits per configuration
+         * @param exact true if the hashes tell every configuration apart
+         */
+        BitArray(long bits, int hashes, boolean exact) {
+            if (bits / 64 > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("A bit array of 2^" + Long.numberOfTrailingZeros(bits)
+                        + " bits is too large");
+            }
+            this.words = new long[(int) (bits / 64)];
+            this.mask = bits - 1;
+            this.hashes = hashes;
+            this.exact = exact;
+        }
+
+        @Override
+        public boolean add(long hash) {
+            long step = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            double chance = 1;
+            double fill = fill();
+            boolean fresh = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (hash + i * step) & mask;
+                int word = (int) (bit >>> 6);
+                long flag = 1L << bit;
+                if ((words[word] & flag) == 0) {
+                    words[word] |= flag;
+                    set++;
+                    fresh = true;
+                }
+                chance *= fill;
+            }
+            if (fresh) {
+                added++;
+                omissions += chance;
+            }
+            return fresh;
+        }
+
+        /**
+         * Get the share of the bits that are set.
+         * @return the fill
+         */
+        double fill() {
+            return (double) set / (mask + 1);
+        }
+
+        @Override
+        public double expectedOmissions() {
+            return omissions + (exact ? 0 : collisions(added));
+        }
+
+        @Override
+        public long bytes() {
+            return words.length * 8L;
+        }
+    }
+
+    /**
+     * The table of 64-bit hashes of the hash compaction mode, with linear probing. The
+     * hash 0 marks an empty slot, so it is remembered apart.
+     */
+    private static class FingerprintTable implements HashFilter {
+        private static final double MAX_LOAD = 0.75;
+        private final boolean exact;
+        private long[] slots = new long[1 << 10];
+        private boolean zero;
+        private int size;
+
+        /**
+         * Constructor for the FingerprintTable class.
+         * @param exact true if the hashes tell every configuration apart
+         */
+        FingerprintTable(boolean exact) {
+            this.exact = exact;
+        }
+
+        @Override
+        public boolean add(long hash) {
+            if (hash == 0) {
+                boolean fresh = !zero;
+                zero = true;
+                size += fresh ? 1 : 0;
+                return fresh;
+            }
+            if (size + 1 > slots.length * MAX_LOAD) {
+                rehash();
+            }
+            if (!insert(slots, hash)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        private static boolean insert(long[] table, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            long entry;
+            while ((entry = table[slot]) != 0) {
+                if (entry == hash) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            return true;
+        }
+
+        /**
+         * Doubles the table and puts every hash back in.
+         */
+        private void rehash() {
+            if (slots.length >= 1 << 30) {
+                throw new IllegalStateException("The fingerprint table is full at " + size + " configurations");
+            }
+            long[] bigger = new long[slots.length * 2];
+            for (long hash : slots) {
+                if (hash != 0) {
+                    insert(bigger, hash);
+                }
+            }
+            slots = bigger;
+        }
+
+        @Override
+        public double expectedOmissions() {
+            return exact ? 0 : collisions(size);
+        }
+
+        @Override
+        public long bytes() {
+            return slots.length * 8L;
+        }
+    }
+}
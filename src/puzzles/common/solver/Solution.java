@@ -0,0 +1,317 @@
+package puzzles.common.solver;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A path from a start to a solution, kept as the start and the moves made from it
+ * rather than as every configuration along the way.
+ * <p>
+ *     A move is the position of the neighbor taken among those
+ *     {@link Configuration#forEachNeighbor} hands over, written as a variable-length
+ *     number: seven bits to a byte, so a puzzle with fewer than 128 moves from every
+ *     configuration takes a byte a move. The configurations are only made again, one
+ *     at a time, when the path is iterated, so a long path costs a few bytes a move to
+ *     keep and nothing but the current configuration to print. Iterating makes every
+ *     move again, which relies on a configuration handing over its neighbors in the
+ *     same order every time.
+ * </p>
+ * <p>
+ *     A solution is a read-only {@link Collection}, so it can be used wherever the
+ *     solvers used to return a list of configurations. Two solutions are only equal if
+ *     they are the same object.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public final class Solution extends AbstractCollection<Configuration> {
+    /**
+     * Writes one step of a solution for a puzzle's program.
+     */
+    @FunctionalInterface
+    public interface StepRenderer {
+        /**
+         * Writes one step.
+         * @param step the number of the step, 0 for the start
+         * @param config the configuration after the step
+         * @param out where to write it
+         * @throws IOException if it cannot be written
+         */
+        void render(int step, Configuration config, Appendable out) throws IOException;
+    }
+
+    /** the characters buffered before they are encoded and written to the channel */
+    private static final int BUFFER = 1 << 16;
+
+    private final Configuration start;
+    private final byte[] moves;
+    private final int length;
+    private final int count;
+
+    /**
+     * Constructor for the Solution class.
+     * @param start the starting configuration
+     * @param moves the encoded moves, of which only the first length bytes are used
+     * @param length the number of bytes used
+     * @param count the number of moves
+     */
+    private Solution(Configuration start, byte[] moves, int length, int count) {
+        this.start = start;
+        this.moves = moves;
+        this.length = length;
+        this.count = count;
+    }
+
+    /**
+     * Encodes a path as a solution. A solution is returned as it is.
+     * @param path the path, starting with the start
+     * @return the solution
+     * @throws IllegalStateException if a configuration of the path is not a neighbor
+     *                               of the one before it
+     */
+    public static Solution of(Collection<Configuration> path) {
+        if (path instanceof Solution solution) {
+            return solution;
+        }
+        Iterator<Configuration> steps = path.iterator();
+        Configuration current = steps.next();
+        Builder builder = new Builder(current, path.size() - 1);
+        while (steps.hasNext()) {
+            Configuration step = steps.next();
+            current = builder.add(current, step::equals);
+            if (current == null) {
+                throw new IllegalStateException("No move leads to " + step);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Makes one of the moves of a configuration.
+     * @param from the configuration
+     * @param move the position of the move among those {@link Configuration#forEachNeighbor} hands over
+     * @return the neighbor
+     * @throws IllegalStateException if the configuration has no such move
+     */
+    static Configuration move(Configuration from, int move) {
+        Configuration found = new Pick().move(from, move);
+        if (found == null) {
+            throw new IllegalStateException("No move " + move + " from " + from);
+        }
+        return found;
+    }
+
+    /**
+     * Get the configuration the solution starts from.
+     * @return the starting configuration
+     */
+    public Configuration getStart() {
+        return start;
+    }
+
+    /**
+     * Get the number of moves from the start to the solution.
+     * @return the number of moves, one less than the number of configurations
+     */
+    public int getMoveCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of configurations on the path, the start included.
+     * @return the number of configurations
+     */
+    @Override
+    public int size() {
+        return count + 1;
+    }
+
+    /**
+     * Iterates over the configurations on the path, making each one from the one
+     * before it as it is asked for.
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Configuration> iterator() {
+        return new Iterator<>() {
+            private final Pick pick = new Pick();
+            private Configuration current;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return current == null || position < length;
+            }
+
+            @Override
+            public Configuration next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (current == null) {
+                    current = start;
+                    return current;
+                }
+                int move = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = moves[position++];
+                    move |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                Configuration next = pick.move(current, move);
+                if (next == null) {
+                    throw new IllegalStateException("No move " + move + " from " + current);
+                }
+                current = next;
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Prints every step of the solution, through a buffered channel instead of line by
+     * line. Whatever the stream holds is flushed first, so the steps come after it.
+     * @param out where to print the steps
+     * @param renderer how a step is written
+     */
+    public void print(PrintStream out, StepRenderer renderer) {
+        out.flush();
+        try {
+            writeTo(Channels.newChannel(out), renderer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes every step of the solution to a channel, in the platform's charset. The
+     * steps go through one buffer, so the channel is written in large blocks; it is
+     * left open.
+     * @param channel where to write the steps
+     * @param renderer how a step is written
+     * @throws IOException if the channel cannot be written
+     */
+    public void writeTo(WritableByteChannel channel, StepRenderer renderer) throws IOException {
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, Charset.defaultCharset().newEncoder(), -1),
+                BUFFER);
+        int step = 0;
+        for (Configuration config : this) {
+            renderer.render(step++, config, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Builds a solution move by move.
+     */
+    static final class Builder {
+        private final Configuration start;
+        private final Pick pick = new Pick();
+        private byte[] moves;
+        private int length;
+        private int count;
+
+        /**
+         * Constructor for the Builder class.
+         * @param start the starting configuration
+         * @param expected the number of moves expected, to size the buffer
+         */
+        Builder(Configuration start, int expected) {
+            this.start = start;
+            this.moves = new byte[Math.max(expected, 1)];
+        }
+
+        /**
+         * Adds the first move from a configuration that leads to a neighbor accepted by a test.
+         * @param from the configuration the move is made from
+         * @param match the test the neighbor has to pass
+         * @return the neighbor, or null if none passes (and nothing is added)
+         */
+        Configuration add(Configuration from, Predicate<Configuration> match) {
+            Configuration found = pick.find(from, match);
+            if (found != null) {
+                int move = pick.position;
+                while (true) {
+                    if (length == moves.length) {
+                        moves = Arrays.copyOf(moves, moves.length * 2);
+                    }
+                    if (move < 0x80) {
+                        moves[length++] = (byte) move;
+                        break;
+                    }
+                    moves[length++] = (byte) (move | 0x80);
+                    move >>>= 7;
+                }
+                count++;
+            }
+            return found;
+        }
+
+        /**
+         * Get the solution built so far.
+         * @return the solution
+         */
+        Solution build() {
+            return new Solution(start, moves, length, count);
+        }
+    }
+
+    /**
+     * Picks a neighbor out of those a configuration hands over, either by its position
+     * or as the first one that passes a test.
+     */
+    private static final class Pick implements Consumer<Configuration> {
+        private Predicate<Configuration> match;
+        private int wanted;
+        private int position;
+        private Configuration found;
+
+        Configuration move(Configuration from, int move) {
+            return pick(from, null, move);
+        }
+
+        Configuration find(Configuration from, Predicate<Configuration> match) {
+            return pick(from, match, -1);
+        }
+
+        private Configuration pick(Configuration from, Predicate<Configuration> match, int wanted) {
+            this.match = match;
+            this.wanted = wanted;
+            this.position = 0;
+            this.found = null;
+            from.forEachNeighbor(this);
+            Configuration picked = found;
+            found = null;
+            this.match = null;
+            return picked;
+        }
+
+        @Override
+        public void accept(Configuration neighbor) {
+            if (found != null) {
+                return;
+            }
+            if (match != null ? match.test(neighbor) : position == wanted) {
+                found = neighbor;
+            } else {
+                position++;
+            }
+        }
+    }
+}
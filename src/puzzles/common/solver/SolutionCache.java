@@ -0,0 +1,361 @@
+package puzzles.common.solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache of solved configurations that lives in a memory-mapped file, so that it
+ * survives from one run to the next. It maps the {@link Configuration#fingerprint()
+ * fingerprint} of a configuration's {@link Configuration#canonicalize() canonical form}
+ * to its distance from a solution and the canonical fingerprint of the configuration
+ * one move closer, so a board that is the same as a cached one up to a symmetry finds
+ * its solution too.
+ * <p>
+ *     The file has a fixed size. Its slots are grouped in buckets of {@value #WAYS}; a
+ *     configuration can only go in the bucket its fingerprint selects, and when that
+ *     bucket is full the slot used least recently is given up. Every slot ends with a
+ *     checksum that is cleared before the slot is rewritten and set again last, so a
+ *     slot that was only half written when the program (or the machine) went down is
+ *     simply treated as empty.
+ * </p>
+ * <p>
+ *     A path read back from the cache is rebuilt by generating neighbors and taking the
+ *     one whose canonical form is the next on the cached path, the way the searches
+ *     turn their paths back into real moves. It is only used if every step is found
+ *     and ends in a solution, so a fingerprint collision can cost a search but never
+ *     give a wrong answer.
+ * </p>
+ * <p>
+ *     Several programs may share a file. Every lookup and store holds an exclusive
+ *     {@link FileLock} on it, so one program never sees another's half-written slots
+ *     or loses its updates. A file lock belongs to the whole program, so a program has
+ *     to open a file only once: {@link #shared(Path)} keeps one cache per file.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class SolutionCache implements Closeable {
+    /** the cache file used unless told otherwise */
+    public static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".puzzles", "solutions.cache");
+    /**
+     * the system property that lets the puzzle models cache their hints: true for the
+     * {@link #DEFAULT_FILE}, or the cache file to use
+     */
+    public static final String HINTS_PROPERTY = "puzzles.hintCache";
+    /** the size of a cache file unless told otherwise */
+    public static final long DEFAULT_BYTES = 16L << 20;
+
+    private static final long MAGIC = 0x50757a7a436163L; // "PuzzCac"
+    private static final int VERSION = 2;
+    private static final int HEADER = 64;
+    /** slots per bucket */
+    private static final int WAYS = 8;
+    /** bytes per slot: fingerprint, next fingerprint, distance, last use, checksum */
+    private static final int SLOT = 32;
+    private static final int KEY = 0;
+    private static final int NEXT = 8;
+    private static final int DISTANCE = 16;
+    private static final int USED = 20;
+    private static final int CHECK = 24;
+    /** where the header keeps the clock that orders the uses of slots */
+    private static final int CLOCK = 16;
+    /** the caches open in this program, by file, so that each file is only mapped once */
+    private static final Map<Path, SolutionCache> OPEN = new HashMap<>();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int buckets;
+    private int clock;
+
+    /**
+     * Constructor for the SolutionCache class.
+     * @param channel the open cache file
+     * @param buffer the cache file, mapped
+     * @param buckets the number of buckets in the file
+     */
+    private SolutionCache(FileChannel channel, MappedByteBuffer buffer, int buckets) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.buckets = buckets;
+        this.clock = buffer.getInt(CLOCK);
+    }
+
+    /**
+     * Opens a cache file, creating it if it does not exist. A file of another size or
+     * format is started over. A program must not open the same file twice, since the
+     * locks of the two would clash; {@link #shared(Path)} sees to that.
+     * @param file the cache file
+     * @param bytes the size of the file, which bounds the number of configurations kept
+     * @return the cache
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static SolutionCache open(Path file, long bytes) throws IOException {
+        long bucketCount = Math.max(1, (bytes - HEADER) / (WAYS * SLOT));
+        int buckets = (int) Math.min(bucketCount, Integer.MAX_VALUE / (WAYS * SLOT));
+        long size = HEADER + (long) buckets * WAYS * SLOT;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer;
+            FileLock lock = channel.lock();
+            try {
+                boolean fresh = channel.size() != size;
+                if (fresh) {
+                    channel.truncate(0);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (fresh || buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION
+                        || buffer.getInt(12) != buckets) {
+                    // a new file is already all zeros, an old one of another format is cleared
+                    for (int at = 0; !fresh && at < size; at += 8) {
+                        buffer.putLong(at, 0L);
+                    }
+                    buffer.putLong(0, MAGIC);
+                    buffer.putInt(8, VERSION);
+                    buffer.putInt(12, buckets);
+                }
+            } finally {
+                lock.release();
+            }
+            return new SolutionCache(channel, buffer, buckets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a cache file of the {@link #DEFAULT_BYTES default size}, or returns the cache
+     * already open on it in this program.
+     * @param file the cache file
+     * @return the cache
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static SolutionCache shared(Path file) throws IOException {
+        synchronized (OPEN) {
+            Path key = file.toAbsolutePath().normalize();
+            SolutionCache open = OPEN.get(key);
+            if (open == null) {
+                open = open(key, DEFAULT_BYTES);
+                OPEN.put(key, open);
+            }
+            return open;
+        }
+    }
+
+    /**
+     * Returns the cache for the hints of the puzzle models, opening it the first time
+     * a hint asks for it. Hints are only cached if the {@value #HINTS_PROPERTY} system
+     * property says so.
+     * @return the cache, or null if hints are not cached or the file is not available
+     */
+    public static SolutionCache forHints() {
+        return Hints.CACHE;
+    }
+
+    /**
+     * Holds the cache for the hints, which is opened when the class is first used.
+     */
+    private static class Hints {
+        static final SolutionCache CACHE = open();
+
+        private static SolutionCache open() {
+            String setting = System.getProperty(HINTS_PROPERTY, "false");
+            if (setting.isEmpty() || setting.equalsIgnoreCase("false")) {
+                return null;
+            }
+            try {
+                return shared(setting.equalsIgnoreCase("true") ? DEFAULT_FILE : Path.of(setting));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Looks up the solution from a configuration.
+     * @param start the starting configuration
+     * @return a shortest path from the start to a solution, or null if it is not in the cache
+     */
+    public synchronized Collection<Configuration> lookup(Configuration start) {
+        try {
+            FileLock lock = channel.lock();
+            try {
+                clock = buffer.getInt(CLOCK);
+                int slot = find(start.canonicalize().fingerprint());
+                if (slot < 0) {
+                    return null;
+                }
+                touch(slot);
+                buffer.putInt(CLOCK, clock);
+                int distance = buffer.getInt(slot + DISTANCE);
+                Solution.Builder path = new Solution.Builder(start, distance);
+                Configuration current = start;
+                for (; distance > 0; distance--) {
+                    long next = buffer.getLong(slot + NEXT);
+                    current = path.add(current, neighbor -> neighbor.canonicalize().fingerprint() == next);
+                    slot = find(next);
+                    if (current == null || slot < 0 || buffer.getInt(slot + DISTANCE) != distance - 1) {
+                        return null;
+                    }
+                }
+                return current.isSolution() ? path.build() : null;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            return null; // the cache is only a shortcut, so the search is run instead
+        }
+    }
+
+    /**
+     * Records every configuration along a shortest path to a solution. A path that
+     * cannot be written is left out.
+     * @param path the path, ending in a solution
+     */
+    public synchronized void store(Collection<Configuration> path) {
+        long[] fingerprints = new long[path.size()];
+        int i = 0;
+        for (Configuration config : path) {
+            fingerprints[i++] = config.canonicalize().fingerprint();
+        }
+        try {
+            FileLock lock = channel.lock();
+            try {
+                clock = buffer.getInt(CLOCK);
+                for (i = 0; i < fingerprints.length; i++) {
+                    long next = i + 1 < fingerprints.length ? fingerprints[i + 1] : 0L;
+                    put(fingerprints[i], next, fingerprints.length - 1 - i);
+                }
+                buffer.putInt(CLOCK, clock);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            // the cache is only a shortcut, so losing a path costs a search later
+        }
+    }
+
+    /**
+     * Writes everything to the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Finds the slot of a configuration.
+     * @param key the configuration's fingerprint
+     * @return the slot's offset in the file, or -1 if the configuration is not cached
+     */
+    private int find(long key) {
+        int bucket = bucket(key);
+        for (int way = 0; way < WAYS; way++) {
+            int slot = bucket + way * SLOT;
+            if (valid(slot) && buffer.getLong(slot + KEY) == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records a configuration, keeping the shorter distance if it is already cached
+     * and otherwise taking an empty slot or the least recently used one.
+     * @param key the configuration's fingerprint
+     * @param next the fingerprint of the next configuration on the path, 0 for a solution
+     * @param distance the number of moves to the solution
+     */
+    private void put(long key, long next, int distance) {
+        int bucket = bucket(key);
+        int victim = -1;
+        for (int way = 0; way < WAYS; way++) {
+            int slot = bucket + way * SLOT;
+            if (!valid(slot)) {
+                if (victim < 0 || valid(victim)) {
+                    victim = slot;
+                }
+            } else if (buffer.getLong(slot + KEY) == key) {
+                if (buffer.getInt(slot + DISTANCE) <= distance) {
+                    touch(slot);
+                    return;
+                }
+                victim = slot;
+                break;
+            } else if (victim < 0 || (valid(victim) && age(slot) > age(victim))) {
+                victim = slot;
+            }
+        }
+        int used = ++clock;
+        buffer.putLong(victim + CHECK, 0L);
+        buffer.putLong(victim + KEY, key);
+        buffer.putLong(victim + NEXT, next);
+        buffer.putInt(victim + DISTANCE, distance);
+        buffer.putInt(victim + USED, used);
+        buffer.putLong(victim + CHECK, checksum(key, next, distance, used));
+    }
+
+    /**
+     * Marks a slot as just used, so it is the last of its bucket to be given up.
+     * @param slot the slot's offset in the file
+     */
+    private void touch(int slot) {
+        int used = ++clock;
+        buffer.putLong(slot + CHECK, 0L);
+        buffer.putInt(slot + USED, used);
+        buffer.putLong(slot + CHECK, checksum(buffer.getLong(slot + KEY), buffer.getLong(slot + NEXT),
+                buffer.getInt(slot + DISTANCE), used));
+    }
+
+    /**
+     * How long ago was a slot used?
+     * @param slot the slot's offset in the file
+     * @return the number of uses since
+     */
+    private int age(int slot) {
+        return clock - buffer.getInt(slot + USED);
+    }
+
+    private boolean valid(int slot) {
+        return buffer.getLong(slot + CHECK) == checksum(buffer.getLong(slot + KEY), buffer.getLong(slot + NEXT),
+                buffer.getInt(slot + DISTANCE), buffer.getInt(slot + USED));
+    }
+
+    private int bucket(long key) {
+        return HEADER + (int) Long.remainderUnsigned(mix(key), buckets) * WAYS * SLOT;
+    }
+
+    private static long checksum(long key, long next, int distance, int used) {
+        long check = mix(key ^ 0x9e3779b97f4a7c15L) ^ mix(next + 0x632be59bd9b4e019L)
+                ^ mix(((long) distance << 32 | (used & 0xffffffffL)) + 0x7f4a7c159e3779b9L);
+        return check == 0 ? 1 : check;
+    }
+
+    /**
+     * Scrambles the bits of a fingerprint (the finalizer of MurmurHash3).
+     * @param value the value to scramble
+     * @return the scrambled value
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -1,61 +1,864 @@
 package puzzles.common.solver;
 
+import puzzles.common.Observer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
+/**
+ * The common solver for all the puzzles. Every search counts the configurations it
+ * generates (total) and the distinct ones among them (unique), and leaves the rest of
+ * what it did in a {@link SolverStats}.
+ *
+ * @author Ashrith V. Mudundi
+ */
 public class Solver {
-    public int getTotal(){
+    public long getTotal(){
         return total;
     }
-    public int getUnique(){
+    public long getUnique(){
         return unique;
     }
-    // TODO
-    private int total;
-    private int unique;
-    // This class should implement a solver for the puzzle.
-    // It takes the starting value as a parameter to the constructor.
-    // Uses Breadth First Search to find the solution
-    // The solution is stored in a queue
-    // Checks if the solution is equal to finish hour. i.e. 2.isSolution()
-    // If not, it gets the neighbors of the current hour and adds them to the queue
-    // It continues until it finds the solution
-    // It returns the path to the solution as an array of numbers to the main class
-    public Collection<Configuration> solve(Configuration initialConfig) {
-        // Implement your breadth-first search algorithm here to find the shortest path.
-        // You can use the Configuration interface to represent the puzzle's configuration.
-        // You can use the Configuration's methods isSolution() and getNeighbors() to check
-        // if the current configuration is a solution or to get the neighbors from the current
-        // configuration.
+    public SolverStats getStats(){
+        return stats;
+    }
+    protected long total;
+    protected long unique;
+    protected SolverStats stats = new SolverStats();
+    private SolutionCache cache;
+    private double heapFraction = DEFAULT_HEAP_FRACTION;
+    private Path checkpointDirectory;
+    private long checkpointNanos;
+    private boolean resume;
+    private final List<Observer<Solver, SolverProgress>> progressObservers = new CopyOnWriteArrayList<>();
+    private long progressNanos = DEFAULT_PROGRESS_INTERVAL.toNanos();
+
+    /** the share of the maximum heap the breadth-first search may fill unless told otherwise */
+    public static final double DEFAULT_HEAP_FRACTION = 0.5;
+    /** the least time between two progress snapshots unless told otherwise */
+    public static final Duration DEFAULT_PROGRESS_INTERVAL = Duration.ofMillis(250);
+
+    /**
+     * Lets the solver answer from a cache of earlier solutions, and record the
+     * solutions it finds there if it is {@link #isExact() exact}.
+     * @param cache the cache, or null for none
+     * @see #solve(Configuration, SolverBudget)
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Is every solution this solver finds a shortest one? Only the solutions of exact
+     * solvers are added to the cache, since later searches take them for shortest.
+     * @return true; false for solvers that may miss configurations
+     */
+    public boolean isExact() {
+        return true;
+    }
+
+    /**
+     * Sets how much of the maximum heap the breadth-first search may project its visited
+     * set to fill before it changes to a more compact representation.
+     * @param heapFraction the share of {@link Runtime#maxMemory()}, between 0 and 1
+     * @see AdaptiveVisitedSet
+     */
+    public void setHeapFraction(double heapFraction) {
+        this.heapFraction = heapFraction;
+    }
+
+    /**
+     * Has the breadth-first search write {@link Checkpoint}s as it goes, so that it can be
+     * carried on if it is killed. Only puzzles whose configurations are
+     * {@link PackedConfiguration}s that fit in longs can be checkpointed. A search that
+     * ends removes its checkpoint, unless it ran out of budget: then it writes a last one.
+     * While another search of the same puzzle holds the checkpoint, the search runs
+     * without one.
+     * @param directory where the checkpoints are kept, or null for none
+     * @param interval the least time between two checkpoints
+     * @param resume true to carry on from the search's checkpoint if there is one
+     */
+    public void setCheckpoint(Path directory, Duration interval, boolean resume) {
+        this.checkpointDirectory = directory;
+        this.checkpointNanos = interval.toNanos();
+        this.resume = resume;
+    }
+
+    /**
+     * Adds an observer that is handed a {@link SolverProgress} snapshot of every search
+     * at most once per progress interval. The observer is called on the search's thread.
+     * A solver nobody observes does not take snapshots at all.
+     * @param observer the observer
+     */
+    public void addProgressObserver(Observer<Solver, SolverProgress> observer) {
+        progressObservers.add(observer);
+    }
+
+    /**
+     * Sets the least time between two progress snapshots.
+     * @param interval the interval
+     */
+    public void setProgressInterval(Duration interval) {
+        this.progressNanos = interval.toNanos();
+    }
+
+    /**
+     * Creates the statistics of a new search, watched if anyone observes the progress.
+     * @return the statistics
+     */
+    protected SolverStats newStats() {
+        SolverStats fresh = new SolverStats();
+        if (!progressObservers.isEmpty()) {
+            fresh.watch(progress -> {
+                for (Observer<Solver, SolverProgress> observer : progressObservers) {
+                    observer.update(this, progress);
+                }
+            }, progressNanos);
+        }
+        return fresh;
+    }
+
+    /**
+     * Breadth-first search for the shortest path from the initial configuration to a
+     * solution, with no limits.
+     * @param initialConfig the starting configuration
+     * @return the path to the solution, or null if there is none
+     * @see #solve(Configuration, SolverBudget)
+     */
+    public Solution solve(Configuration initialConfig) {
+        return solve(initialConfig, SolverBudget.UNLIMITED).getPath();
+    }
+
+    /**
+     * Searches for the shortest path from the initial configuration to a solution.
+     * If the solver has a cache and the configuration is in it, the cached path is
+     * returned without searching: the counters stay at 0 and the statistics say the
+     * solution came from the cache. Every solution found by searching is added to it,
+     * if the solver is {@link #isExact() exact}.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     * @see #setCache(SolutionCache)
+     */
+    public SolverResult solve(Configuration initialConfig, SolverBudget budget) {
+        if (cache != null) {
+            stats = newStats();
+            Collection<Configuration> path = cache.lookup(initialConfig);
+            if (path != null) {
+                total = 0;
+                unique = 0;
+                stats.cached();
+                stats.finish(total, unique, 0);
+                return SolverResult.solved(path, stats);
+            }
+        }
+        SolverResult result = search(initialConfig, budget);
+        if (cache != null && result.isSolved() && isExact()) {
+            cache.store(result.getPath());
+        }
+        return result;
+    }
+
+    /**
+     * Breadth-first search for the shortest path from the initial configuration to a
+     * solution. Every configuration discovered is numbered in an
+     * {@link AdaptiveVisitedSet}, so the queue is the range of numbers not yet expanded
+     * and the path is rebuilt from the parent numbers; if the visited set is about to
+     * outgrow the heap it packs the configurations into longs, and then moves the search
+     * to disk. Configurations are tested as soon as they are discovered, so the search
+     * stops one depth earlier than it would testing them when they are expanded.
+     * Configurations that are the same up to a
+     * {@link Configuration#canonicalize() symmetry} are only searched once. The budget is
+     * checked before every expansion; a search that runs out of it reports the path to
+     * the deepest configuration it discovered.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    protected SolverResult search(Configuration initialConfig, SolverBudget budget) {
         total=1;
         unique=1;
-        Map<Configuration, Configuration> predecessorMap = new HashMap<>();
-        Queue<Configuration> queue = new LinkedList<>();
-        queue.add(initialConfig);
-        predecessorMap.put(initialConfig, null);
-        while (!queue.isEmpty()) {
-            Configuration current = queue.remove();
-            if (current.isSolution()) {
-                return backtrace(predecessorMap, current);
+        stats = newStats();
+        AdaptiveVisitedSet visited = new AdaptiveVisitedSet(heapFraction, stats);
+        Expansion expansion = new Expansion() {
+            @Override
+            int add(Configuration neighbor, int parent) {
+                return visited.add(neighbor, parent);
+            }
+        };
+        Configuration root = expansion.canonical(initialConfig);
+        visited.add(root, StateArena.NO_PARENT);
+        Checkpoint checkpoint = null;
+        if (checkpointDirectory != null) {
+            if (root instanceof PackedConfiguration packed && packed.packedLongs() > 0) {
+                checkpoint = claim(new Checkpoint(checkpointDirectory, initialConfig, packed.packedLongs(),
+                        checkpointNanos));
+            } else {
+                stats.noticed("Cannot checkpoint " + root.getClass().getSimpleName()
+                        + ": its configurations do not pack into longs");
+            }
+        }
+        try {
+            SolverResult result = breadthFirst(initialConfig, budget, visited, expansion, checkpoint);
+            if (checkpoint != null && result.getStatus() != SolverResult.Status.BUDGET_EXHAUSTED) {
+                checkpoint.delete();
+            }
+            return result;
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.release();
+            }
+            boolean onDisk = visited.getRepresentation() == AdaptiveVisitedSet.Representation.DISK;
+            stats.finish(total, unique, onDisk ? unique : visited.size());
+        }
+    }
+
+    /**
+     * Runs the breadth-first search from the start, or from its checkpoint.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @param visited the visited set, holding the canonical form of the start
+     * @param expansion the expansion that adds to the visited set
+     * @param checkpoint the search's checkpoint, or null if it is not checkpointed
+     * @return how the search ended
+     */
+    private SolverResult breadthFirst(Configuration initialConfig, SolverBudget budget, AdaptiveVisitedSet visited,
+                                      Expansion expansion, Checkpoint checkpoint) {
+        Configuration root = visited.get(0);
+        if (root.isSolution()) {
+            return SolverResult.solved(expansion.real(initialConfig, visited.path(0)), stats);
+        }
+        int start = 0;
+        int depth = -1;
+        int depthEnd = 0;
+        if (checkpoint != null && resume) {
+            Checkpoint.Progress progress;
+            try {
+                progress = checkpoint.read(visited, (PackedConfiguration) root);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            for (Configuration neighbor : current.getNeighbors()) {
-                total++;
-                if (!predecessorMap.containsKey(neighbor)) {
-                    queue.add(neighbor);
-                    unique++;
-                    predecessorMap.put(neighbor, current);
+            if (progress != null) {
+                start = progress.nextId();
+                depth = progress.depth();
+                depthEnd = progress.depthEnd();
+                total = progress.total();
+                unique = progress.unique();
+                expansion.folded |= progress.folded();
+                visited.resumeDepths(progress.depthStarts());
+                if (start < depthEnd) {
+                    stats.beginDepth(depthEnd - start, total, unique);
                 }
             }
         }
+        for (int id = start; id < visited.size(); id++) {
+            if (id == depthEnd) {
+                depth++;
+                if (visited.beginDepth(id) == AdaptiveVisitedSet.Representation.DISK) {
+                    return spill(initialConfig, visited, budget);
+                }
+                stats.beginDepth(visited.size() - id, total, unique);
+                depthEnd = visited.size();
+            }
+            if (checkpoint != null && checkpoint.isDue()) {
+                checkpoint = checkpoint(checkpoint, visited, id, depth, depthEnd, expansion);
+            }
+            if (budget.isExhausted(stats.getExpanded())) {
+                if (checkpoint != null) {
+                    checkpoint(checkpoint, visited, id, depth, depthEnd, expansion);
+                }
+                Collection<Configuration> deepest = expansion.real(initialConfig, visited.path(visited.size() - 1));
+                return SolverResult.exhausted(deepest, SolverResult.NO_ESTIMATE, deepest.size() - 1, stats);
+            }
+            int solution = expansion.expand(visited.get(id), id);
+            if (solution != Expansion.NOT_FOUND) {
+                return SolverResult.solved(expansion.real(initialConfig, visited.path(solution)), stats);
+            }
+        }
+        return SolverResult.unsolvable(depth, stats);
+    }
+
+    /**
+     * Claims a checkpoint for this search.
+     * @param checkpoint the search's checkpoint
+     * @return the checkpoint, or null if another search holds it or it cannot be locked,
+     * in which case the search goes without
+     */
+    private Checkpoint claim(Checkpoint checkpoint) {
+        try {
+            if (checkpoint.claim()) {
+                return checkpoint;
+            }
+            stats.noticed("Cannot checkpoint: another search of this puzzle holds " + checkpoint.getFile());
+        } catch (IOException e) {
+            stats.noticed("Cannot lock the checkpoint: " + e.getMessage());
+        }
         return null;
     }
 
+    /**
+     * Writes a checkpoint of the breadth-first search.
+     * @param checkpoint the search's checkpoint
+     * @param visited the visited set
+     * @param nextId the number of the next configuration to expand
+     * @param depth the depth being expanded
+     * @param depthEnd the number of the first configuration of the next depth
+     * @param expansion the expansion, which knows whether canonical forms replaced configurations
+     * @return the checkpoint, or null if it cannot be written, which stops the checkpoints
+     */
+    private Checkpoint checkpoint(Checkpoint checkpoint, AdaptiveVisitedSet visited, int nextId, int depth,
+                                  int depthEnd, Expansion expansion) {
+        try {
+            checkpoint.write(visited, new Checkpoint.Progress(nextId, depth, depthEnd, visited.getDepthStarts(),
+                    total, unique, expansion.folded));
+            return checkpoint;
+        } catch (IOException e) {
+            stats.noticed("Cannot write the checkpoint: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Carries the breadth-first search on from the depth it is about to expand on disk,
+     * in the system's temporary directory with a buffer of children of an eighth of the
+     * heap at most.
+     * @param initialConfig the starting configuration
+     * @param visited the visited set, packed
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     * @see ExternalSolver
+     */
+    private SolverResult spill(Configuration initialConfig, AdaptiveVisitedSet visited, SolverBudget budget) {
+        ExternalSolver disk = new ExternalSolver(Path.of(System.getProperty("java.io.tmpdir")),
+                Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8));
+        try {
+            return disk.resume(initialConfig, visited, total, unique, stats, budget);
+        } finally {
+            total = disk.getTotal();
+            unique = disk.getUnique();
+        }
+    }
+
+    /**
+     * Runs {@link #solve(Configuration, SolverBudget)} in the background on the solvers'
+     * own bounded pool, so that the caller (typically a GUI thread) is not held up.
+     * The solver must not be used for another search until the future completes.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return the result, once the search is done; fails with a
+     * {@link RejectedExecutionException} if too many searches are already waiting
+     */
+    public CompletableFuture<SolverResult> solveAsync(Configuration initialConfig, SolverBudget budget) {
+        return solveAsync(initialConfig, budget, AsyncPool.EXECUTOR);
+    }
+
+    /**
+     * Runs {@link #solve(Configuration, SolverBudget)} in the background on the given executor.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @param executor the executor that runs the search
+     * @return the result, once the search is done
+     */
+    public CompletableFuture<SolverResult> solveAsync(Configuration initialConfig, SolverBudget budget,
+                                                      Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> solve(initialConfig, budget), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Parallel version of {@link #solve(Configuration)} running on the common fork-join pool.
+     * @param initialConfig the starting configuration
+     * @return a shortest path to a solution, or null if there is none
+     */
+    public Solution solveParallel(Configuration initialConfig) {
+        return solveParallel(initialConfig, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Level-synchronous breadth-first search. Every depth of the search is split into
+     * chunks that are expanded in parallel on the given pool, and the next depth is only
+     * started once the current one is done, so the path found is still a shortest one
+     * (although not necessarily the same one the sequential solver returns).
+     * @param initialConfig the starting configuration
+     * @param pool the pool used to expand each depth
+     * @return a shortest path to a solution, or null if there is none
+     */
+    public Solution solveParallel(Configuration initialConfig, ForkJoinPool pool) {
+        // the concurrent map does not accept null values, so the start is its own predecessor
+        ConcurrentMap<Configuration, Configuration> predecessorMap = new ConcurrentHashMap<>();
+        predecessorMap.put(initialConfig, initialConfig);
+        LongAdder totalCount = new LongAdder();
+        LongAdder uniqueCount = new LongAdder();
+        totalCount.increment();
+        uniqueCount.increment();
+        AtomicReference<Configuration> solution = new AtomicReference<>();
+        List<Configuration> layer = List.of(initialConfig);
+        // the workers are not timed one by one, so all of the time shows up as queue time
+        stats = newStats();
+        try {
+            while (!layer.isEmpty()) {
+                stats.beginDepth(layer.size(), totalCount.sum(), uniqueCount.sum());
+                stats.expanded(layer.size());
+                int chunk = Math.max(MIN_CHUNK, layer.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+                layer = pool.invoke(new LayerTask(layer, 0, layer.size(), chunk,
+                        predecessorMap, totalCount, uniqueCount, solution));
+                if (solution.get() != null) {
+                    return Solution.of(backtrace(predecessorMap, solution.get()));
+                }
+            }
+            return null;
+        } finally {
+            total = totalCount.sum();
+            unique = uniqueCount.sum();
+            stats.finish(total, unique, predecessorMap.size());
+        }
+    }
+
+    /**
+     * Bidirectional breadth-first search. One search runs forward from the start, a
+     * second one runs backward from the puzzle's goals through
+     * {@link Configuration#getPredecessors()}, and each round a whole depth of the side
+     * expected to generate fewer configurations (frontier size times the branching seen
+     * so far) is expanded until the two meet. Falls back to {@link #solve(Configuration)}
+     * for puzzles without goals or predecessors.
+     * @param initialConfig the starting configuration
+     * @return a shortest path to one of the goals, or null if there is none
+     */
+    public Solution solveBidirectional(Configuration initialConfig) {
+        return solveBidirectional(initialConfig, SolverBudget.UNLIMITED).getPath();
+    }
+
+    /**
+     * Bidirectional breadth-first search within a budget, which is checked before every
+     * expansion on either side. A search that runs out of it reports the path to the
+     * first configuration of the forward frontier. Falls back to
+     * {@link #solve(Configuration, SolverBudget)} for puzzles without goals or
+     * predecessors.
+     * @param initialConfig the starting configuration
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     * @see #solveBidirectional(Configuration)
+     */
+    public SolverResult solveBidirectional(Configuration initialConfig, SolverBudget budget) {
+        Collection<Configuration> goals = initialConfig.getGoals();
+        if (goals == null || initialConfig.getPredecessors() == null) {
+            return solve(initialConfig, budget);
+        }
+        total=1;
+        unique=1;
+        stats = newStats();
+        Map<Configuration, Configuration> forwardMap = new HashMap<>();  // configuration -> predecessor
+        Map<Configuration, Configuration> backwardMap = new HashMap<>(); // configuration -> successor
+        forwardMap.put(initialConfig, null);
+        try {
+            return searchBidirectional(initialConfig, goals, forwardMap, backwardMap, budget);
+        } finally {
+            stats.finish(total, unique, forwardMap.size() + backwardMap.size());
+        }
+    }
+
+    /**
+     * Runs the bidirectional search. Each round expands one depth of one side, so every
+     * round is a depth of its own in the statistics.
+     * @param initialConfig the starting configuration
+     * @param goals the puzzle's goals
+     * @param forwardMap the forward search's predecessors, holding the start
+     * @param backwardMap the backward search's successors, still empty
+     * @param budget the limits the search has to stay within
+     * @return how the search ended
+     */
+    private SolverResult searchBidirectional(Configuration initialConfig, Collection<Configuration> goals,
+                                             Map<Configuration, Configuration> forwardMap,
+                                             Map<Configuration, Configuration> backwardMap, SolverBudget budget) {
+        if (initialConfig.isSolution()) {
+            return SolverResult.solved(backtrace(forwardMap, initialConfig), stats);
+        }
+        List<Configuration> forwardLayer = List.of(initialConfig);
+        List<Configuration> backwardLayer = new ArrayList<>();
+        for (Configuration goal : goals) {
+            total++;
+            if (!backwardMap.containsKey(goal)) {
+                backwardMap.put(goal, null);
+                backwardLayer.add(goal);
+                unique++;
+            }
+        }
+        // undoing a move can be far more ambiguous than making it, so the sides are
+        // balanced on the work they are expected to do rather than on frontier size
+        double forwardBranching = initialConfig.getNeighbors().size();
+        double backwardBranching = backwardLayer.isEmpty() ? 0 : backwardLayer.get(0).getPredecessors().size();
+        int forwardDepth = 0;
+        while (!forwardLayer.isEmpty() && !backwardLayer.isEmpty()) {
+            Configuration meeting = null;
+            List<Configuration> next = new ArrayList<>();
+            long before = total;
+            if (forwardLayer.size() * forwardBranching <= backwardLayer.size() * backwardBranching) {
+                stats.beginDepth(forwardLayer.size(), total, unique);
+                for (Configuration current : forwardLayer) {
+                    if (budget.isExhausted(stats.getExpanded())) {
+                        return SolverResult.exhausted(backtrace(forwardMap, current), SolverResult.NO_ESTIMATE,
+                                forwardDepth, stats);
+                    }
+                    long start = System.nanoTime();
+                    Collection<Configuration> neighbors = current.getNeighbors();
+                    long generated = System.nanoTime();
+                    for (Configuration neighbor : neighbors) {
+                        total++;
+                        if (!forwardMap.containsKey(neighbor)) {
+                            next.add(neighbor);
+                            unique++;
+                            forwardMap.put(neighbor, current);
+                            // a solution reached directly is never longer than one through the goals
+                            if (neighbor.isSolution()) {
+                                meeting = neighbor;
+                            } else if (meeting == null && backwardMap.containsKey(neighbor)) {
+                                meeting = neighbor;
+                            }
+                        }
+                    }
+                    stats.expanded(generated - start, System.nanoTime() - generated);
+                }
+                forwardBranching = (double) (total - before) / forwardLayer.size();
+                forwardLayer = next;
+                forwardDepth++;
+            } else {
+                stats.beginDepth(backwardLayer.size(), total, unique);
+                for (Configuration current : backwardLayer) {
+                    if (budget.isExhausted(stats.getExpanded())) {
+                        return SolverResult.exhausted(backtrace(forwardMap, forwardLayer.get(0)),
+                                SolverResult.NO_ESTIMATE, forwardDepth, stats);
+                    }
+                    long start = System.nanoTime();
+                    Collection<Configuration> predecessors = current.getPredecessors();
+                    long generated = System.nanoTime();
+                    for (Configuration predecessor : predecessors) {
+                        total++;
+                        if (!backwardMap.containsKey(predecessor)) {
+                            next.add(predecessor);
+                            unique++;
+                            backwardMap.put(predecessor, current);
+                            if (meeting == null && forwardMap.containsKey(predecessor)) {
+                                meeting = predecessor;
+                            }
+                        }
+                    }
+                    stats.expanded(generated - start, System.nanoTime() - generated);
+                }
+                backwardBranching = (double) (total - before) / backwardLayer.size();
+                backwardLayer = next;
+            }
+            if (meeting != null) {
+                List<Configuration> path = new ArrayList<>(backtrace(forwardMap, meeting));
+                Configuration successor = meeting.isSolution() ? null : backwardMap.get(meeting);
+                while (successor != null) {
+                    path.add(successor);
+                    successor = backwardMap.get(successor);
+                }
+                return SolverResult.solved(path, stats);
+            }
+        }
+        return SolverResult.unsolvable(forwardDepth, stats);
+    }
+
+    /**
+     * Breadth-first search over packed configurations, keeping the visited set and
+     * parent links in primitive arrays on the heap.
+     * @param initialConfig the starting configuration
+     * @return the path to the solution, or null if there is none
+     * @see #solvePacked(PackedConfiguration, boolean)
+     */
+    public Solution solvePacked(PackedConfiguration initialConfig) {
+        return solvePacked(initialConfig, false);
+    }
+
+    /**
+     * Breadth-first search over packed configurations. Configurations are only rebuilt
+     * from their longs while they are being expanded, and the queue is the range of
+     * state numbers not yet expanded. Visits configurations in the same order as
+     * {@link #solve(Configuration)}, so the counters and the path are the same too.
+     * Puzzles whose configurations do not fit in two longs use the regular search.
+     * @param initialConfig the starting configuration
+     * @param offHeap true to keep the state arrays outside the Java heap
+     * @return the path to the solution, or null if there is none
+     */
+    public Solution solvePacked(PackedConfiguration initialConfig, boolean offHeap) {
+        int longs = initialConfig.packedLongs();
+        if (longs == 0) {
+            return solve(initialConfig);
+        }
+        total=1;
+        unique=1;
+        stats = newStats();
+        PackedStateTable states = new PackedStateTable(longs, offHeap);
+        Expansion expansion = new Expansion() {
+            @Override
+            int add(Configuration neighbor, int parent) {
+                PackedConfiguration packed = (PackedConfiguration) neighbor;
+                return states.add(packed.packLow(), packed.packHigh(), parent);
+            }
+        };
+        PackedConfiguration root = (PackedConfiguration) expansion.canonical(initialConfig);
+        states.add(root.packLow(), root.packHigh(), PackedStateTable.NO_PARENT);
+        try {
+            int solution = root.isSolution() ? 0 : Expansion.NOT_FOUND;
+            for (int id = 0, depthEnd = 0; solution == Expansion.NOT_FOUND && id < states.size(); id++) {
+                if (id == depthEnd) {
+                    stats.beginDepth(states.size() - id, total, unique);
+                    depthEnd = states.size();
+                }
+                solution = expansion.expand(initialConfig.unpack(states.low(id), states.high(id)), id);
+            }
+            if (solution == Expansion.NOT_FOUND) {
+                return null;
+            }
+            LinkedList<Configuration> path = new LinkedList<>();
+            for (int step = solution; step != PackedStateTable.NO_PARENT; step = states.parent(step)) {
+                path.addFirst(initialConfig.unpack(states.low(step), states.high(step)));
+            }
+            return Solution.of(expansion.real(initialConfig, path));
+        } finally {
+            stats.finish(total, unique, states.size());
+        }
+    }
+
+    /**
+     * Expands configurations one after another for the breadth-first searches, handing
+     * itself to {@link Configuration#forEachNeighbor} so that nothing but the neighbors
+     * is allocated per expansion. Once a solution turns up the rest of the neighbors are
+     * skipped. Neighbors go into the visited set in their canonical form. Every
+     * {@value #TIMED}th expansion is timed neighbor by neighbor to split generating from
+     * hashing (which includes finding the canonical form); the others are timed as a whole.
+     */
+    private abstract class Expansion implements Consumer<Configuration> {
+        static final int NOT_FOUND = -1;
+        private static final int TIMED = 16;
+        private int parent;
+        private int solution;
+        private boolean timed;
+        private long mark;
+        private long neighborNanos;
+        private long hashingNanos;
+        private boolean folded;
+
+        /**
+         * Adds a neighbor to the visited set.
+         * @param neighbor the neighbor
+         * @param parent the number of the configuration it came from
+         * @return the neighbor's new number, or a negative number if it was seen before
+         */
+        abstract int add(Configuration neighbor, int parent);
+
+        /**
+         * Expands one configuration.
+         * @param current the configuration
+         * @param id its number
+         * @return the number of the first solution among its new neighbors, or NOT_FOUND
+         */
+        int expand(Configuration current, int id) {
+            parent = id;
+            solution = NOT_FOUND;
+            timed = stats.getExpanded() % TIMED == 0;
+            neighborNanos = 0;
+            hashingNanos = 0;
+            long start = System.nanoTime();
+            mark = start;
+            current.forEachNeighbor(this);
+            long end = System.nanoTime();
+            if (timed) {
+                stats.expanded(neighborNanos + end - mark, hashingNanos);
+            } else {
+                stats.expandedUntimed(end - start);
+            }
+            return solution;
+        }
+
+        /**
+         * Returns the canonical form of a configuration, noting whether it differs.
+         * @param config the configuration
+         * @return its canonical form
+         */
+        Configuration canonical(Configuration config) {
+            Configuration canonical = config.canonicalize();
+            folded |= canonical != config;
+            return canonical;
+        }
+
+        /**
+         * Turns a path found in the visited set into real moves from the start.
+         * @param initialConfig the starting configuration
+         * @param path the path through the canonical forms
+         * @return the path itself if no configuration was replaced by its canonical form
+         */
+        Collection<Configuration> real(Configuration initialConfig, Collection<Configuration> path) {
+            return folded ? unfold(initialConfig, path) : path;
+        }
+
+        @Override
+        public void accept(Configuration neighbor) {
+            if (solution != NOT_FOUND) {
+                return;
+            }
+            long start = timed ? System.nanoTime() : 0;
+            total++;
+            Configuration canonical = canonical(neighbor);
+            int id = add(canonical, parent);
+            if (id >= 0) {
+                unique++;
+                if (canonical.isSolution()) {
+                    solution = id;
+                }
+            }
+            if (timed) {
+                neighborNanos += start - mark;
+                mark = System.nanoTime();
+                hashingNanos += mark - start;
+            }
+        }
+    }
+
+    /**
+     * Turns a path through canonical forms into real moves: starting from the real start,
+     * each step takes the neighbor whose canonical form is the next one on the path.
+     * @param initialConfig the starting configuration
+     * @param canonicalPath the path through the canonical forms, starting with the start's
+     * @return the path of real configurations
+     * @see Configuration#canonicalize()
+     */
+    static Solution unfold(Configuration initialConfig, Collection<Configuration> canonicalPath) {
+        Solution.Builder path = new Solution.Builder(initialConfig, canonicalPath.size() - 1);
+        Configuration current = initialConfig;
+        Iterator<Configuration> steps = canonicalPath.iterator();
+        steps.next();
+        while (steps.hasNext()) {
+            Configuration step = steps.next();
+            current = path.add(current, neighbor -> neighbor.canonicalize().equals(step));
+            if (current == null) {
+                throw new IllegalStateException("No move leads to the canonical form " + step);
+            }
+        }
+        return path.build();
+    }
+
     private Collection<Configuration> backtrace(Map<Configuration, Configuration> predecessorMap, Configuration current) {
         List<Configuration> path = new ArrayList<>();
         path.add(current);
-        while (predecessorMap.get(current) != null) {
-            current = predecessorMap.get(current);
-            path.add(0, current);
+        Configuration previous = predecessorMap.get(current);
+        while (previous != null && previous != current) {
+            current = previous;
+            path.add(current);
+            previous = predecessorMap.get(current);
         }
+        Collections.reverse(path);
         return path;
     }
-}
\ No newline at end of file
+
+    /**
+     * The pool behind {@link #solveAsync(Configuration, SolverBudget)}: a thread per core
+     * but one, so the caller's thread always has a core to itself, and a short queue.
+     * The threads are daemons and time out when idle, so they never keep a program alive.
+     */
+    private static class AsyncPool {
+        private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        private static final int QUEUE = 16;
+        private static final ExecutorService EXECUTOR = create();
+
+        private static ExecutorService create() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE), runnable -> {
+                        Thread thread = new Thread(runnable, "solver");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /** smallest slice of a depth that is worth handing to another worker */
+    private static final int MIN_CHUNK = 16;
+    /** slices per worker, so that uneven neighbor counts still balance out */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Expands a slice of one depth of the parallel search and returns the newly
+     * discovered configurations of the next depth.
+     */
+    private static class LayerTask extends RecursiveTask<List<Configuration>> {
+        private static final long serialVersionUID = 1L;
+        private final List<Configuration> layer;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final ConcurrentMap<Configuration, Configuration> predecessorMap;
+        private final LongAdder totalCount;
+        private final LongAdder uniqueCount;
+        private final AtomicReference<Configuration> solution;
+
+        LayerTask(List<Configuration> layer, int from, int to, int chunk,
+                  ConcurrentMap<Configuration, Configuration> predecessorMap,
+                  LongAdder totalCount, LongAdder uniqueCount,
+                  AtomicReference<Configuration> solution) {
+            this.layer = layer;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.predecessorMap = predecessorMap;
+            this.totalCount = totalCount;
+            this.uniqueCount = uniqueCount;
+            this.solution = solution;
+        }
+
+        @Override
+        protected List<Configuration> compute() {
+            if (to - from > chunk) {
+                int middle = (from + to) >>> 1;
+                LayerTask left = new LayerTask(layer, from, middle, chunk,
+                        predecessorMap, totalCount, uniqueCount, solution);
+                LayerTask right = new LayerTask(layer, middle, to, chunk,
+                        predecessorMap, totalCount, uniqueCount, solution);
+                left.fork();
+                List<Configuration> rightNext = right.compute();
+                List<Configuration> next = left.join();
+                next.addAll(rightNext);
+                return next;
+            }
+            List<Configuration> next = new ArrayList<>();
+            for (int i = from; i < to && solution.get() == null; i++) {
+                Configuration current = layer.get(i);
+                if (current.isSolution()) {
+                    solution.compareAndSet(null, current);
+                    break;
+                }
+                for (Configuration neighbor : current.getNeighbors()) {
+                    totalCount.increment();
+                    if (predecessorMap.putIfAbsent(neighbor, current) == null) {
+                        uniqueCount.increment();
+                        next.add(neighbor);
+                    }
+                }
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package puzzles.common.solver;
+
+import java.time.Duration;
+
+/**
+ * The limits a search has to stay within: a deadline, a largest number of
+ * configurations to expand and a cancellation token. Budgets are immutable;
+ * each of the with methods returns a new one.
+ *
+ * @author Ashrith V. Mudundi
+ * @see Solver#solve(Configuration, SolverBudget)
+ */
+public class SolverBudget {
+    /** the budget of a search that runs until it is done */
+    public static final SolverBudget UNLIMITED = new SolverBudget(false, 0, Long.MAX_VALUE, null);
+
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final long maxExpanded;
+    private final CancellationToken token;
+
+    /**
+     * Constructor for the SolverBudget class.
+     * @param hasDeadline true if the search has a deadline
+     * @param deadline the deadline, in {@link System#nanoTime()} terms
+     * @param maxExpanded the most configurations the search may expand
+     * @param token the token that cancels the search, or null
+     */
+    private SolverBudget(boolean hasDeadline, long deadline, long maxExpanded, CancellationToken token) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+        this.maxExpanded = maxExpanded;
+        this.token = token;
+    }
+
+    /**
+     * Returns this budget with a deadline the given time from now.
+     * @param timeout how long the search may run
+     * @return the new budget
+     */
+    public SolverBudget withTimeout(Duration timeout) {
+        return new SolverBudget(true, System.nanoTime() + timeout.toNanos(), maxExpanded, token);
+    }
+
+    /**
+     * Returns this budget with a limit on the configurations expanded.
+     * @param maxExpanded the most configurations the search may expand
+     * @return the new budget
+     */
+    public SolverBudget withMaxExpanded(long maxExpanded) {
+        return new SolverBudget(hasDeadline, deadline, maxExpanded, token);
+    }
+
+    /**
+     * Returns this budget with a cancellation token.
+     * @param token the token that cancels the search
+     * @return the new budget
+     */
+    public SolverBudget withCancellation(CancellationToken token) {
+        return new SolverBudget(hasDeadline, deadline, maxExpanded, token);
+    }
+
+    /**
+     * Get the token that cancels the search.
+     * @return the token, or null if the search cannot be cancelled
+     */
+    CancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * Has the search run out of budget?
+     * @param expanded the configurations it has expanded so far
+     * @return true if it is past the deadline, has expanded too many configurations or was cancelled
+     */
+    public boolean isExhausted(long expanded) {
+        return expanded >= maxExpanded
+                || (token != null && token.isCancelled())
+                || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+}
@@ -0,0 +1,101 @@
+package puzzles.common.solver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The client side of the solver daemon, which keeps a warmed-up JVM running on the
+ * loopback interface so that the solver programs do not pay for starting one.
+ * <p>
+ *     A request is a single line: the kind of puzzle followed by the program's arguments
+ *     and switches, separated by tabs. The reply starts with a status line, OK or ERROR
+ *     followed by the reason, and then (for OK) exactly what the program would have
+ *     printed. Files named in a request are opened by the daemon, relative to its own
+ *     working directory.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class SolverClient {
+    /** the port the daemon listens on unless told otherwise */
+    public static final int DEFAULT_PORT = 4747;
+    /** the reply status of a request that was answered */
+    public static final String OK = "OK";
+    /** the reply status of a request that was not, followed by the reason */
+    public static final String ERROR = "ERROR";
+
+    private SolverClient() {
+    }
+
+    /**
+     * Has the daemon solve a puzzle for a solver program, if --server was given.
+     * @param kind the kind of puzzle, such as "tilt"
+     * @param options the program's switches
+     * @param out where to print the solution
+     * @return true if the daemon printed the solution, false if the program has to
+     * solve the puzzle itself (no --server, no daemon, or the daemon could not)
+     */
+    public static boolean forward(String kind, SolverOptions options, PrintStream out) {
+        if (options.getServerPort() == 0) {
+            return false;
+        }
+        String[] args = options.getForwardedArguments();
+        String[] words = new String[args.length + 1];
+        words[0] = kind;
+        System.arraycopy(args, 0, words, 1, args.length);
+        try {
+            String reply = request(options.getServerPort(), words);
+            if (reply.startsWith(OK + "\n")) {
+                out.print(reply.substring(OK.length() + 1));
+                return true;
+            }
+        } catch (IOException e) {
+            // no daemon: solve here instead
+        }
+        return false;
+    }
+
+    /**
+     * Sends a request to the daemon and waits for the reply.
+     * @param port the daemon's port
+     * @param words the request, starting with the kind of puzzle (or "stats")
+     * @return the whole reply, status line included
+     * @throws IOException if the daemon cannot be reached
+     */
+    public static String request(int port, String... words) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(String.join("\t", words));
+            writer.write('\n');
+            writer.flush();
+            socket.shutdownOutput();
+            StringBuilder reply = new StringBuilder();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            char[] buffer = new char[8192];
+            for (int read; (read = reader.read(buffer)) >= 0; ) {
+                reply.append(buffer, 0, read);
+            }
+            return reply.toString();
+        }
+    }
+
+    /**
+     * Prints the daemon's latency figures.
+     * @param args [--server=port]
+     * @throws IOException if the daemon cannot be reached
+     */
+    public static void main(String[] args) throws IOException {
+        SolverOptions options = SolverOptions.parse(args);
+        int port = options.getServerPort() != 0 ? options.getServerPort() : DEFAULT_PORT;
+        String reply = request(port, "stats");
+        System.out.print(reply.substring(reply.indexOf('\n') + 1));
+    }
+}
@@ -0,0 +1,384 @@
+package puzzles.common.solver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The command line switches shared by the solver programs (Clock, Water and Tilt).
+ * <p>
+ *     Switches start with "--" and may appear anywhere on the command line. Everything
+ *     else is handed back untouched as the puzzle's own arguments.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class SolverOptions implements Cloneable {
+    /** the switches, as shown in the usage messages */
+    public static final String USAGE =
+            "[--parallel|--bidirectional|--astar|--packed|--off-heap|--external[=dir] [--buffer=MB]"
+            + "|--iddfs[=entries] [--replacement=always|shallower|two-way]|--portfolio[=file]"
+            + "|--bitstate[=MB] [--hashes=k]|--hash-compaction|--frontier]"
+            + " [--heap-fraction=F] [--checkpoint[=seconds]] [--resume] [--progress=seconds]"
+            + " [--stats] [--json=file] [--cache[=file]] [--server[=port]]";
+
+    /** the seconds between two heartbeat lines in the batch programs unless told otherwise */
+    public static final int DEFAULT_HEARTBEAT_SECONDS = 10;
+    /** the heartbeat seconds until --progress is given: no heartbeat lines */
+    private static final int NO_HEARTBEAT = -1;
+
+    /** the portfolio win tables read in this program, so that races update one table per file */
+    private static final Map<Path, PortfolioSolver.Wins> OPEN_WINS = new HashMap<>();
+
+    private final String[] arguments;
+    private boolean parallel;
+    private boolean bidirectional;
+    private boolean astar;
+    private boolean packed;
+    private boolean offHeap;
+    private Path external;
+    private long bufferBytes = 64L << 20;
+    private int iddfsEntries;
+    private IDDFSSolver.Replacement replacement = IDDFSSolver.Replacement.TWO_WAY;
+    private double heapFraction = Solver.DEFAULT_HEAP_FRACTION;
+    private Path portfolio;
+    private long bitstateBytes;
+    private int hashes = ProbabilisticSolver.DEFAULT_HASHES;
+    private boolean hashCompaction;
+    private boolean frontier;
+    private int checkpointSeconds;
+    private boolean resume;
+    private int heartbeatSeconds = NO_HEARTBEAT;
+    private String label;
+    private boolean stats;
+    private Path json;
+    private String[] commandLine;
+    private Path cache;
+    private int serverPort;
+
+    /**
+     * Constructor for the SolverOptions class.
+     * @param arguments the arguments left over once the switches are removed
+     */
+    private SolverOptions(String[] arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Splits the command line into switches and puzzle arguments.
+     * Unknown switches are reported and ignored.
+     * @param args the command line arguments
+     * @return the parsed options
+     */
+    public static SolverOptions parse(String[] args) {
+        List<String> rest = new ArrayList<>();
+        List<String> switches = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                switches.add(arg);
+            } else {
+                rest.add(arg);
+            }
+        }
+        SolverOptions options = new SolverOptions(rest.toArray(new String[0]));
+        options.commandLine = args.clone();
+        for (String option : switches) {
+            int equals = option.indexOf('=');
+            String name = equals < 0 ? option : option.substring(0, equals);
+            String value = equals < 0 ? null : option.substring(equals + 1);
+            switch (name) {
+                case "--parallel" -> options.parallel = true;
+                case "--bidirectional" -> options.bidirectional = true;
+                case "--astar" -> options.astar = true;
+                case "--packed" -> options.packed = true;
+                case "--off-heap" -> {
+                    options.packed = true;
+                    options.offHeap = true;
+                }
+                case "--external" -> options.external =
+                        Path.of(value != null ? value : System.getProperty("java.io.tmpdir"));
+                case "--buffer" -> options.bufferBytes = Long.parseLong(value) << 20;
+                case "--iddfs" -> options.iddfsEntries =
+                        value != null ? Integer.parseInt(value) : IDDFSSolver.DEFAULT_ENTRIES;
+                case "--replacement" -> options.replacement =
+                        IDDFSSolver.Replacement.valueOf(value.toUpperCase().replace('-', '_'));
+                case "--portfolio" -> options.portfolio =
+                        value != null ? Path.of(value) : PortfolioSolver.Wins.DEFAULT_FILE;
+                case "--bitstate" -> options.bitstateBytes =
+                        value != null ? Long.parseLong(value) << 20 : ProbabilisticSolver.DEFAULT_BITSTATE_BYTES;
+                case "--hashes" -> options.hashes = Integer.parseInt(value);
+                case "--hash-compaction" -> options.hashCompaction = true;
+                case "--frontier" -> options.frontier = true;
+                case "--heap-fraction" -> options.heapFraction = Double.parseDouble(value);
+                case "--checkpoint" -> options.checkpointSeconds =
+                        value != null ? Integer.parseInt(value) : Checkpoint.DEFAULT_SECONDS;
+                case "--resume" -> options.resume = true;
+                case "--progress" -> options.heartbeatSeconds = Integer.parseInt(value);
+                case "--stats" -> options.stats = true;
+                case "--json" -> options.json = Path.of(value);
+                case "--cache" -> options.cache = value != null ? Path.of(value) : SolutionCache.DEFAULT_FILE;
+                case "--server" -> options.serverPort =
+                        value != null ? Integer.parseInt(value) : SolverClient.DEFAULT_PORT;
+                default -> System.out.println("Unknown option: " + option);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Returns the puzzle's own arguments.
+     * @return the command line without the switches
+     */
+    public String[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns a copy of these options whose heartbeat lines name the puzzle, for a
+     * program that solves several puzzles at once.
+     * @param name the name of the puzzle
+     * @return the copy
+     */
+    public SolverOptions forPuzzle(String name) {
+        try {
+            SolverOptions copy = (SolverOptions) clone();
+            copy.label = name;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns a copy of these options that prints heartbeat lines every so many seconds
+     * unless --progress said otherwise, for the batch programs. The other programs only
+     * print them when asked to.
+     * @param seconds the seconds between two heartbeat lines
+     * @return the copy
+     */
+    public SolverOptions withDefaultHeartbeat(int seconds) {
+        SolverOptions copy = forPuzzle(label);
+        if (copy.heartbeatSeconds == NO_HEARTBEAT) {
+            copy.heartbeatSeconds = seconds;
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the port of the solver daemon to ask first.
+     * @return the port given with --server, or 0 to solve in this program
+     * @see SolverClient
+     */
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    /**
+     * Returns the command line the options were parsed from, less --server, for the
+     * solver daemon to parse again.
+     * @return the arguments and the other switches
+     */
+    public String[] getForwardedArguments() {
+        return Arrays.stream(commandLine)
+                .filter(arg -> !arg.equals("--server") && !arg.startsWith("--server="))
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Was the parallel search requested?
+     * @return true if --parallel was given
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Was the bidirectional search requested?
+     * @return true if --bidirectional was given
+     */
+    public boolean isBidirectional() {
+        return bidirectional;
+    }
+
+    /**
+     * Was the A* search requested?
+     * @return true if --astar was given
+     */
+    public boolean isAStar() {
+        return astar;
+    }
+
+    /**
+     * Was the packed search requested?
+     * @return true if --packed or --off-heap was given
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Creates the solver for a puzzle without a heuristic of its own.
+     * @return a new solver
+     */
+    public Solver newSolver() {
+        return newSolver(config -> 0);
+    }
+
+    /**
+     * Creates the solver selected by the switches.
+     * @param heuristic the puzzle's heuristic, used by the A* search
+     * @return a new solver
+     */
+    public Solver newSolver(Heuristic<Configuration> heuristic) {
+        Solver solver;
+        if (external != null) {
+            solver = new ExternalSolver(external, bufferBytes);
+        } else if (portfolio != null) {
+            solver = new PortfolioSolver(heuristic, openWins());
+        } else if (astar) {
+            solver = new AStarSolver(heuristic);
+        } else if (iddfsEntries > 0) {
+            solver = new IDDFSSolver(iddfsEntries, replacement);
+        } else if (bitstateBytes > 0) {
+            solver = new ProbabilisticSolver(bitstateBytes, hashes);
+        } else if (hashCompaction) {
+            solver = new ProbabilisticSolver();
+        } else if (frontier) {
+            solver = new FrontierSolver();
+        } else {
+            solver = new Solver();
+        }
+        solver.setHeapFraction(heapFraction);
+        if (heartbeatSeconds > 0) {
+            String heartbeat = label != null ? "Heartbeat " + label + ": " : "Heartbeat: ";
+            solver.setProgressInterval(Duration.ofSeconds(heartbeatSeconds));
+            solver.addProgressObserver((searching, progress) -> System.err.println(heartbeat + progress));
+        }
+        if (checkpointSeconds > 0 || resume) {
+            int seconds = checkpointSeconds > 0 ? checkpointSeconds : Checkpoint.DEFAULT_SECONDS;
+            solver.setCheckpoint(Checkpoint.DEFAULT_DIRECTORY, Duration.ofSeconds(seconds), resume);
+        }
+        if (cache != null) {
+            solver.setCache(openCache());
+        }
+        return solver;
+    }
+
+    /**
+     * Opens the --cache file the first time it is needed, so that every solver in the
+     * program shares it.
+     * @return the cache, or null if it cannot be opened
+     */
+    private SolutionCache openCache() {
+        try {
+            return SolutionCache.shared(cache);
+        } catch (IOException e) {
+            System.out.println("Cannot open the solution cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the --portfolio file the first time it is needed, so that every solver in the
+     * program records its races in the same table.
+     * @return the table; kept in memory only if the file cannot be read
+     */
+    private PortfolioSolver.Wins openWins() {
+        synchronized (OPEN_WINS) {
+            return OPEN_WINS.computeIfAbsent(portfolio.toAbsolutePath().normalize(), file -> {
+                try {
+                    return new PortfolioSolver.Wins(file);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Cannot read the portfolio wins: " + e.getMessage());
+                    return new PortfolioSolver.Wins();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the search selected by the switches.
+     * @param solver the solver whose counters are filled in
+     * @param initialConfig the starting configuration
+     * @return the path to the solution, or null if there is none
+     */
+    public Solution solve(Solver solver, Configuration initialConfig) {
+        if (parallel) {
+            return solver.solveParallel(initialConfig);
+        }
+        if (bidirectional) {
+            return solver.solveBidirectional(initialConfig);
+        }
+        if (packed && initialConfig instanceof PackedConfiguration packedConfig) {
+            return solver.solvePacked(packedConfig, offHeap);
+        }
+        return solver.solve(initialConfig);
+    }
+
+    /**
+     * Prints whatever extra the solver has to say about the search it ran: its notices,
+     * such as a checkpoint it could not write, whether the solution came from the cache,
+     * the external search's depth files, the portfolio's winner, the probabilistic
+     * visited set and its chance of omissions, the changes of the visited set's
+     * representation, the statistics if --stats was given, and the statistics as JSON
+     * to the --json file.
+     * @param solver the solver, after solving
+     * @param out where to print
+     */
+    public void report(Solver solver, PrintStream out) {
+        for (String notice : solver.getStats().getNotices()) {
+            out.println(notice);
+        }
+        if (solver instanceof ExternalSolver externalSolver) {
+            for (ExternalSolver.Layer layer : externalSolver.getLayers()) {
+                out.println(layer);
+            }
+        }
+        if (solver instanceof PortfolioSolver portfolioSolver && !portfolioSolver.getRaced().isEmpty()) {
+            out.println("Portfolio: " + (portfolioSolver.getWinner() != null ? portfolioSolver.getWinner() : "nobody")
+                    + " won against " + portfolioSolver.getRaced());
+        }
+        if (solver instanceof ProbabilisticSolver probabilisticSolver) {
+            out.println(probabilisticSolver.getSummary());
+        }
+        if (solver.getStats().isCached()) {
+            out.println("Solution read from the cache, configurations not counted");
+        }
+        for (SolverStats.Switch change : solver.getStats().getSwitches()) {
+            out.println(change);
+        }
+        if (stats) {
+            out.println(solver.getStats());
+        }
+        if (json != null) {
+            StringBuilder text = new StringBuilder("{\"arguments\":[");
+            for (int i = 0; i < commandLine.length; i++) {
+                text.append(i == 0 ? "\"" : ",\"").append(escape(commandLine[i])).append('"');
+            }
+            text.append("],\"solver\":\"").append(solver.getClass().getSimpleName())
+                    .append("\",\"stats\":").append(solver.getStats().toJson()).append("}\n");
+            try {
+                Files.writeString(json, text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Escapes a string for use inside a JSON string.
+     * @param value the string
+     * @return the escaped string, without the quotes
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,62 @@
+package puzzles.common.solver;
+
+import java.util.Locale;
+
+/**
+ * A snapshot of a search in progress, handed to the progress observers of a
+ * {@link Solver} at most once per progress interval, and at once whenever the search
+ * has something to tell, such as a change of its visited set or a checkpoint it
+ * cannot write.
+ * <p>
+ *     The depth and frontier are those the search last recorded in its statistics:
+ *     the breadth-first searches record every depth, the iterative deepening one every
+ *     iteration once it is over, and the A* search none, so for it they are -1.
+ * </p>
+ *
+ * @param elapsedNanos the time since the search started
+ * @param depth the depth being expanded, or -1 if the search records none
+ * @param frontier the number of configurations at that depth, or -1
+ * @param expanded the configurations expanded so far
+ * @param remaining the configurations of the depth that are still to be expanded
+ * @param statesPerSecond the configurations expanded per second since the last snapshot
+ * @param notice what the search has to tell, or null for a periodic snapshot
+ *
+ * @author Ashrith V. Mudundi
+ */
+public record SolverProgress(long elapsedNanos, int depth, long frontier, long expanded, long remaining,
+                             double statesPerSecond, String notice) {
+    /**
+     * Estimates the time left at the current depth from the current speed.
+     * @return the seconds left, or NaN if that cannot be told
+     */
+    public double secondsLeft() {
+        return depth < 0 || statesPerSecond <= 0 ? Double.NaN : remaining / statesPerSecond;
+    }
+
+    /**
+     * Returns the share of the current depth that has been expanded.
+     * @return a number from 0 to 1, or -1 if the search records no depths
+     */
+    public double depthFraction() {
+        return frontier <= 0 ? -1 : Math.min(1, 1 - (double) remaining / frontier);
+    }
+
+    /**
+     * Describes the snapshot, such as "12.0 s: depth 14, 48% of 52311, 41200 states/s,
+     * ~0.7 s left at this depth", or "12.0 s: " and the notice if it has one.
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        if (notice != null) {
+            return String.format(Locale.ROOT, "%.1f s: %s", elapsedNanos / 1e9, notice);
+        }
+        String where = depth < 0
+                ? String.format(Locale.ROOT, "%d expanded", expanded)
+                : String.format(Locale.ROOT, "depth %d, %.0f%% of %d", depth, 100 * depthFraction(), frontier);
+        String left = Double.isNaN(secondsLeft()) ? ""
+                : String.format(Locale.ROOT, ", ~%.1f s left at this depth", secondsLeft());
+        return String.format(Locale.ROOT, "%.1f s: %s, %.0f states/s%s",
+                elapsedNanos / 1e9, where, statesPerSecond, left);
+    }
+}
@@ -0,0 +1,171 @@
+package puzzles.common.solver;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * The outcome of a search run on a {@link SolverBudget}.
+ * <p>
+ *     A search that ran out of budget still reports the best it found: the path to its
+ *     best configuration and how deep it got. The best configuration is the one with the
+ *     lowest heuristic estimate for searches that have a heuristic, and the deepest one
+ *     discovered for those that do not.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class SolverResult {
+    /** how a search ended */
+    public enum Status {
+        /** a solution was found */
+        SOLVED,
+        /** every reachable configuration was expanded without finding a solution */
+        UNSOLVABLE,
+        /** the search stopped early on its deadline, expansion limit or cancellation */
+        BUDGET_EXHAUSTED
+    }
+
+    /** the estimate reported by searches without a heuristic */
+    public static final int NO_ESTIMATE = -1;
+
+    private final Status status;
+    private final Collection<Configuration> path;
+    private final int bestEstimate;
+    private final int deepestDepth;
+    private final SolverStats stats;
+
+    /**
+     * Constructor for the SolverResult class.
+     * @param status how the search ended
+     * @param path the solution or the path to the best configuration, null if unsolvable
+     * @param bestEstimate the heuristic estimate of the best configuration
+     * @param deepestDepth the deepest depth the search reached
+     * @param stats the search's statistics
+     */
+    private SolverResult(Status status, Collection<Configuration> path, int bestEstimate,
+                         int deepestDepth, SolverStats stats) {
+        this.status = status;
+        this.path = path;
+        this.bestEstimate = bestEstimate;
+        this.deepestDepth = deepestDepth;
+        this.stats = stats;
+    }
+
+    /**
+     * The result of a search that found a solution.
+     * @param path the path to the solution, which is kept encoded as a {@link Solution}
+     * @param stats the search's statistics
+     * @return the result
+     */
+    static SolverResult solved(Collection<Configuration> path, SolverStats stats) {
+        return new SolverResult(Status.SOLVED, Solution.of(path), 0, path.size() - 1, stats);
+    }
+
+    /**
+     * The result of a search that ran out of configurations.
+     * @param deepestDepth the deepest depth the search reached
+     * @param stats the search's statistics
+     * @return the result
+     */
+    static SolverResult unsolvable(int deepestDepth, SolverStats stats) {
+        return new SolverResult(Status.UNSOLVABLE, null, NO_ESTIMATE, deepestDepth, stats);
+    }
+
+    /**
+     * The result of a search that ran out of budget.
+     * @param bestPath the path to the best configuration found
+     * @param bestEstimate its heuristic estimate, or {@link #NO_ESTIMATE}
+     * @param deepestDepth the deepest depth the search reached
+     * @param stats the search's statistics
+     * @return the result
+     */
+    static SolverResult exhausted(Collection<Configuration> bestPath, int bestEstimate,
+                                  int deepestDepth, SolverStats stats) {
+        return new SolverResult(Status.BUDGET_EXHAUSTED, bestPath, bestEstimate, deepestDepth, stats);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Was a solution found?
+     * @return true if the status is {@link Status#SOLVED}
+     */
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * Returns the solution.
+     * @return the path to the solution, or null if none was found
+     */
+    public Solution getPath() {
+        return status == Status.SOLVED ? (Solution) path : null;
+    }
+
+    /**
+     * Returns the path to the best configuration found by a search that ran out of budget.
+     * @return the partial path, or null if the search did not run out of budget
+     */
+    public Collection<Configuration> getPartialPath() {
+        return status == Status.BUDGET_EXHAUSTED ? path : null;
+    }
+
+    /**
+     * Returns the best configuration found by a search that ran out of budget.
+     * @return the last configuration of the partial path, or null
+     */
+    public Configuration getBestState() {
+        Configuration best = null;
+        if (status == Status.BUDGET_EXHAUSTED) {
+            for (Configuration config : path) {
+                best = config;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the configuration one move along the solution, or along the partial path
+     * of a search that ran out of budget, which is the best next move it knows of.
+     * @return the configuration after the first move, or null if there is none
+     */
+    public Configuration getNextStep() {
+        if (path == null || path.size() < 2) {
+            return null;
+        }
+        Iterator<Configuration> iterator = path.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    /**
+     * Was the solution read from a {@link SolutionCache} instead of being searched for?
+     * The counts of a cached result are all 0.
+     * @return true if no search was run
+     */
+    public boolean isCached() {
+        return stats != null && stats.isCached();
+    }
+
+    /**
+     * Returns the heuristic estimate of the best configuration.
+     * @return the estimate, or {@link #NO_ESTIMATE} if the search had no heuristic
+     */
+    public int getBestEstimate() {
+        return bestEstimate;
+    }
+
+    /**
+     * Returns the deepest depth the search reached.
+     * @return the most moves from the start of any configuration discovered
+     */
+    public int getDeepestDepth() {
+        return deepestDepth;
+    }
+
+    public SolverStats getStats() {
+        return stats;
+    }
+}
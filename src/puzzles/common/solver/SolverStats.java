@@ -0,0 +1,403 @@
+package puzzles.common.solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Statistics about a single search, produced by every solve.
+ * <p>
+ *     Besides the 64-bit total and unique counts, a breadth-first search records one
+ *     {@link Depth} per depth it reached. Wall time is split between generating neighbors,
+ *     hashing them into the visited set and the remaining queue work; CPU time is that
+ *     of the thread that ran the search.
+ * </p>
+ * <p>
+ *     A search that is watched hands a {@link SolverProgress} to its listener at most
+ *     once per progress interval. The clock is only read every {@value #CHECK_EVERY}
+ *     expansions, and an unwatched search only compares two counters per expansion.
+ *     Switches of the visited set and notices are handed over as soon as they happen.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+public class SolverStats {
+    /**
+     * What the search did at one depth.
+     * @param depth the depth
+     * @param frontier the number of configurations at this depth
+     * @param generated the neighbors generated while expanding them
+     * @param duplicates how many of those had been seen before
+     */
+    public record Depth(int depth, long frontier, long generated, long duplicates) {
+        /**
+         * Returns the share of generated neighbors that had been seen before.
+         * @return the duplicate-hit ratio, 0 when nothing was generated
+         */
+        public double duplicateRatio() {
+            return generated == 0 ? 0 : (double) duplicates / generated;
+        }
+    }
+
+    /**
+     * A change of the visited set's representation during the search.
+     * @param representation what the visited set changed to, such as "packed"
+     * @param depth the depth being searched
+     * @param states the configurations in the visited set at the time
+     * @param bytesPerState the heap each configuration was estimated to cost
+     * @param projectedBytes the footprint projected for the visited set
+     * @param limitBytes the footprint the visited set was allowed
+     */
+    public record Switch(String representation, int depth, long states, long bytesPerState,
+                         long projectedBytes, long limitBytes) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Switched to %s at depth %d with %d configs: %d bytes each, %.1f MB projected, %.1f MB allowed",
+                    representation, depth, states, bytesPerState, projectedBytes / 1e6, limitBytes / 1e6);
+        }
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final int CHECK_EVERY = 256;
+
+    private final long startWall = System.nanoTime();
+    private final long startCpu = cpuTime();
+    private final List<Depth> depths = new ArrayList<>();
+    private final List<Switch> switches = new ArrayList<>();
+    private final List<String> notices = new ArrayList<>();
+    private long total;
+    private long unique;
+    private long expanded;
+    private long peakVisited;
+    private long wallNanos;
+    private long cpuNanos;
+    private long neighborNanos;
+    private long hashingNanos;
+    private long untimedNanos;
+    private boolean cached;
+    // the depth still being expanded
+    private long depthFrontier = -1;
+    private long depthTotal;
+    private long depthUnique;
+    private long depthExpanded;
+    // the progress listener, if the search is watched
+    private Consumer<SolverProgress> listener;
+    private long intervalNanos;
+    private long nextCheck = Long.MAX_VALUE;
+    private long lastSnapshot;
+    private long lastExpanded;
+
+    /**
+     * Has the search hand its progress to a listener.
+     * @param listener the listener, called on the search's thread
+     * @param intervalNanos the least time between two snapshots
+     */
+    void watch(Consumer<SolverProgress> listener, long intervalNanos) {
+        this.listener = listener;
+        this.intervalNanos = intervalNanos;
+        this.nextCheck = expanded + CHECK_EVERY;
+        this.lastSnapshot = startWall;
+        this.lastExpanded = expanded;
+    }
+
+    /**
+     * Starts a new depth, closing the one before it. The counters are those of the
+     * solver at the moment the first configuration of the depth is expanded.
+     * @param frontier the number of configurations at the new depth
+     * @param total the solver's total count so far
+     * @param unique the solver's unique count so far
+     */
+    void beginDepth(long frontier, long total, long unique) {
+        closeDepth(total, unique);
+        depthFrontier = frontier;
+        depthTotal = total;
+        depthUnique = unique;
+        depthExpanded = expanded;
+    }
+
+    /**
+     * Records the expansion of one configuration.
+     * @param neighborNanos the time spent generating its neighbors
+     * @param hashingNanos the time spent looking them up in the visited set
+     */
+    void expanded(long neighborNanos, long hashingNanos) {
+        this.expanded++;
+        this.neighborNanos += neighborNanos;
+        this.hashingNanos += hashingNanos;
+        if (expanded >= nextCheck) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Records the expansion of one configuration whose neighbors were generated and
+     * hashed in one go. Its time is split between the two in the proportion measured
+     * for the expansions that were timed separately.
+     * @param nanos the time spent generating and hashing its neighbors
+     */
+    void expandedUntimed(long nanos) {
+        this.expanded++;
+        this.untimedNanos += nanos;
+        if (expanded >= nextCheck) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Records a change of the visited set's representation.
+     * @param change the change
+     */
+    void switched(Switch change) {
+        switches.add(change);
+        tell(change.toString());
+    }
+
+    /**
+     * Records something the search has to tell that is not part of its result, such
+     * as a checkpoint it cannot write or a file it cannot remove.
+     * @param notice the message
+     */
+    void noticed(String notice) {
+        notices.add(notice);
+        tell(notice);
+    }
+
+    /**
+     * Records a number of expansions that were not timed individually.
+     * @param count the number of configurations expanded
+     */
+    void expanded(long count) {
+        this.expanded += count;
+        if (expanded >= nextCheck) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Hands a snapshot to the listener if the interval has passed since the last one.
+     */
+    private void snapshot() {
+        nextCheck = expanded + CHECK_EVERY;
+        long now = System.nanoTime();
+        if (now - lastSnapshot < intervalNanos) {
+            return;
+        }
+        double rate = (expanded - lastExpanded) * 1e9 / (now - lastSnapshot);
+        lastSnapshot = now;
+        lastExpanded = expanded;
+        int depth = depthFrontier >= 0 ? depths.size() : -1;
+        long remaining = depth >= 0 ? Math.max(0, depthFrontier - (expanded - depthExpanded)) : 0;
+        listener.accept(new SolverProgress(now - startWall, depth, depthFrontier, expanded, remaining, rate, null));
+    }
+
+    /**
+     * Hands a notice to the listener at once, with the counters as they are.
+     * @param notice the message
+     */
+    private void tell(String notice) {
+        if (listener != null) {
+            int depth = depthFrontier >= 0 ? depths.size() : -1;
+            long remaining = depth >= 0 ? Math.max(0, depthFrontier - (expanded - depthExpanded)) : 0;
+            listener.accept(new SolverProgress(System.nanoTime() - startWall, depth, depthFrontier, expanded,
+                    remaining, 0, notice));
+        }
+    }
+
+    /**
+     * Ends the search.
+     * @param total the final total count
+     * @param unique the final unique count
+     * @param peakVisited the most configurations held in the visited set at once
+     */
+    void finish(long total, long unique, long peakVisited) {
+        closeDepth(total, unique);
+        this.total = total;
+        this.unique = unique;
+        this.peakVisited = peakVisited;
+        long timed = neighborNanos + hashingNanos;
+        long neighborShare = timed == 0 ? untimedNanos : Math.round((double) untimedNanos * neighborNanos / timed);
+        this.neighborNanos += neighborShare;
+        this.hashingNanos += untimedNanos - neighborShare;
+        this.untimedNanos = 0;
+        this.wallNanos = System.nanoTime() - startWall;
+        this.cpuNanos = cpuTime() - startCpu;
+    }
+
+    /**
+     * Notes that the solution was read from a {@link SolutionCache} instead of being
+     * searched for, so there are no counts to report.
+     */
+    void cached() {
+        cached = true;
+    }
+
+    private void closeDepth(long total, long unique) {
+        if (depthFrontier >= 0) {
+            long generated = total - depthTotal;
+            depths.add(new Depth(depths.size(), depthFrontier, generated, generated - (unique - depthUnique)));
+            depthFrontier = -1;
+        }
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Was the solution read from a cache instead of being searched for?
+     * @return true if no search was run, so every count is 0
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getUnique() {
+        return unique;
+    }
+
+    public long getExpanded() {
+        return expanded;
+    }
+
+    public long getPeakVisited() {
+        return peakVisited;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getNeighborNanos() {
+        return neighborNanos;
+    }
+
+    public long getHashingNanos() {
+        return hashingNanos;
+    }
+
+    /**
+     * Returns the wall time not spent on neighbors or hashing: queue work and everything else.
+     * @return the remaining wall time in nanoseconds
+     */
+    public long getQueueNanos() {
+        return Math.max(0, wallNanos - neighborNanos - hashingNanos);
+    }
+
+    /**
+     * Returns the configurations expanded per second of wall time.
+     * @return the expansion rate
+     */
+    public double getExpansionsPerSecond() {
+        return wallNanos == 0 ? 0 : expanded * 1e9 / wallNanos;
+    }
+
+    /**
+     * Returns the depths the search reached, in order.
+     * @return the per-depth statistics (empty for searches that do not go depth by depth)
+     */
+    public List<Depth> getDepths() {
+        return Collections.unmodifiableList(depths);
+    }
+
+    /**
+     * Returns the changes of the visited set's representation, in order.
+     * @return the switches (empty if the visited set kept its first representation)
+     */
+    public List<Switch> getSwitches() {
+        return Collections.unmodifiableList(switches);
+    }
+
+    /**
+     * Returns what the search had to tell besides its result, in order.
+     * @return the notices (empty if there were none)
+     */
+    public List<String> getNotices() {
+        return Collections.unmodifiableList(notices);
+    }
+
+    /**
+     * Returns the statistics as a JSON object.
+     * @return the JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"cached\":").append(cached)
+                .append(",\"total\":").append(total)
+                .append(",\"unique\":").append(unique)
+                .append(",\"expanded\":").append(expanded)
+                .append(",\"peakVisited\":").append(peakVisited)
+                .append(",\"expansionsPerSecond\":").append(format(getExpansionsPerSecond()))
+                .append(",\"wallNanos\":").append(wallNanos)
+                .append(",\"cpuNanos\":").append(cpuNanos)
+                .append(",\"neighborNanos\":").append(neighborNanos)
+                .append(",\"hashingNanos\":").append(hashingNanos)
+                .append(",\"queueNanos\":").append(getQueueNanos())
+                .append(",\"depths\":[");
+        for (Depth depth : depths) {
+            if (depth.depth() > 0) {
+                json.append(',');
+            }
+            json.append("{\"depth\":").append(depth.depth())
+                    .append(",\"frontier\":").append(depth.frontier())
+                    .append(",\"generated\":").append(depth.generated())
+                    .append(",\"duplicates\":").append(depth.duplicates())
+                    .append(",\"duplicateRatio\":").append(format(depth.duplicateRatio()))
+                    .append('}');
+        }
+        json.append("],\"switches\":[");
+        for (int i = 0; i < switches.size(); i++) {
+            Switch change = switches.get(i);
+            json.append(i == 0 ? "{" : ",{")
+                    .append("\"representation\":\"").append(change.representation())
+                    .append("\",\"depth\":").append(change.depth())
+                    .append(",\"states\":").append(change.states())
+                    .append(",\"bytesPerState\":").append(change.bytesPerState())
+                    .append(",\"projectedBytes\":").append(change.projectedBytes())
+                    .append(",\"limitBytes\":").append(change.limitBytes())
+                    .append('}');
+        }
+        json.append("],\"notices\":[");
+        for (int i = 0; i < notices.size(); i++) {
+            json.append(i == 0 ? "\"" : ",\"").append(SolverOptions.escape(notices.get(i))).append('"');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Returns the statistics as a report for the solver programs.
+     * @return the report, one line per depth after the summary
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Expanded: ").append(expanded)
+                .append(String.format(Locale.ROOT, " (%.0f/s)", getExpansionsPerSecond()))
+                .append(", peak visited: ").append(peakVisited).append('\n');
+        report.append(String.format(Locale.ROOT,
+                "Time: %.1f ms wall, %.1f ms cpu (neighbors %.1f ms, hashing %.1f ms, queue %.1f ms)",
+                wallNanos / 1e6, cpuNanos / 1e6, neighborNanos / 1e6, hashingNanos / 1e6, getQueueNanos() / 1e6));
+        for (Depth depth : depths) {
+            report.append(String.format(Locale.ROOT, "%nDepth %d: frontier %d, generated %d, duplicates %d (%.1f%%)",
+                    depth.depth(), depth.frontier(), depth.generated(), depth.duplicates(),
+                    100 * depth.duplicateRatio()));
+        }
+        return report.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
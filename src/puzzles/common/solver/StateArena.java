@@ -0,0 +1,161 @@
+package puzzles.common.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The append-only store of every configuration a search has discovered.
+ * <p>
+ *     Each configuration gets the next number when it is added, and its parent is kept
+ *     as a number in an int array, so no configuration holds on to the one it came from.
+ *     Because numbers are handed out in discovery order, a breadth-first frontier is
+ *     just the range of numbers that have not been expanded yet. Looking a configuration
+ *     up goes through an open-addressing table of numbers (linear probing) using the
+ *     configuration's own hashCode and equals.
+ * </p>
+ *
+ * @author Ashrith V. Mudundi
+ */
+class StateArena {
+    /** returned by {@link #add(Configuration, int)} for a configuration already in the arena */
+    static final int PRESENT = -1;
+    /** the parent of the start configuration */
+    static final int NO_PARENT = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.7;
+
+    private Configuration[] states = new Configuration[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY * 2]; // number + 1, 0 for an empty slot
+    private int size;
+
+    /**
+     * Adds a configuration unless an equal one is already in the arena.
+     * @param config the configuration
+     * @param parent the number of the configuration it was reached from
+     * @return the new configuration's number, or PRESENT
+     */
+    int add(Configuration config, int parent) {
+        if (size + 1 > slots.length * MAX_LOAD) {
+            rehash();
+        }
+        int mask = slots.length - 1;
+        int slot = spread(config.hashCode()) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (states[entry - 1].equals(config)) {
+                return PRESENT;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == states.length) {
+            int capacity = size + (size >> 1);
+            states = Arrays.copyOf(states, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        int id = size++;
+        states[id] = config;
+        parents[id] = parent;
+        slots[slot] = id + 1;
+        return id;
+    }
+
+    /**
+     * Is an equal configuration already in the arena?
+     * @param config the configuration
+     * @return true if it is
+     */
+    boolean contains(Configuration config) {
+        int mask = slots.length - 1;
+        int slot = spread(config.hashCode()) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (states[entry - 1].equals(config)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of configurations in the arena.
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Estimates the heap the arena takes up.
+     * @param configurationBytes the bytes each configuration takes up apart from what it
+     * shares with the others
+     * @return the bytes held by the arrays and the configurations
+     */
+    long footprint(long configurationBytes) {
+        return (long) states.length * ObjectSizes.REFERENCE + parents.length * 4L + slots.length * 4L
+                + size * configurationBytes;
+    }
+
+    /**
+     * Get a configuration by its number.
+     * @param id the number
+     * @return the configuration
+     */
+    Configuration get(int id) {
+        return states[id];
+    }
+
+    /**
+     * Get the number of the configuration another one was reached from.
+     * @param id the configuration's number
+     * @return the parent's number, or NO_PARENT for the start
+     */
+    int parent(int id) {
+        return parents[id];
+    }
+
+    /**
+     * Rebuilds the path from the start to a configuration in time linear in its length.
+     * @param id the number of the last configuration on the path
+     * @return the path, starting with the start configuration
+     */
+    List<Configuration> path(int id) {
+        int length = 0;
+        for (int step = id; step != NO_PARENT; step = parents[step]) {
+            length++;
+        }
+        Configuration[] path = new Configuration[length];
+        for (int step = id; step != NO_PARENT; step = parents[step]) {
+            path[--length] = states[step];
+        }
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /**
+     * Spreads the high bits of a hash code down, since the table only uses the low ones.
+     * @param hash the hash code
+     * @return the spread hash
+     */
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Doubles the slot table and puts every configuration back in.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(states[id].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+}
@@ -9,28 +9,39 @@ package puzzles.tilt.gui;
  */
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import puzzles.common.Coordinates;
+import puzzles.common.ModelEvent;
 import puzzles.common.Observer;
 import puzzles.tilt.model.TiltModel;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class TiltGUI extends Application implements Observer<TiltModel, String> {
+public class TiltGUI extends Application implements Observer<TiltModel, ModelEvent<Character>> {
     private TiltModel model;
     private GridPane gridPane;
     private Label statusLabel;
+    private ProgressBar hintBar;
+    /** the tiles on the grid, by row and column */
+    private ImageView[][] tiles = new ImageView[0][0];
+    /** the image of every kind of tile, loaded once */
+    private final Map<Character, Image> images = new HashMap<>();
 
     /**
      * Initialize the GUI.
@@ -42,6 +53,7 @@ public class TiltGUI extends Application implements Observer<TiltModel, String>
         model = new TiltModel(); // Your model initialization here
         model.loadBoardFromFile(filename); // Load the board file
         model.addObserver(this);
+        model.setCallbackExecutor(Platform::runLater);
         gridPane = new GridPane();
     }
 
@@ -98,7 +110,7 @@ public class TiltGUI extends Application implements Observer<TiltModel, String>
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        updateGrid();
+        buildGrid(model.getCells());
     }
 
     /**
@@ -113,25 +125,31 @@ public class TiltGUI extends Application implements Observer<TiltModel, String>
         Button btnLoad = new Button("Load");
         Button btnReset = new Button("Reset");
         Button btnHint = new Button("Hint");
+        Button btnSolve = new Button("Solve");
 
         btnLoad.setOnAction(this::handleLoad);
         btnReset.setOnAction(e -> model.reset());
-        btnHint.setOnAction(e -> model.getHintDirection());
+        btnHint.setOnAction(e -> model.getHintDirectionAsync());
+        btnSolve.setOnAction(e -> model.playSolutionAsync());
 
-        controls.getChildren().addAll(btnLoad, btnReset, btnHint);
+        controls.getChildren().addAll(btnLoad, btnReset, btnHint, btnSolve);
 
         return controls;
     }
 
     /**
-     * Create the status pane with a label for messages.
+     * Create the status pane with a label for messages and a bar that shows how far a
+     * hint search has got.
      * @return the status pane
      */
     private HBox createStatusPane() {
-        HBox statusPane = new HBox();
+        HBox statusPane = new HBox(10);
         statusPane.setAlignment(Pos.CENTER);
         statusLabel = new Label("Welcome to Tilt!");
-        statusPane.getChildren().add(statusLabel);
+        hintBar = new ProgressBar(0);
+        hintBar.setVisible(false);
+        hintBar.managedProperty().bind(hintBar.visibleProperty());
+        statusPane.getChildren().addAll(statusLabel, hintBar);
 
         return statusPane;
     }
@@ -151,9 +169,10 @@ public class TiltGUI extends Application implements Observer<TiltModel, String>
     }
 
     /**
-     * Update the grid with the current board.
+     * Rebuild the grid for a whole board, which may be of another size.
+     * @param board every tile of the board
      */
-    private void updateGrid() {
+    private void buildGrid(Map<Coordinates, Character> board) {
         gridPane.getChildren().clear();
         gridPane.getColumnConstraints().clear();
         gridPane.getRowConstraints().clear();
@@ -162,16 +181,24 @@ public class TiltGUI extends Application implements Observer<TiltModel, String>
         gridPane.setHgap(5);
         gridPane.setVgap(5);
 
+        int size = board.keySet().stream().mapToInt(Coordinates::row).max().orElse(-1) + 1;
+        tiles = new ImageView[size][size];
+        for (Map.Entry<Coordinates, Character> tile : board.entrySet()) {
+            ImageView imageView = new ImageView(getTileImage(tile.getValue()));
+            imageView.setFitWidth(50);
+            imageView.setFitHeight(50);
+            tiles[tile.getKey().row()][tile.getKey().col()] = imageView;
+            gridPane.add(imageView, tile.getKey().col(), tile.getKey().row());
+        }
+    }
 
-        for (int row = 0; row < model.getDimension(); row++) {
-            for (int col = 0; col < model.getDimension(); col++) {
-                char tile = model.getTileAt(row, col);
-                Image image = getTileImage(tile);
-                ImageView imageView = new ImageView(image);
-                imageView.setFitWidth(50);
-                imageView.setFitHeight(50);
-                gridPane.add(imageView, col, row);
-            }
+    /**
+     * Redraw only the tiles that changed.
+     * @param changed the tiles that changed, with what they hold now
+     */
+    private void updateGrid(Map<Coordinates, Character> changed) {
+        for (Map.Entry<Coordinates, Character> tile : changed.entrySet()) {
+            tiles[tile.getKey().row()][tile.getKey().col()].setImage(getTileImage(tile.getValue()));
         }
     }
 
@@ -181,35 +208,46 @@ public class TiltGUI extends Application implements Observer<TiltModel, String>
      * @return the image
      */
     private Image getTileImage(char tile) {
-        String imagePath = switch (tile) {
-            case 'B' -> "blue.png";
-            case 'G' -> "green.png";
-            case 'O' -> "hole.png";
-            case '*' -> "block.png";
-            case '.' -> "empty.png";
-            default -> null;
-        };
-        return new Image("file:src/puzzles/tilt/gui/resources/" + imagePath);
+        return images.computeIfAbsent(tile, kind -> {
+            String imagePath = switch (kind) {
+                case 'B' -> "blue.png";
+                case 'G' -> "green.png";
+                case 'O' -> "hole.png";
+                case '*' -> "block.png";
+                case '.' -> "empty.png";
+                default -> null;
+            };
+            return new Image("file:src/puzzles/tilt/gui/resources/" + imagePath);
+        });
     }
 
     /**
-     * Update the view.
+     * Update the view. A burst of moves comes as one event, and only the tiles it
+     * changed are redrawn.
      * @param tiltModel the model
-     * @param message the message
+     * @param event what happened, with the tiles that changed
      */
     @Override
-    public void update(TiltModel tiltModel, String message) {
-        if (message.equals(TiltModel.LOADED)) {
-            statusLabel.setText("Puzzle loaded successfully!");
-        } else if (message.equals(TiltModel.LOAD_FAILED)) {
-            statusLabel.setText("Failed to load puzzle.");
+    public void update(TiltModel tiltModel, ModelEvent<Character> event) {
+        if (event.wholeBoard()) {
+            buildGrid(event.changed());
         } else {
-            statusLabel.setText(message);
+            updateGrid(event.changed());
+        }
+        if (event.kind() == ModelEvent.Kind.HINT_PROGRESS) {
+            if (model.getHintProgress() != null) {
+                hintBar.setVisible(true);
+                hintBar.setProgress(model.getHintFraction());
+                statusLabel.setText("Searching for a hint: " + model.getHintProgress());
+            }
+            return;
         }
-        if(model.gameOver()){
-            statusLabel.setText("Solved!");
+        hintBar.setVisible(false);
+        switch (event.kind()) {
+            case LOADED -> statusLabel.setText("Puzzle loaded successfully!");
+            case SOLVED -> statusLabel.setText("Solved!");
+            default -> statusLabel.setText(event.message());
         }
-        updateGrid();
     }
 
     /**
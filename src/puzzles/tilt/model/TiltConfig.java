@@ -13,16 +13,32 @@ package puzzles.tilt.model;
  */
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.PackedConfiguration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Consumer;
 
-public class TiltConfig implements Configuration {
+public class TiltConfig implements PackedConfiguration {
     private final Character[][] board;//[row][column]
     private final int[] expected_count;//[number of green=0, number of blue balls]
     private final int[] current_count = {0,0};//[number of green, number of blue balls]
+    private int[] symmetries;//the symmetries of the walls and holes other than the identity, shared by the puzzle
     public TiltConfig(Character[][] board,int[] expected_count) {
+        this(board, expected_count, null);
+    }
+
+    /**
+     * Creates a configuration of a puzzle whose symmetries are already known
+     * @param board the board of the configuration
+     * @param expected_count the number of green and blue balls
+     * @param symmetries the symmetries of the layout, or null to find them when needed
+     */
+    private TiltConfig(Character[][] board, int[] expected_count, int[] symmetries) {
         this.board = board;
         this.expected_count = expected_count;
+        this.symmetries = symmetries;
         for (Character[] characters : this.board) {
             for (int j = 0; j < this.board.length; j++) {
                 if (characters[j] == 'G') {
@@ -189,30 +205,253 @@ public class TiltConfig implements Configuration {
      */
     @Override
     public Collection<Configuration> getNeighbors() {
-        Collection<Configuration> neighbors = new HashSet<>(List.of());//HashSet is used to avoid duplicates
-        Character[][] temp_board = tilt_left(this.board);
-        TiltConfig left_tiltConfig = new TiltConfig(temp_board, this.expected_count);
-        if(left_tiltConfig.isValid()){
-            neighbors.add(left_tiltConfig);
-        }
-        temp_board = tilt_right(this.board);
-        TiltConfig right_tiltConfig = new TiltConfig(temp_board, this.expected_count);
-        if(right_tiltConfig.isValid()){
-            neighbors.add(right_tiltConfig);
-        }
-        temp_board = tilt_up(this.board);
-        TiltConfig up_tiltConfig = new TiltConfig(temp_board, this.expected_count);
-        if(up_tiltConfig.isValid()){
-            neighbors.add(up_tiltConfig);
-        }
-        temp_board = tilt_down(this.board);
-        TiltConfig down_tiltConfig = new TiltConfig(temp_board, this.expected_count);
-        if(down_tiltConfig.isValid()){
-            neighbors.add(down_tiltConfig);
-        }
+        Collection<Configuration> neighbors = new HashSet<>();//HashSet is used to avoid duplicates
+        forEachNeighbor(neighbors::add);
         return neighbors;
     }
 
+    /**
+     * Hands the board tilted in each direction to the action, leaving out the tilts
+     * that would drop a blue ball into the hole. Tilts that end in the same board are
+     * handed over once, as {@link #getNeighbors()} would hold them.
+     * @param action what to do with each neighbor
+     */
+    @Override
+    public void forEachNeighbor(Consumer<Configuration> action) {
+        TiltConfig[] tilts = {
+                new TiltConfig(tilt_left(this.board), this.expected_count, this.symmetries),
+                new TiltConfig(tilt_right(this.board), this.expected_count, this.symmetries),
+                new TiltConfig(tilt_up(this.board), this.expected_count, this.symmetries),
+                new TiltConfig(tilt_down(this.board), this.expected_count, this.symmetries)
+        };
+        for (int i = 0; i < tilts.length; i++) {
+            if (tilts[i].isValid() && !sameAsEarlier(tilts, i)) {
+                action.accept(tilts[i]);
+            }
+        }
+    }
+
+    /**
+     * Is a tilted board the same as one tilted in an earlier direction?
+     * @param tilts the boards tilted in every direction
+     * @param i the index of the board
+     * @return true if it was handed over already
+     */
+    private static boolean sameAsEarlier(TiltConfig[] tilts, int i) {
+        for (int j = 0; j < i; j++) {
+            if (tilts[j].equals(tilts[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Walls and holes never move, so only the other cells are packed: one bit per cell
+     * telling whether it holds a ball, followed by one bit per ball telling whether
+     * it is blue.
+     * @return the number of longs needed, or 0 if the board needs more than two
+     */
+    @Override
+    public int packedLongs() {
+        int bits = freeCells() + this.current_count[0] + this.current_count[1];
+        return bits <= Long.SIZE ? 1 : bits <= 2 * Long.SIZE ? 2 : 0;
+    }
+
+    /**
+     * Returns the first 64 bits of the packed board
+     * @return the low bits
+     */
+    @Override
+    public long packLow() {
+        return pack(0);
+    }
+
+    /**
+     * Returns the second 64 bits of the packed board
+     * @return the high bits
+     */
+    @Override
+    public long packHigh() {
+        return pack(1);
+    }
+
+    /**
+     * Rebuilds a board with the same walls and holes from its packed balls
+     * @param low the low bits
+     * @param high the high bits
+     * @return the configuration
+     */
+    @Override
+    public PackedConfiguration unpack(long low, long high) {
+        Character[][] new_board = new Character[board.length][board.length];
+        int bit = 0;
+        int colour = freeCells();//the colour bits follow the occupancy bits
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
+                char cell = board[i][j];
+                if (cell == '*' || cell == 'O') {
+                    new_board[i][j] = cell;
+                } else if (isSet(low, high, bit++)) {
+                    new_board[i][j] = isSet(low, high, colour++) ? 'B' : 'G';
+                } else {
+                    new_board[i][j] = '.';
+                }
+            }
+        }
+        return new TiltConfig(new_board, this.expected_count, this.symmetries);
+    }
+
+    /**
+     * Turning or flipping the board only gives the same puzzle when the walls and holes
+     * end up where they were, so only those symmetries of the square are used. Of the
+     * boards they give, the smallest cell by cell is the canonical one.
+     * @return the canonical board
+     */
+    @Override
+    public Configuration canonicalize() {
+        if (this.symmetries == null) {
+            this.symmetries = symmetries(this.board);
+        }
+        int best = 0;
+        for (int transform : this.symmetries) {
+            if (compare(transform, best) < 0) {
+                best = transform;
+            }
+        }
+        if (best == 0) {
+            return this;
+        }
+        Character[][] new_board = new Character[board.length][board.length];
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
+                new_board[i][j] = cell(this.board, best, i, j);
+            }
+        }
+        return new TiltConfig(new_board, this.expected_count, this.symmetries);
+    }
+
+    /**
+     * Compares the boards two symmetries give, cell by cell
+     * @param first the first symmetry
+     * @param second the second symmetry
+     * @return negative, zero or positive as the first board is smaller, equal or larger
+     */
+    private int compare(int first, int second) {
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
+                int result = Character.compare(cell(this.board, first, i, j), cell(this.board, second, i, j));
+                if (result != 0) {
+                    return result;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the symmetries of the square that leave the walls and holes in place
+     * @param board any board of the puzzle
+     * @return the symmetries, leaving out the identity
+     */
+    private static int[] symmetries(Character[][] board) {
+        int[] found = new int[7];
+        int count = 0;
+        for (int transform = 1; transform < 8; transform++) {
+            boolean same = true;
+            for (int i = 0; same && i < board.length; i++) {
+                for (int j = 0; same && j < board.length; j++) {
+                    same = fixed(cell(board, transform, i, j)) == fixed(board[i][j]);
+                }
+            }
+            if (same) {
+                found[count++] = transform;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Returns the cell that one of the eight symmetries of the square moves to a position
+     * @param board the board
+     * @param transform 0 to 3 turn the board a quarter that many times, 4 to 7 flip it first
+     * @param i the row of the position
+     * @param j the column of the position
+     * @return the cell that ends up there
+     */
+    private static char cell(Character[][] board, int transform, int i, int j) {
+        int last = board.length - 1;
+        if (transform >= 4) {
+            j = last - j;
+        }
+        return switch (transform & 3) {
+            case 0 -> board[i][j];
+            case 1 -> board[last - j][i];
+            case 2 -> board[last - i][last - j];
+            default -> board[j][last - i];
+        };
+    }
+
+    /**
+     * Returns what a cell holds that never moves
+     * @param cell the cell
+     * @return the wall or hole, or '.' for a cell a ball can be on
+     */
+    private static char fixed(char cell) {
+        return cell == '*' || cell == 'O' ? cell : '.';
+    }
+
+    /**
+     * Returns one of the two longs of the packed board
+     * @param wanted 0 for the low long, 1 for the high one
+     * @return the packed bits that belong in that long
+     */
+    private long pack(int wanted) {
+        long packed = 0;
+        int bit = 0;
+        for (Character[] row : board) {//occupancy bits
+            for (char cell : row) {
+                if (cell != '*' && cell != 'O') {
+                    if ((cell == 'G' || cell == 'B') && bit >>> 6 == wanted) {
+                        packed |= 1L << (bit & 63);
+                    }
+                    bit++;
+                }
+            }
+        }
+        for (Character[] row : board) {//colour bits
+            for (char cell : row) {
+                if (cell == 'G' || cell == 'B') {
+                    if (cell == 'B' && bit >>> 6 == wanted) {
+                        packed |= 1L << (bit & 63);
+                    }
+                    bit++;
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the number of cells that are neither walls nor holes
+     * @return the number of cells a ball can be on
+     */
+    private int freeCells() {
+        int free = 0;
+        for (Character[] row : board) {
+            for (char cell : row) {
+                if (cell != '*' && cell != 'O') {
+                    free++;
+                }
+            }
+        }
+        return free;
+    }
+
+    private static boolean isSet(long low, long high, int bit) {
+        return (((bit < Long.SIZE ? low : high) >>> (bit & 63)) & 1) != 0;
+    }
 
     /**
      * Checks if the current configuration is equal to the other configuration
@@ -242,14 +481,27 @@ public class TiltConfig implements Configuration {
      */
     @Override
     public String toString() {
-        StringBuilder result = new StringBuilder();
-        for (Character[] ints : board) {
+        StringBuilder result = new StringBuilder(board.length * (board.length * 2 + 1));
+        try {
+            appendTo(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder does not throw
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes the board row by row.
+     * @param out where to write the board
+     * @throws IOException if it cannot be written
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        for (Character[] row : board) {
             for (int j = 0; j < board[0].length; j++) {
-                result.append(ints[j]);
-                result.append(" ");
+                out.append(row[j]).append(' ');
             }
-            result.append("\n");
+            out.append('\n');
         }
-        return result.toString();
     }
 }
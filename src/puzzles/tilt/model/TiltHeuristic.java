@@ -0,0 +1,93 @@
+package puzzles.tilt.model;
+
+/*
+  A lower bound on the number of tilts left before every green ball is in a hole.
+  Only the walls and holes are taken into account, so the distances are worked out
+  once per board layout and shared by every configuration of the puzzle.
+
+  @author Ashrith V Mudundi
+ */
+
+import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Heuristic;
+
+public class TiltHeuristic implements Heuristic<Configuration> {
+    private static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private final int[][] distance;//[row][column] tilts from the cell to a hole
+
+    /**
+     * Works out the distances for the layout of the given board.
+     * @param config any configuration of the puzzle
+     */
+    public TiltHeuristic(TiltConfig config) {
+        this.distance = holeDistances(config.getBoard());
+    }
+
+    /**
+     * Returns the largest distance of any green ball from a hole. Every tilt moves all
+     * the balls at once, so the ball that is furthest away decides the bound.
+     * @param config the configuration to estimate
+     * @return the lower bound, or UNREACHABLE if a green ball can never reach a hole
+     */
+    @Override
+    public int estimate(Configuration config) {
+        Character[][] board = ((TiltConfig) config).getBoard();
+        int estimate = 0;
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
+                if (board[i][j] == 'G') {
+                    estimate = Math.max(estimate, distance[i][j]);
+                }
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the fewest tilts for a single ball to reach a hole from every cell, in a
+     * relaxed game where a tilt may leave the ball on any cell it slides across.
+     * The real ball stops on one of those cells (the other balls may stop it early),
+     * so the relaxed count never overestimates.
+     * @param board the board whose walls and holes are used
+     * @return the distances, with UNREACHABLE for cells that can never reach a hole
+     */
+    private static int[][] holeDistances(Character[][] board) {
+        int size = board.length;
+        int[][] distance = new int[size][size];
+        for (int[] row : distance) {
+            java.util.Arrays.fill(row, UNREACHABLE);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (board[i][j] == '*' || board[i][j] == 'O') {
+                        continue;
+                    }
+                    int best = distance[i][j];
+                    for (int[] direction : DIRECTIONS) {
+                        int row = i + direction[0];
+                        int col = j + direction[1];
+                        while (row >= 0 && row < size && col >= 0 && col < size && board[row][col] != '*') {
+                            if (board[row][col] == 'O') {
+                                best = 1;
+                                break;
+                            }
+                            if (distance[row][col] != UNREACHABLE) {
+                                best = Math.min(best, distance[row][col] + 1);
+                            }
+                            row += direction[0];
+                            col += direction[1];
+                        }
+                    }
+                    if (best < distance[i][j]) {
+                        distance[i][j] = best;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+}
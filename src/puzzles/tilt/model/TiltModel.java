@@ -10,21 +10,46 @@ package puzzles.tilt.model;
   @author Ashrith V Mudundi
  */
 
+import puzzles.common.Coordinates;
+import puzzles.common.EventBus;
+import puzzles.common.ModelEvent;
 import puzzles.common.Observer;
+import puzzles.common.solver.AStarSolver;
+import puzzles.common.solver.CancellationToken;
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.SolutionCache;
 import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverBudget;
+import puzzles.common.solver.SolverProgress;
+import puzzles.common.solver.SolverResult;
 
 import java.io.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 public class TiltModel {
-    private final List<Observer<TiltModel, String>> observers = new LinkedList<>();
-    public static String LOADED = "loaded";
-    public static String LOAD_FAILED = "load failed";
+    /** hands the model's events, with the tiles that changed, to the views */
+    private final EventBus<TiltModel, Character> events = new EventBus<>(this);
     public static String HINT_PREFIX = "Hint:";
+    /** how long a hint may search before settling for its best guess */
+    private static final Duration HINT_TIMEOUT = Duration.ofSeconds(5);
+    /** the most boards a hint may expand before settling for its best guess */
+    private static final long HINT_MAX_EXPANDED = 2_000_000;
 
     private TiltConfig current_board;
     private TiltConfig backupBoard;
+    private volatile CancellationToken hintToken = new CancellationToken();
+    /** the last request for the background hint search, null if there was none */
+    private volatile CompletableFuture<SolverResult> hintSearch;
+    /** the board the background hint search started from */
+    private volatile TiltConfig hintBoard;
+    /** the latest snapshot of the hint search in progress, null if there is none */
+    private volatile SolverProgress hintProgress;
+    /** delivers the results of background searches to the observers */
+    private Executor callbackExecutor = Runnable::run;
 
     /**
      * Returns the dimension of the board.
@@ -35,21 +60,68 @@ public class TiltModel {
     }
 
     /**
-     * Add an observer to the list of observers.
+     * Add an observer, which is told of every event with the tiles it changed.
      * @param observer the observer to add
      */
-    public void addObserver(Observer<TiltModel, String> observer) {
-        this.observers.add(observer);
+    public void addObserver(Observer<TiltModel, ModelEvent<Character>> observer) {
+        events.subscribe(observer);
     }
 
     /**
-     * Returns the message to be displayed.
-     * @param data the data to be displayed
+     * Sets the executor that hands the results of background hint searches and the
+     * events to the observers. A JavaFX view passes Platform::runLater so that its
+     * update method runs on the application thread, once for every burst of events;
+     * by default every event is handed over at once, on the thread it happened on.
+     * @param callbackExecutor the executor for the observer updates
      */
-    private void alertObservers(String data) {
-        for (var observer : observers) {
-            observer.update(this, data);
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        events.setDispatcher(callbackExecutor);
+    }
+
+    /**
+     * Tells the observers of an event that changes no tiles.
+     * @param kind what happened
+     * @param message the message for the user
+     */
+    private void alertObservers(ModelEvent.Kind kind, String message) {
+        events.publish(ModelEvent.of(kind, message));
+    }
+
+    /**
+     * Get every tile of the board.
+     * @return the tiles by their coordinates, row by row
+     */
+    public Map<Coordinates, Character> getCells() {
+        Character[][] board = current_board.getBoard();
+        Map<Coordinates, Character> cells = new LinkedHashMap<>();
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < board[row].length; col++) {
+                cells.put(new Coordinates(row, col), board[row][col]);
+            }
         }
+        return cells;
+    }
+
+    /**
+     * Makes a move and tells the observers which tiles it changed.
+     * @param next the board after the move
+     * @param message the message for the user
+     */
+    private void moveTo(TiltConfig next, String message) {
+        Character[][] before = current_board.getBoard();
+        Character[][] after = next.getBoard();
+        Map<Coordinates, Character> changed = new LinkedHashMap<>();
+        for (int row = 0; row < after.length; row++) {
+            for (int col = 0; col < after[row].length; col++) {
+                if (!after[row][col].equals(before[row][col])) {
+                    changed.put(new Coordinates(row, col), after[row][col]);
+                }
+            }
+        }
+        current_board = next;
+        events.publish(ModelEvent.cells(next.isSolution() ? ModelEvent.Kind.SOLVED : ModelEvent.Kind.MOVED,
+                message, changed));
     }
 
     /**
@@ -83,9 +155,9 @@ public class TiltModel {
             }
             current_board = new TiltConfig(board,expected_count);
             backupBoard = new TiltConfig(board,expected_count);
-            alertObservers("Loaded: "+filename);
+            events.publish(ModelEvent.board(ModelEvent.Kind.LOADED, "Loaded: "+filename, getCells()));
         } catch (IOException e) {
-            alertObservers(LOAD_FAILED);
+            alertObservers(ModelEvent.Kind.LOAD_FAILED, "Failed to load puzzle.");
         }
     }
 
@@ -94,7 +166,7 @@ public class TiltModel {
      */
     public void reset() {
         current_board = backupBoard;
-        alertObservers("Board Reset.");
+        events.publish(ModelEvent.board(ModelEvent.Kind.RESET, "Board Reset.", getCells()));
     }
 
     /**
@@ -104,65 +176,183 @@ public class TiltModel {
     public void tilt(char c) {
         // Implementation to tilt the board in the specified direction
         // Update currentBoard based on the tilt
-        // Call alertObservers with appropriate message
+        // Call moveTo with appropriate message
         TiltConfig temp_board;
         if(c=='N' || c=='n'){
             temp_board = new TiltConfig(this.current_board.tilt_up(this.current_board.getBoard()),this.current_board.getExpected_count());
             if(temp_board.isValid()){
-                this.current_board = temp_board;
-                alertObservers("Tilted North");
+                moveTo(temp_board, "Tilted North");
             }
             else{
-                alertObservers("Illegal move. Blue ball will fall into the hole");
+                alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Illegal move. Blue ball will fall into the hole");
             }
         }
         else if(c=='S' || c=='s'){
             temp_board = new TiltConfig(this.current_board.tilt_down(this.current_board.getBoard()),this.current_board.getExpected_count());
             if(temp_board.isValid()){
-                this.current_board = temp_board;
-                alertObservers("Tilted South");
+                moveTo(temp_board, "Tilted South");
             }
             else{
-                alertObservers("Illegal move. Blue ball will fall into the hole");
+                alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Illegal move. Blue ball will fall into the hole");
             }
         }
         else if(c=='E' || c=='e'){
             temp_board = new TiltConfig(this.current_board.tilt_right(this.current_board.getBoard()),this.current_board.getExpected_count());
             if(temp_board.isValid()){
-                this.current_board = temp_board;
-                alertObservers("Tilted East");
+                moveTo(temp_board, "Tilted East");
             }
             else{
-                alertObservers("Illegal move. Blue ball will fall into the hole");
+                alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Illegal move. Blue ball will fall into the hole");
             }
         }
         else if(c=='W' || c=='w'){
             temp_board = new TiltConfig(this.current_board.tilt_left(this.current_board.getBoard()),this.current_board.getExpected_count());
             if(temp_board.isValid()){
-                this.current_board = temp_board;
-                alertObservers("Tilted West");
+                moveTo(temp_board, "Tilted West");
             }
             else{
-                alertObservers("Illegal move. Blue ball will fall into the hole");
+                alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Illegal move. Blue ball will fall into the hole");
             }
         }
         else {
-            alertObservers("Invalid tilt");
+            alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Invalid tilt");
         }
     }
 
     /**
-     * Gives the next move as a hint.
+     * Creates the budget of a new hint search, which the next call to
+     * {@link #cancelHint()} cancels.
+     * @return the budget
+     */
+    private SolverBudget hintBudget() {
+        CancellationToken token = new CancellationToken();
+        hintToken = token;
+        return SolverBudget.UNLIMITED.withTimeout(HINT_TIMEOUT)
+                .withMaxExpanded(HINT_MAX_EXPANDED).withCancellation(token);
+    }
+
+    /**
+     * Creates the solver for a hint, which looks in the cache of earlier hints first
+     * if hints are cached.
+     * @param board the board to search from
+     * @return the solver
+     * @see SolutionCache#forHints()
+     */
+    private Solver hintSolver(TiltConfig board) {
+        Solver solver = new AStarSolver(new TiltHeuristic(board));
+        solver.setCache(SolutionCache.forHints());
+        solver.addProgressObserver((searching, progress) -> {
+            hintProgress = progress;
+            alertObservers(ModelEvent.Kind.HINT_PROGRESS, progress.toString());
+        });
+        return solver;
+    }
+
+    /**
+     * Get the latest snapshot of the hint search in progress.
+     * @return the snapshot, or null if no hint is being searched
+     */
+    public SolverProgress getHintProgress() {
+        return hintProgress;
+    }
+
+    /**
+     * Get how much of its budget the hint search in progress has used up: the larger of
+     * its share of the time and its share of the boards it may expand.
+     * @return a number from 0 to 1
+     */
+    public double getHintFraction() {
+        SolverProgress progress = hintProgress;
+        if (progress == null) {
+            return 0;
+        }
+        return Math.min(1, Math.max((double) progress.elapsedNanos() / HINT_TIMEOUT.toNanos(),
+                (double) progress.expanded() / HINT_MAX_EXPANDED));
+    }
+
+    /**
+     * Searches for a solution from the current board within the hint budget.
+     * @return how the search ended
+     */
+    private SolverResult searchHint() {
+        try {
+            return hintSolver(current_board).solve(current_board, hintBudget());
+        } finally {
+            hintProgress = null;
+        }
+    }
+
+    /**
+     * Starts a hint search in the background. A search already under way from the same
+     * board is not restarted: the request is queued behind the earlier ones and gets the
+     * same result after them, so a Solve asked for during a hint search still plays. A
+     * search from an older board is stopped and a new one started. The result is handed
+     * to the observers through the callback executor, unless the board changed in the
+     * meantime.
+     * @param showHint what to do with the result when the board is still the one searched
+     */
+    private void searchHintAsync(Consumer<SolverResult> showHint) {
+        TiltConfig searched = current_board;
+        CompletableFuture<SolverResult> requests = hintSearch;
+        if (requests == null || requests.isDone() || hintBoard != searched) {
+            if (requests != null && !requests.isDone()) {
+                cancelHint();
+            }
+            requests = hintSolver(searched).solveAsync(searched, hintBudget());
+            hintBoard = searched;
+            alertObservers(ModelEvent.Kind.HINT_SEARCHING, "Searching for a hint...");
+        }
+        hintSearch = requests.whenCompleteAsync((result, error) -> {
+            if (hintBoard == searched) {
+                hintProgress = null;
+            }
+            if (current_board != searched) {
+                alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: The board changed, ask again");
+            } else if (error != null) {
+                alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: No hint available");
+            } else {
+                showHint.accept(result);
+            }
+        }, callbackExecutor);
+    }
+
+    /**
+     * Stops the hint search in progress, which then settles for its best guess.
+     */
+    public void cancelHint() {
+        hintToken.cancel();
+    }
+
+    /**
+     * Gives the next move as a hint. If the search runs out of time the hint is
+     * the first move towards the most promising board it found.
      */
     public void getHint() {
-        Solver solver = new Solver();
-        Collection<Configuration> path = solver.solve(current_board);
-        // Using an iterator to access the second configuration in the path
-        Iterator<Configuration> iterator = path.iterator();
-        iterator.next(); // Skip the current configuration
-        Configuration nextStep = iterator.next(); // Get the next step
-        // Display the next step as a hint
-        alertObservers(HINT_PREFIX + "\n" + nextStep.toString());
+        showHint(searchHint());
+    }
+
+    /**
+     * Gives the next move as a hint without waiting for the search.
+     * @see #setCallbackExecutor(Executor)
+     */
+    public void getHintAsync() {
+        searchHintAsync(this::showHint);
+    }
+
+    /**
+     * Shows the next move of a hint search.
+     * @param result how the search ended
+     */
+    private void showHint(SolverResult result) {
+        Configuration nextStep = result.getNextStep();
+        if (nextStep == null) {
+            alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: No hint available");
+        } else if (result.isSolved()) {
+            alertObservers(ModelEvent.Kind.HINT_READY, HINT_PREFIX + "\n" + nextStep.toString());
+        } else {
+            alertObservers(ModelEvent.Kind.HINT_READY,
+                    HINT_PREFIX + " best guess, no solution found in time\n" + nextStep.toString());
+        }
     }
 
     /**
@@ -171,39 +361,82 @@ public class TiltModel {
      * This method is used for the GUI.
      */
     public void getHintDirection(){
-        Solver solver = new Solver();
-        Collection<Configuration> path = solver.solve(current_board);
-        // Using an iterator to access the second configuration in the path
+        showHintDirection(searchHint());
+    }
+
+    /**
+     * Gives the next move as a hint and makes it, without waiting for the search.
+     * @see #setCallbackExecutor(Executor)
+     */
+    public void getHintDirectionAsync(){
+        searchHintAsync(this::showHintDirection);
+    }
+
+    /**
+     * Makes the next move of a hint search and tells the observers which way it tilted.
+     * @param result how the search ended
+     */
+    private void showHintDirection(SolverResult result){
+        String guess = result.isSolved() ? "" : " (best guess)";
         try{
-            Iterator<Configuration> iterator = path.iterator();
-            iterator.next(); // Skip the current configuration
-            Configuration nextStep = iterator.next(); // Get the next step
+            Configuration nextStep = result.getNextStep();
             // Display the next step as a hint
-            TiltConfig temp_board = (TiltConfig) nextStep;
+            TiltConfig temp_board = (TiltConfig) Objects.requireNonNull(nextStep);
             TiltConfig temp_board2 = this.current_board;
-            this.current_board = temp_board;
-            if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_up(current_board.getBoard()))){
-                alertObservers(HINT_PREFIX + "Tilt North");
+            if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_up(temp_board2.getBoard()))){
+                moveTo(temp_board, HINT_PREFIX + "Tilt North" + guess);
             }
-            else if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_down(current_board.getBoard()))){
-                alertObservers(HINT_PREFIX+"Tilt South");
+            else if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_down(temp_board2.getBoard()))){
+                moveTo(temp_board, HINT_PREFIX+"Tilt South" + guess);
             }
-            else if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_left(current_board.getBoard()))){
-                alertObservers(HINT_PREFIX+"Tilt West");
+            else if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_left(temp_board2.getBoard()))){
+                moveTo(temp_board, HINT_PREFIX+"Tilt West" + guess);
             }
-            else if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_right(current_board.getBoard()))){
-                alertObservers(HINT_PREFIX+"Tilt East");
+            else if(Objects.deepEquals(temp_board.getBoard(),temp_board2.tilt_right(temp_board2.getBoard()))){
+                moveTo(temp_board, HINT_PREFIX+"Tilt East" + guess);
             }
             else{
-                alertObservers("Hint: No hint available");
+                alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: No hint available");
             }
         }
         catch (NoSuchElementException | NullPointerException e){
-            alertObservers("Hint: No hint available");
+            alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: No hint available");
         }
 
     }
 
+    /**
+     * Plays the whole solution from the current board, if one is found within the hint
+     * budget.
+     */
+    public void playSolution(){
+        playMoves(searchHint());
+    }
+
+    /**
+     * Plays the whole solution from the current board without waiting for the search.
+     * A view with a callback executor gets the moves as one event.
+     * @see #setCallbackExecutor(Executor)
+     */
+    public void playSolutionAsync(){
+        searchHintAsync(this::playMoves);
+    }
+
+    /**
+     * Makes every move of a solution, one event each.
+     * @param result how the search ended
+     */
+    private void playMoves(SolverResult result){
+        if (!result.isSolved()) {
+            alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: No solution found in time");
+            return;
+        }
+        List<Configuration> path = new ArrayList<>(result.getPath());
+        for (int move = 1; move < path.size(); move++) {
+            moveTo((TiltConfig) path.get(move), "Played move " + move + " of " + (path.size() - 1));
+        }
+    }
+
     /**
      * Checks if the game is over.
      * @return true if the game is over, false otherwise
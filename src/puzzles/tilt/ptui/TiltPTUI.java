@@ -9,13 +9,14 @@ package puzzles.tilt.ptui;
  */
 
 
+import puzzles.common.ModelEvent;
 import puzzles.common.Observer;
 import puzzles.tilt.model.TiltModel;
 
 import java.util.Arrays;
 import java.util.Scanner;
 
-public class TiltPTUI implements Observer<TiltModel, String> {
+public class TiltPTUI implements Observer<TiltModel, ModelEvent<Character>> {
     private final TiltModel model;
     private final Scanner in;
     private boolean gameOn;
@@ -36,22 +37,25 @@ public class TiltPTUI implements Observer<TiltModel, String> {
      * The observed subject calls this method on each observer that has
      * @param model the object that wishes to inform this object
      *                about something that has happened.
-     * @param msg optional data the server model can send to the observer
+     * @param event what happened, with the tiles that changed
      *
      */
     @Override
-    public void update(TiltModel model, String msg) {
+    public void update(TiltModel model, ModelEvent<Character> event) {
         // Implementation to update the view based on model changes
-        if(msg.equals(TiltModel.LOADED)) {
-            System.out.println("Game Loaded");
-            model.displayBoard();
-            return;
-        }else if(msg.equals(TiltModel.LOAD_FAILED)) {
+        String msg = event.message();
+        if(event.kind() == ModelEvent.Kind.LOAD_FAILED) {
             System.out.println("Load Failed");
             return;
-        }else if(msg.startsWith(TiltModel.HINT_PREFIX)){
+        }else if(event.kind() == ModelEvent.Kind.HINT_READY || event.kind() == ModelEvent.Kind.HINT_FAILED){
             System.out.println(msg);
             return;
+        }else if(event.kind() == ModelEvent.Kind.HINT_PROGRESS){
+            if (model.getHintProgress() != null) {
+                System.out.printf("Searching for a hint: %.0f%% of the budget, %s%n",
+                        100 * model.getHintFraction(), model.getHintProgress());
+            }
+            return;
         }
         if(model.gameOver()){
             model.displayBoard();
@@ -73,6 +77,7 @@ public class TiltPTUI implements Observer<TiltModel, String> {
     public void run() {
         String msg;
         System.out.println("h(int)              -- hint next move");
+        System.out.println("s(olve)             -- play the whole solution");
         System.out.println("l(oad) filename     -- load new puzzle file");
         System.out.println("t(ilt) {N|S|E|W}    -- tilt the board in the given direction");
         System.out.println("q(uit)              -- quit the game");
@@ -94,6 +99,14 @@ public class TiltPTUI implements Observer<TiltModel, String> {
                         msg = "Game is over, please r(eset) or l(oad) or q(uit)";
                     }
                 }
+                case "s", "S" -> {
+                    if (!model.gameOver()){
+                        model.playSolution();
+                    }
+                    else {
+                        msg = "Game is over, please r(eset) or l(oad) or q(uit)";
+                    }
+                }
                 case "r", "R" -> model.reset();
                 case "l", "L" -> {
                     try {
@@ -5,65 +5,86 @@ package puzzles.tilt.solver;
   Performs a breadth-first search of the puzzle space.
   The puzzle is read from a file whose name is given as a command-line argument.
 
-  Usage: java Tilt filename
+  Usage: java Tilt filename [options]
   @ author Ashrith V Mudundi
  */
 
-import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solution;
 import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverClient;
+import puzzles.common.solver.SolverOptions;
 import puzzles.tilt.model.TiltConfig;
+import puzzles.tilt.model.TiltHeuristic;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.util.Collection;
+import java.io.IOException;
+import java.io.PrintStream;
 
 public class Tilt {
     public static void main(String[] args) throws FileNotFoundException {
+        SolverOptions options = SolverOptions.parse(args);
+        args = options.getArguments();
         if (args.length != 1) {
-            System.out.println("Usage: java Tilt filename");
+            System.out.println("Usage: java Tilt filename " + SolverOptions.USAGE);
         }
-        else {
-            BufferedReader reader= new BufferedReader(new FileReader(args[0]));
+        else if (!SolverClient.forward("tilt", options, System.out)) {
             try {
-                String line = reader.readLine();
-                int size = Integer.parseInt(line);
-                Character[][] board = new Character[size][size];
-                int[] expected_count = new int[2];
-                int i = 0;
-                while (line != null) {
-                    line = reader.readLine();
-                    if(line!=null) {
-                        String[] temp = line.split(" ");
-                        for (int j = 0; j < size; j++) {
-                            board[i][j] = temp[j].charAt(0);
-                            if (board[i][j] == 'B') {
-                                expected_count[1]++;
-                            }
+                solve(args, options, System.out);
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Solves the puzzle in a file and prints the board, the counters and the solution.
+     * @param args [0]: the file holding the puzzle
+     * @param options the solver switches
+     * @param out where to print the solution
+     * @throws IOException if the file cannot be read
+     */
+    public static void solve(String[] args, SolverOptions options, PrintStream out) throws IOException {
+        Character[][] board;
+        int[] expected_count = new int[2];
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0]))) {
+            String line = reader.readLine();
+            int size = Integer.parseInt(line);
+            board = new Character[size][size];
+            int i = 0;
+            while (line != null) {
+                line = reader.readLine();
+                if(line!=null) {
+                    String[] temp = line.split(" ");
+                    for (int j = 0; j < size; j++) {
+                        board[i][j] = temp[j].charAt(0);
+                        if (board[i][j] == 'B') {
+                            expected_count[1]++;
                         }
-                        i++;
                     }
+                    i++;
                 }
-                TiltConfig tiltConfig = new TiltConfig(board, expected_count);
-                Solver solver = new Solver();//solver object
-                Collection<Configuration> path = solver.solve(tiltConfig);//path from start to finish
-                System.out.println("File: " + args[0]);
-                System.out.println(tiltConfig);
-                System.out.println("Total configs: " + solver.getTotal());
-                System.out.println("Unique configs: " + solver.getUnique());
-                if (path != null) {
-                    int temp= 0;
-                    for (Configuration config : path) {
-                        System.out.println("Step "+temp+":");
-                        System.out.println(config.toString());
-                        temp++;
-                    }
-                } else {
-                    System.out.println("No solution");
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
         }
+        TiltConfig tiltConfig = new TiltConfig(board, expected_count);
+        Solver solver = options.newSolver(new TiltHeuristic(tiltConfig));//solver object
+        Solution path = options.solve(solver, tiltConfig);//path from start to finish
+        out.println("File: " + args[0]);
+        out.println(tiltConfig);
+        out.println("Total configs: " + solver.getTotal());
+        out.println("Unique configs: " + solver.getUnique());
+        options.report(solver, out);
+        if (path != null) {
+            path.print(out, (step, config, to) -> {
+                to.append("Step ").append(Integer.toString(step)).append(':').append(System.lineSeparator());
+                config.appendTo(to);
+                to.append(System.lineSeparator());
+            });
+        } else {
+            out.println("No solution");
+        }
     }
 }
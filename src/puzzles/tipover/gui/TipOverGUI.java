@@ -1,28 +1,36 @@
 package puzzles.tipover.gui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import puzzles.common.Coordinates;
+import puzzles.common.ModelEvent;
 import puzzles.common.Observer;
 import puzzles.tipover.model.TipOverModel;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
-public class TipOverGUI extends Application implements Observer<TipOverModel, String> {
+public class TipOverGUI extends Application implements Observer<TipOverModel, ModelEvent<String>> {
     private TipOverModel model;
     private GridPane gridPane;
     private Label statusLabel;
+    private ProgressBar hintBar;
+    /** the cells on the grid, by row and column */
+    private Label[][] cells = new Label[0][0];
     @Override
     public void init() {
         List<String> args= getParameters().getRaw();
@@ -30,6 +38,7 @@ public class TipOverGUI extends Application implements Observer<TipOverModel, St
         model = new TipOverModel(); // Your model initialization here
         model.loadBoardFromFile(filename); // Load the board file
         model.addObserver(this);
+        model.setCallbackExecutor(Platform::runLater);
         gridPane = new GridPane();
     }
 
@@ -74,7 +83,7 @@ public class TipOverGUI extends Application implements Observer<TipOverModel, St
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        //updateGrid();
+        buildGrid(model.getCells());
     }
 
     private VBox createControlPane() {
@@ -88,7 +97,7 @@ public class TipOverGUI extends Application implements Observer<TipOverModel, St
 
         btnLoad.setOnAction(this::handleLoad);
         btnReset.setOnAction(e -> model.reset());
-        btnHint.setOnAction(e -> model.moveHint());
+        btnHint.setOnAction(e -> model.moveHintAsync());
 
         controls.getChildren().addAll(btnLoad, btnReset, btnHint);
 
@@ -106,15 +115,22 @@ public class TipOverGUI extends Application implements Observer<TipOverModel, St
     }
 
     private HBox createStatusPane() {
-        HBox statusPane = new HBox();
+        HBox statusPane = new HBox(10);
         statusPane.setAlignment(Pos.CENTER);
         statusLabel = new Label("Welcome to Tilt!");
-        statusPane.getChildren().add(statusLabel);
+        hintBar = new ProgressBar(0);
+        hintBar.setVisible(false);
+        hintBar.managedProperty().bind(hintBar.visibleProperty());
+        statusPane.getChildren().addAll(statusLabel, hintBar);
 
         return statusPane;
     }
 
-    private void updateGrid() {
+    /**
+     * Rebuild the grid for a whole board, which may be of another size.
+     * @param board every cell of the board
+     */
+    private void buildGrid(Map<Coordinates, String> board) {
         gridPane.getChildren().clear();
         gridPane.getColumnConstraints().clear();
         gridPane.getRowConstraints().clear();
@@ -123,29 +139,53 @@ public class TipOverGUI extends Application implements Observer<TipOverModel, St
         gridPane.setHgap(5);
         gridPane.setVgap(5);
 
+        int rows = board.keySet().stream().mapToInt(Coordinates::row).max().orElse(-1) + 1;
+        int columns = board.keySet().stream().mapToInt(Coordinates::col).max().orElse(-1) + 1;
+        cells = new Label[rows][columns];
+        for (Map.Entry<Coordinates, String> cell : board.entrySet()) {
+            Label curr = new Label(cell.getValue());
+            cells[cell.getKey().row()][cell.getKey().col()] = curr;
+            gridPane.add(curr, cell.getKey().col(), cell.getKey().row());
+        }
+    }
 
-        for (int row = 0; row < model.getDimension().get(0); row++) {
-            for (int col = 0; col < model.getDimension().get(1); col++) {
-                String tile = Integer.toString(model.getTileAt(row, col));
-                Label curr = new Label(tile);
-                gridPane.add(curr, col, row);
-            }
+    /**
+     * Redraw only the cells that changed.
+     * @param changed the cells that changed, with what they show now
+     */
+    private void updateGrid(Map<Coordinates, String> changed) {
+        for (Map.Entry<Coordinates, String> cell : changed.entrySet()) {
+            cells[cell.getKey().row()][cell.getKey().col()].setText(cell.getValue());
         }
     }
 
+    /**
+     * Update the view. A burst of moves comes as one event, and only the cells it
+     * changed are redrawn.
+     * @param tipOverModel the model
+     * @param event what happened, with the cells that changed
+     */
     @Override
-    public void update(TipOverModel tipOverModel, String message) {
-        if (message.equals(tipOverModel.LOADED)) {
-            statusLabel.setText("Puzzle loaded successfully!");
-        } else if (message.equals(tipOverModel.LOAD_FAILED)) {
-            statusLabel.setText("Failed to load puzzle.");
+    public void update(TipOverModel tipOverModel, ModelEvent<String> event) {
+        if (event.wholeBoard()) {
+            buildGrid(event.changed());
         } else {
-            statusLabel.setText(message);
+            updateGrid(event.changed());
+        }
+        if (event.kind() == ModelEvent.Kind.HINT_PROGRESS) {
+            if (model.getHintProgress() != null) {
+                hintBar.setVisible(true);
+                hintBar.setProgress(model.getHintFraction());
+                statusLabel.setText("Searching for a hint: " + model.getHintProgress());
+            }
+            return;
         }
-        if(model.gameOver()){
-            statusLabel.setText("Solved!");
+        hintBar.setVisible(false);
+        switch (event.kind()) {
+            case LOADED -> statusLabel.setText("Puzzle loaded successfully!");
+            case SOLVED -> statusLabel.setText("Solved!");
+            default -> statusLabel.setText(event.message());
         }
-        updateGrid();
     }
 
     public static void main(String[] args) {
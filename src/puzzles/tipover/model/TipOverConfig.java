@@ -5,8 +5,11 @@ package puzzles.tipover.model;
 import puzzles.common.Coordinates;
 import puzzles.common.solver.Configuration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.*;
+import java.util.function.Consumer;
 public class TipOverConfig implements Configuration {
 
     private final Coordinates gridSize;
@@ -52,6 +55,20 @@ public class TipOverConfig implements Configuration {
         this.height = newHeight;
     }
 
+    /**
+     * Makes a copy of this configuration, with copies of the crates on its board, that
+     * can be searched while the game keeps moving the tower of this one.
+     * @return the copy
+     */
+    public TipOverConfig copy() {
+        TipOverConfig copy = new TipOverConfig(this.gridSize, this.height, 0, 0, this.goal);
+        copy.towerCoords = this.towerCoords;
+        for (Map.Entry<Coordinates, TipOverConfig> crate : this.board.entrySet()) {
+            copy.board.put(crate.getKey(), crate.getValue().copy());
+        }
+        return copy;
+    }
+
     public TipOverConfig createTippedTower(Coordinates newCoords) {
         return new TipOverConfig(this.gridSize, 1, newCoords.row(),
                 newCoords.col(), this.goal);
@@ -177,49 +194,56 @@ public class TipOverConfig implements Configuration {
     @Override
     public Collection<Configuration> getNeighbors() {
         LinkedList<Configuration> neighbors = new LinkedList<>();
+        forEachNeighbor(neighbors::add);
+        return neighbors;
+    }
 
+    /**
+     * Hands each possible next move to the action, without collecting them
+     * @param action what to do with each neighbor
+     */
+    @Override
+    public void forEachNeighbor(Consumer<Configuration> action) {
         if (isLegal("N")) {
             if (board.containsKey(new Coordinates(this.towerCoords.row() - 1,
                     this.towerCoords.col()))) {
-                neighbors.add(board.get(new Coordinates(this.towerCoords.row() - 1,
+                action.accept(board.get(new Coordinates(this.towerCoords.row() - 1,
                         this.towerCoords.col())));
             } else {
-                neighbors.add(new TipOverConfig(this.gridSize, 1, this.towerCoords.row() -
+                action.accept(new TipOverConfig(this.gridSize, 1, this.towerCoords.row() -
                         this.height, this.towerCoords.col(), this.goal));
             }
         }
         if (isLegal("S")) {
             if (board.containsKey(new Coordinates(this.towerCoords.row() + 1,
                     this.towerCoords.col()))) {
-                neighbors.add(board.get(new Coordinates(this.towerCoords.row() + 1,
+                action.accept(board.get(new Coordinates(this.towerCoords.row() + 1,
                         this.towerCoords.col())));
             } else {
-                neighbors.add(new TipOverConfig(this.gridSize, 1, this.towerCoords.row() +
+                action.accept(new TipOverConfig(this.gridSize, 1, this.towerCoords.row() +
                         this.height, this.towerCoords.col(), this.goal));
             }
         }
         if (isLegal("E")) {
             if (board.containsKey(new Coordinates(this.towerCoords.row(),
                     this.towerCoords.col() + 1))) {
-                neighbors.add(board.get(new Coordinates(this.towerCoords.row(),
+                action.accept(board.get(new Coordinates(this.towerCoords.row(),
                         this.towerCoords.col() + 1)));
             } else {
-                neighbors.add(new TipOverConfig(this.gridSize, 1, this.towerCoords.row()
+                action.accept(new TipOverConfig(this.gridSize, 1, this.towerCoords.row()
                         , this.towerCoords.col() + this.height, this.goal));
             }
         }
         if (isLegal("W")) {
             if (board.containsKey(new Coordinates(this.towerCoords.row(),
                     this.towerCoords.col() - 1))) {
-                neighbors.add(board.get(new Coordinates(this.towerCoords.row(),
+                action.accept(board.get(new Coordinates(this.towerCoords.row(),
                         this.towerCoords.col() - 1)));
             } else {
-                neighbors.add(new TipOverConfig(this.gridSize, 1, this.towerCoords.row()
+                action.accept(new TipOverConfig(this.gridSize, 1, this.towerCoords.row()
                         , this.towerCoords.col() - this.height, this.goal));
             }
         }
-
-        return neighbors;
     }
 
     /**
@@ -235,8 +259,8 @@ public class TipOverConfig implements Configuration {
         if (this.getClass() == other.getClass()) {
             TipOverConfig o = (TipOverConfig) other;
             return (this.gridSize.equals(o.gridSize) && this.board.equals(o.board) &&
-            this.height == o.height && this.towerCoords == o.towerCoords
-                    && this.goal == o.goal);
+            this.height == o.height && this.towerCoords.equals(o.towerCoords)
+                    && this.goal.equals(o.goal));
         }
         return false;
     }
@@ -257,23 +281,33 @@ public class TipOverConfig implements Configuration {
      */
     @Override
     public String toString() {
-        String game = "";
-        game += this.gridSize.col() + "x" + this.gridSize.row() + " grid.\n";
-        game += "Currently at " + this.towerCoords + " with height " + this.height +
-                ". Get to " + this.goal + "\n";
+        StringBuilder game = new StringBuilder();
+        try {
+            appendTo(game);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder does not throw
+        }
+        return game.toString();
+    }
+
+    /**
+     * Writes what the board looks like, cell by cell.
+     * @param out where to write the board
+     * @throws IOException if it cannot be written
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append(Integer.toString(gridSize.col())).append('x').append(Integer.toString(gridSize.row()))
+                .append(" grid.\n");
+        out.append("Currently at ").append(String.valueOf(towerCoords)).append(" with height ")
+                .append(Integer.toString(height)).append(". Get to ").append(String.valueOf(goal)).append('\n');
         for (int r = 0; r < gridSize.row(); r++) {
             for (int c = 0; c < gridSize.col(); c++) {
-                Coordinates currCoords = new Coordinates(r, c);
-                if (board.containsKey(currCoords)) {//adds the height of tower
-                    game += this.board.get(currCoords).getHeight();
-                } else {//puts 0 if no tower at currCoords
-                    game += "0";
-                }
-                game += " ";
+                TipOverConfig tower = board.get(new Coordinates(r, c));
+                //puts 0 if no tower at the cell
+                out.append(tower != null ? Integer.toString(tower.getHeight()) : "0").append(' ');
             }
-            game += "\n";
+            out.append('\n');
         }
-
-        return game;
     }
 }
@@ -2,43 +2,107 @@ package puzzles.tipover.model;
 
 import javafx.util.Pair;
 import puzzles.common.Coordinates;
+import puzzles.common.EventBus;
+import puzzles.common.ModelEvent;
 import puzzles.common.Observer;
+import puzzles.common.solver.CancellationToken;
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.SolutionCache;
 import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverBudget;
+import puzzles.common.solver.SolverProgress;
+import puzzles.common.solver.SolverResult;
 
 import java.io.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class TipOverModel {
-    /** the collection of observers of this model */
-    private final List<Observer<TipOverModel, String>> observers = new LinkedList<>();
+    /** hands the model's events, with the cells that changed, to the observers */
+    private final EventBus<TipOverModel, String> events = new EventBus<>(this);
 
     /** constants */
-    public static String LOADED = "loaded";
-    public static String LOAD_FAILED = "load failed";
     public static String HINT_PREFIX = "Hint:";
+    /** how long a hint may search before settling for its best guess */
+    private static final Duration HINT_TIMEOUT = Duration.ofSeconds(5);
+    /** the most configurations a hint may expand before settling for its best guess */
+    private static final long HINT_MAX_EXPANDED = 2_000_000;
 
     /** the current configuration */
     private TipOverConfig currentConfig;
     private TipOverConfig backupConfig;
+    /** counts the changes of the board, so that a hint can tell it is for an old one */
+    private int boardVersion;
+    private volatile CancellationToken hintToken = new CancellationToken();
+    /** the background hint search in progress, null if there is none */
+    private volatile CompletableFuture<SolverResult> hintSearch;
+    /** the latest snapshot of the hint search in progress, null if there is none */
+    private volatile SolverProgress hintProgress;
+    /** delivers the results of background searches to the observers */
+    private Executor callbackExecutor = Runnable::run;
 
     /**
      * The view calls this to add itself as an observer.
      *
      * @param observer the view
      */
-    public void addObserver(Observer<TipOverModel, String> observer) {
-        this.observers.add(observer);
+    public void addObserver(Observer<TipOverModel, ModelEvent<String>> observer) {
+        events.subscribe(observer);
     }
 
     /**
-     * The model's state has changed (the counter), so inform the view via
-     * the update method
+     * Sets the executor that hands the results of background hint searches and the
+     * events to the observers. A JavaFX view passes Platform::runLater so that its
+     * update method runs on the application thread, once for every burst of events;
+     * by default every event is handed over at once, on the thread it happened on.
+     *
+     * @param callbackExecutor the executor for the observer updates
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        events.setDispatcher(callbackExecutor);
+    }
+
+    /**
+     * The model's state has changed without changing the board, so inform the view
+     * via the update method
      */
-    private void alertObservers(String data) {
-        for (var observer : observers) {
-            observer.update(this, data);
+    private void alertObservers(ModelEvent.Kind kind, String message) {
+        events.publish(ModelEvent.of(kind, message));
+    }
+
+    /**
+     * Get every cell of the board as it is shown: the height of the crate there, 0 if
+     * there is none, marked with a * where the tower stands.
+     *
+     * @return the cells by their coordinates, row by row
+     */
+    public Map<Coordinates, String> getCells() {
+        Map<Coordinates, String> cells = new LinkedHashMap<>();
+        Coordinates size = currentConfig.getGridSize();
+        for (int row = 0; row < size.row(); row++) {
+            for (int col = 0; col < size.col(); col++) {
+                Coordinates coords = new Coordinates(row, col);
+                String height = Integer.toString(getTileAt(row, col));
+                cells.put(coords, coords.equals(currentConfig.getTowerCoords()) ? "*" + height : height);
+            }
         }
+        return cells;
+    }
+
+    /**
+     * Tells the observers of a move, with the cells it changed.
+     *
+     * @param before the cells before the move
+     * @param message the message for the user
+     */
+    private void alertMoved(Map<Coordinates, String> before, String message) {
+        Map<Coordinates, String> changed = new LinkedHashMap<>(getCells());
+        changed.entrySet().removeIf(cell -> cell.getValue().equals(before.get(cell.getKey())));
+        events.publish(ModelEvent.cells(gameOver() ? ModelEvent.Kind.SOLVED : ModelEvent.Kind.MOVED,
+                message, changed));
     }
 
     public void displayBoard() {
@@ -47,7 +111,7 @@ public class TipOverModel {
 
     public boolean checkSolution(){
         if(currentConfig.isSolution()){
-            alertObservers("You win!");
+            alertObservers(ModelEvent.Kind.SOLVED, "You win!");
             return true;
         }
         return false;
@@ -102,13 +166,14 @@ public class TipOverModel {
                         towerRow, towerColumn, goal);
                 changeAllBoard(board);
                 this.backupConfig = this.currentConfig;
-                System.out.println(LOADED + filename);
+                boardVersion++;
+                events.publish(ModelEvent.board(ModelEvent.Kind.LOADED, "Loaded: " + filename, getCells()));
             } catch (Exception e) {
                 e.printStackTrace();
+                alertObservers(ModelEvent.Kind.LOAD_FAILED, "Failed to load puzzle.");
             }
         } catch (FileNotFoundException e) {
-            System.out.println(LOAD_FAILED);
-            System.out.println("File not found");
+            alertObservers(ModelEvent.Kind.LOAD_FAILED, "File not found");
         }
     }
 
@@ -138,7 +203,11 @@ public class TipOverModel {
     }
 
     public void move(String direction) {
+        // a hint search still under way is for the board before the move
+        cancelHint();
+        boardVersion++;
         HashMap<Coordinates, TipOverConfig> newBoard = new HashMap<>();
+        Map<Coordinates, String> before = getCells();
         Coordinates newCoords;
         if (currentConfig.isLegal(direction)) {
             switch (direction) {
@@ -150,7 +219,7 @@ public class TipOverModel {
                         if (this.currentConfig.board.containsKey(newCoords)) {
                             this.currentConfig.tipCoords(newCoords,
                                     this.currentConfig.board.get(newCoords).getHeight());
-                            alertObservers("Moved over north!");
+                            alertMoved(before, "Moved over north!");
                         }
                     } else {
                         newBoard = tipped("y", -1);
@@ -159,7 +228,7 @@ public class TipOverModel {
                                 currentConfig.getTowerCoords().row() - currentConfig.getHeight(),
                                 currentConfig.getTowerCoords().col());
                         this.currentConfig.tipCoords(newCoords, 1);
-                        alertObservers("Tipped over north!");
+                        alertMoved(before, "Tipped over north!");
                     }
                 }
                 case "S" -> {
@@ -170,7 +239,7 @@ public class TipOverModel {
                         if (this.currentConfig.board.containsKey(newCoords)) {
                             this.currentConfig.tipCoords(newCoords,
                                     this.currentConfig.board.get(newCoords).getHeight());
-                            alertObservers("Moved over north!");
+                            alertMoved(before, "Moved over south!");
                         }
                     } else {
                         newBoard = tipped("y", 1);
@@ -179,7 +248,7 @@ public class TipOverModel {
                                 currentConfig.getTowerCoords().row() + currentConfig.getHeight(),
                                 currentConfig.getTowerCoords().col());
                         this.currentConfig.tipCoords(newCoords, 1);
-                        alertObservers("Tipped over south!");
+                        alertMoved(before, "Tipped over south!");
                     }
                 }
                 case "E" -> {
@@ -187,10 +256,10 @@ public class TipOverModel {
                         newCoords = new Coordinates(
                                 currentConfig.getTowerCoords().row(),
                                 currentConfig.getTowerCoords().col() + 1);
-                        alertObservers("Moved over north!");
                         if (this.currentConfig.board.containsKey(newCoords)) {
                             this.currentConfig.tipCoords(newCoords,
                                     this.currentConfig.board.get(newCoords).getHeight());
+                            alertMoved(before, "Moved over east!");
                         }
                     } else {
                         newBoard = tipped("x", 1);
@@ -199,7 +268,7 @@ public class TipOverModel {
                                 currentConfig.getTowerCoords().row(),
                                 currentConfig.getTowerCoords().col() + currentConfig.getHeight());
                         this.currentConfig.tipCoords(newCoords, 1);
-                        alertObservers("Tipped over east!");
+                        alertMoved(before, "Tipped over east!");
                     }
                 }
                 case "W" -> {
@@ -207,10 +276,10 @@ public class TipOverModel {
                         newCoords = new Coordinates(
                                 currentConfig.getTowerCoords().row(),
                                 currentConfig.getTowerCoords().col() - 1);
-                        alertObservers("Moved over west!");
                         if (this.currentConfig.board.containsKey(newCoords)) {
                             this.currentConfig.tipCoords(newCoords,
                                     this.currentConfig.board.get(newCoords).getHeight());
+                            alertMoved(before, "Moved over west!");
                         }
                     } else {
                         newBoard = tipped("x", -1);
@@ -219,62 +288,154 @@ public class TipOverModel {
                                 currentConfig.getTowerCoords().row(),
                                 currentConfig.getTowerCoords().col() - currentConfig.getHeight());
                         this.currentConfig.tipCoords(newCoords, 1);
-                        alertObservers("Tipped over west!");
+                        alertMoved(before, "Tipped over west!");
                     }
                 }
                 default -> {
-                    alertObservers("Invalid move");
+                    alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Invalid move");
                 }
             }
         } else {
-            alertObservers("Illegal move!");
+            alertObservers(ModelEvent.Kind.ILLEGAL_MOVE, "Illegal move!");
         }
     }
 
-    public Configuration getHint() {
+    /**
+     * Creates the budget of a new hint search, which the next call to
+     * {@link #cancelHint()} cancels.
+     * @return the budget
+     */
+    private SolverBudget hintBudget() {
+        CancellationToken token = new CancellationToken();
+        hintToken = token;
+        return SolverBudget.UNLIMITED.withTimeout(HINT_TIMEOUT)
+                .withMaxExpanded(HINT_MAX_EXPANDED).withCancellation(token);
+    }
+
+    /**
+     * Creates the solver for a hint, which looks in the cache of earlier hints first
+     * if hints are cached.
+     * @return the solver
+     * @see SolutionCache#forHints()
+     */
+    private Solver hintSolver() {
         Solver solver = new Solver();
-        Collection<Configuration> path = solver.solve(this.currentConfig);
-        //Finds the next path in the configuartion
-        Iterator<Configuration> iterator = path.iterator();
-        iterator.next();
-        TipOverConfig nextStep = (TipOverConfig) iterator.next();
-
-//        if (nextStep == null) {
-//            alertObservers("Game is not solvable in it's current state");
-//            return null;
-//        }
+        solver.setCache(SolutionCache.forHints());
+        solver.addProgressObserver((searching, progress) -> {
+            hintProgress = progress;
+            alertObservers(ModelEvent.Kind.HINT_PROGRESS, progress.toString());
+        });
+        return solver;
+    }
+
+    /**
+     * Get the latest snapshot of the hint search in progress.
+     * @return the snapshot, or null if no hint is being searched
+     */
+    public SolverProgress getHintProgress() {
+        return hintProgress;
+    }
+
+    /**
+     * Get how much of its budget the hint search in progress has used up: the larger of
+     * its share of the time and its share of the configurations it may expand.
+     * @return a number from 0 to 1
+     */
+    public double getHintFraction() {
+        SolverProgress progress = hintProgress;
+        if (progress == null) {
+            return 0;
+        }
+        return Math.min(1, Math.max((double) progress.elapsedNanos() / HINT_TIMEOUT.toNanos(),
+                (double) progress.expanded() / HINT_MAX_EXPANDED));
+    }
+
+    public Configuration getHint() {
+        SolverResult result;
+        try {
+            result = hintSolver().solve(this.currentConfig, hintBudget());
+        } finally {
+            hintProgress = null;
+        }
+        return showHint(result);
+    }
+
+    /**
+     * Shows the next move of a hint search.
+     * @param result how the search ended
+     * @return the configuration after the move, or null if there is none
+     */
+    private TipOverConfig showHint(SolverResult result) {
+        //Finds the next step of the solution, or of the deepest path if the search gave up
+        TipOverConfig nextStep = (TipOverConfig) result.getNextStep();
+
+        if (nextStep == null) {
+            alertObservers(ModelEvent.Kind.HINT_FAILED, "Game is not solvable in it's current state");
+            return null;
+        }
         //Displays the hint
-        alertObservers(HINT_PREFIX + "\n" + nextStep.getTowerCoords());
+        String guess = result.isSolved() ? "" : " (best guess, no solution found in time)";
+        alertObservers(ModelEvent.Kind.HINT_READY, HINT_PREFIX + guess + "\n" + nextStep.getTowerCoords());
 
         return nextStep;
     }
 
+    /**
+     * Stops the hint search in progress, which then settles for its best guess.
+     */
+    public void cancelHint() {
+        hintToken.cancel();
+    }
+
     public void moveHint() {
-        TipOverConfig nextStep = (TipOverConfig) getHint();
+        applyHint((TipOverConfig) getHint());
+    }
+
+    /**
+     * Searches for a hint in the background and makes its move once it is found.
+     * A request made while a search is under way is ignored, since that search already
+     * makes the move. The search runs on a copy of the board, since the moves change the
+     * board in place; if the board changed in the meantime the hint is dropped.
+     * @see #setCallbackExecutor(Executor)
+     */
+    public void moveHintAsync() {
+        if (hintSearch != null) {
+            return;
+        }
+        int searchedVersion = boardVersion;
+        CompletableFuture<SolverResult> search = hintSolver().solveAsync(this.currentConfig.copy(), hintBudget());
+        hintSearch = search;
+        alertObservers(ModelEvent.Kind.HINT_SEARCHING, "Searching for a hint...");
+        search.whenCompleteAsync((result, error) -> {
+            hintSearch = null;
+            hintProgress = null;
+            if (boardVersion != searchedVersion) {
+                alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: The board changed, ask again");
+            } else if (error != null) {
+                alertObservers(ModelEvent.Kind.HINT_FAILED, "Hint: No hint available");
+            } else {
+                applyHint(showHint(result));
+            }
+        }, callbackExecutor);
+    }
+
+    /**
+     * Makes the move of a hint.
+     * @param nextStep the configuration after the move, or null if there was no hint
+     */
+    private void applyHint(TipOverConfig nextStep) {
         if (nextStep == null) {
             reset();
-            alertObservers("No solutions! Board reset");
+            alertObservers(ModelEvent.Kind.HINT_FAILED, "No solutions! Board reset");
         } else {
-            Coordinates nextCoords = new Coordinates(nextStep.getTowerCoords().row(),
-                    nextStep.getTowerCoords().col());
-
+            Coordinates nextCoords = nextStep.getTowerCoords();
             Coordinates currCoords = this.currentConfig.getTowerCoords();
-            int complexDiff = (int)(Math.atan2(nextCoords.row() - currCoords.row(),
-                    nextCoords.col() - currCoords.col()) * 180 / Math.PI);
-            switch (complexDiff) {
-                case 0:
-                    alertObservers("Applied hint");
-                    move("E");
-                case 90:
-                    alertObservers("Applied hint");
-                    move("N");
-                case 180:
-                    alertObservers("Applied hint");
-                    move("W");
-                case 270:
-                    alertObservers("Applied hint");
-                    move("S");
-            }
+            // rows grow southwards; the tower moves along one axis only
+            String direction = nextCoords.row() < currCoords.row() ? "N"
+                    : nextCoords.row() > currCoords.row() ? "S"
+                    : nextCoords.col() > currCoords.col() ? "E" : "W";
+            alertObservers(ModelEvent.Kind.HINT_READY, "Applied hint");
+            move(direction);
         }
     }
 
@@ -287,8 +448,10 @@ public class TipOverModel {
     }
 
     public void reset() {
+        cancelHint();
+        boardVersion++;
         this.currentConfig = this.backupConfig;
-        alertObservers("Board reset");
+        events.publish(ModelEvent.board(ModelEvent.Kind.RESET, "Board reset", getCells()));
     }
 
     public ArrayList<Integer> getDimension() {
@@ -300,7 +463,8 @@ public class TipOverModel {
     }
 
     public int getTileAt(int row, int col) {
-        return this.currentConfig.board.get(new Coordinates(row, col)).getHeight();
+        TipOverConfig crate = this.currentConfig.board.get(new Coordinates(row, col));
+        return crate != null ? crate.getHeight() : 0;
     }
 
     public static void main(String[] args){
@@ -1,11 +1,12 @@
 package puzzles.tipover.ptui;
 
+import puzzles.common.ModelEvent;
 import puzzles.common.Observer;
 import puzzles.tipover.model.TipOverModel;
 import puzzles.tipover.model.TipOverModel;
 import java.util.*;
 
-public class TipOverPTUI implements Observer<TipOverModel, String> {
+public class TipOverPTUI implements Observer<TipOverModel, ModelEvent<String>> {
     private TipOverModel model;
     private Scanner in;
     private boolean gameOn;
@@ -18,17 +19,24 @@ public class TipOverPTUI implements Observer<TipOverModel, String> {
     }
 
     @Override
-    public void update(TipOverModel model, String message) {
-        if(message.equals(TipOverModel.LOADED)) {
+    public void update(TipOverModel model, ModelEvent<String> event) {
+        String message = event.message();
+        if(event.kind() == ModelEvent.Kind.LOADED) {
             System.out.println("Game Loaded");
             model.displayBoard();
             return;
-        } else if(message.equals(TipOverModel.LOAD_FAILED)) {
+        } else if(event.kind() == ModelEvent.Kind.LOAD_FAILED) {
             System.out.println("Load Failed");
             return;
-        } else if(message.startsWith(TipOverModel.HINT_PREFIX)) {
+        } else if(event.kind() == ModelEvent.Kind.HINT_READY || event.kind() == ModelEvent.Kind.HINT_FAILED) {
             System.out.println(message);
             return;
+        } else if(event.kind() == ModelEvent.Kind.HINT_PROGRESS) {
+            if (model.getHintProgress() != null) {
+                System.out.printf("Searching for a hint: %.0f%% of the budget, %s%n",
+                        100 * model.getHintFraction(), model.getHintProgress());
+            }
+            return;
         }
         if(model.gameOver()){
             model.displayBoard();
@@ -89,8 +97,6 @@ public class TipOverPTUI implements Observer<TipOverModel, String> {
             }
             if(!msg.isEmpty()){
                 System.out.println("Command: "+Arrays.toString(command)+"\n\033[0;1m***"+msg+"***\033[0;0m");
-            } else {
-                update(model, msg);
             }
         }
     }
@@ -1,10 +1,12 @@
 package puzzles.water;
 
-import puzzles.common.solver.Configuration;
+import puzzles.common.solver.Solution;
 import puzzles.common.solver.Solver;
+import puzzles.common.solver.SolverClient;
+import puzzles.common.solver.SolverOptions;
 
+import java.io.PrintStream;
 import java.util.Arrays;
-import java.util.Collection;
 
 /**
  * Main class for the water buckets puzzle.
@@ -17,36 +19,51 @@ public class Water {
      * Run an instance of the water buckets puzzle.
      *
      * @param args [0]: desired amount of water to be collected;
-     *             [1..N]: the capacities of the N available buckets.
+     *             [1..N]: the capacities of the N available buckets;
+     *             plus any of the switches in {@link SolverOptions}.
      */
     public static void main(String[] args) {
+        SolverOptions options = SolverOptions.parse(args);
+        args = options.getArguments();
         if (args.length < 2) {
             System.out.println(
-                    ("Usage: java Water amount bucket1 bucket2 ...")
+                    ("Usage: java Water amount bucket1 bucket2 ... " + SolverOptions.USAGE)
             );
+        } else if (!SolverClient.forward("water", options, System.out)) {
+            solve(args, options, System.out);
+        }
+    }
+
+    /**
+     * Solve an instance of the water buckets puzzle and print the solution.
+     *
+     * @param args [0]: desired amount of water to be collected;
+     *             [1..N]: the capacities of the N available buckets.
+     * @param options the solver switches
+     * @param out where to print the solution
+     */
+    public static void solve(String[] args, SolverOptions options, PrintStream out) {
+        int desired = Integer.parseInt(args[0]);//desired amount of water to be collected
+        int[] buckets = new int[args.length-1];//the capacities of the N available buckets
+        for(int i = 1; i < args.length; i++){
+            buckets[i-1] = Integer.parseInt(args[i]);
+        }
+        int[] start = new int[buckets.length];
+        WaterConfig waterConfig = new WaterConfig(desired, buckets, start);
+        Solver solver = options.newSolver();
+        Solution path = options.solve(solver, waterConfig);//path from start to finish
+        out.println("Amount: " + desired + ", Buckets: " + Arrays.toString(buckets));
+        out.println("Total configs: " + solver.getTotal());
+        out.println("Unique configs: " + solver.getUnique());
+        options.report(solver, out);
+        if (path != null) {
+            path.print(out, (step, config, to) -> {
+                to.append("Step ").append(Integer.toString(step)).append(':');
+                config.appendTo(to);
+                to.append(System.lineSeparator());
+            });
         } else {
-            // TODO YOUR MAIN CODE HERE
-            int desired = Integer.parseInt(args[0]);//desired amount of water to be collected
-            int[] buckets = new int[args.length-1];//the capacities of the N available buckets
-            for(int i = 1; i < args.length; i++){
-                buckets[i-1] = Integer.parseInt(args[i]);
-            }
-            int[] start = new int[buckets.length];
-            WaterConfig waterConfig = new WaterConfig(desired, buckets, start);
-            Solver solver = new Solver();
-            Collection<Configuration> path = solver.solve(waterConfig);//path from start to finish
-            System.out.println("Amount: " + desired + ", Buckets: " + Arrays.toString(buckets));
-            System.out.println("Total configs: " + solver.getTotal());
-            System.out.println("Unique configs: " + solver.getUnique());
-            if (path != null) {
-                int temp= 0;
-                for (Configuration config : path) {
-                    System.out.println("Step "+temp+":"+config.toString());
-                    temp++;
-                }
-            } else {
-                System.out.println("No solution");
-            }
+            out.println("No solution");
         }
     }
 }
\ No newline at end of file
@@ -1,10 +1,14 @@
 package puzzles.water;
 
 import puzzles.common.solver.Configuration;
+import puzzles.common.solver.PackedConfiguration;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Main class for the water buckets puzzle.
@@ -15,7 +19,7 @@ import java.util.List;
  *     Uses Breadth First Search to find the solution.
  * </p>
  */
-public class WaterConfig implements Configuration {
+public class WaterConfig implements PackedConfiguration {
     private final int desired_amount;//desired amount of water to be collected
     private final int[] capacities;//the capacities of the N available buckets
     private final int[] current_amounts;//the current amount of water in each bucket
@@ -55,27 +59,266 @@ public class WaterConfig implements Configuration {
         // Returns a collection of neighboring configurations from the current configuration.
         // For example, if the current configuration is [0, 0], the neighbors are [3, 0]
         // [0, 3], and [0, 5].
-        Collection<Configuration> neighbors = new java.util.HashSet<>(List.of());//HashSet is used to avoid duplicates
+        Collection<Configuration> neighbors = new HashSet<>();//HashSet is used to avoid duplicates
+        forEachNeighbor(neighbors::add);
+        return neighbors;
+    }
+
+    /**
+     * Hands every configuration one move away to the action: emptying or filling a
+     * bucket, or pouring one bucket into another. Moves that change nothing, such as
+     * pouring from an empty bucket, are left out.
+     * @param action what to do with each neighbor
+     */
+    @Override
+    public void forEachNeighbor(Consumer<Configuration> action) {
         for(int i=0;i<this.capacities.length;i++) {
             if (current_amounts[i] != 0) {//if the current amount of water in the bucket is not 0
                 int[] temp = this.current_amounts.clone();
                 temp[i] = 0;
-                neighbors.add(new WaterConfig(this.desired_amount, this.capacities, temp));
+                action.accept(new WaterConfig(this.desired_amount, this.capacities, temp));
             }
             if (current_amounts[i] != this.capacities[i]) {//if the current amount of water in the bucket is not equal to the capacity of the bucket
                 int[] temp = this.current_amounts.clone();
                 temp[i] = this.capacities[i];
-                neighbors.add(new WaterConfig(this.desired_amount, this.capacities, temp));
+                action.accept(new WaterConfig(this.desired_amount, this.capacities, temp));
             }
-            for (int j=0; j<this.capacities.length; j++) {//if the current amount of water in the bucket is not equal to the capacity of the bucket
-                int[] temp = this.current_amounts.clone();
-                int movable= Math.min(temp[i], this.capacities[j] - temp[j]);
-                temp[i] -= movable;
-                temp[j] += movable;
-                neighbors.add(new WaterConfig(this.desired_amount, this.capacities, temp));
+            for (int j=0; j<this.capacities.length; j++) {//pour bucket i into bucket j
+                int movable = Math.min(current_amounts[i], this.capacities[j] - current_amounts[j]);
+                if (i != j && movable > 0) {
+                    int[] temp = this.current_amounts.clone();
+                    temp[i] -= movable;
+                    temp[j] += movable;
+                    action.accept(new WaterConfig(this.desired_amount, this.capacities, temp));
+                }
             }
         }
-        return neighbors;
+    }
+
+    /**
+     * Returns the configurations that lead to this one by undoing a single move:
+     * an emptied bucket may have held any amount, a filled bucket may have held any
+     * smaller amount, and a pour may be undone whenever the source ended up empty or
+     * the destination ended up full.
+     * @return a collection of the configurations that lead to this configuration.
+     */
+    @Override
+    public Collection<Configuration> getPredecessors() {
+        Collection<Configuration> predecessors = new java.util.HashSet<>();//HashSet is used to avoid duplicates
+        for (int i = 0; i < this.capacities.length; i++) {
+            if (current_amounts[i] == 0) {//undo emptying bucket i
+                for (int amount = 1; amount <= this.capacities[i]; amount++) {
+                    predecessors.add(withAmounts(i, amount, i, amount));
+                }
+            }
+            if (current_amounts[i] == this.capacities[i]) {//undo filling bucket i
+                for (int amount = 0; amount < this.capacities[i]; amount++) {
+                    predecessors.add(withAmounts(i, amount, i, amount));
+                }
+            }
+            for (int j = 0; j < this.capacities.length; j++) {
+                if (i == j) {
+                    continue;
+                }
+                if (current_amounts[i] == 0) {//undo pouring all of bucket i into bucket j
+                    int most = Math.min(current_amounts[j], this.capacities[i]);
+                    for (int moved = 1; moved <= most; moved++) {
+                        predecessors.add(withAmounts(i, moved, j, current_amounts[j] - moved));
+                    }
+                }
+                if (current_amounts[j] == this.capacities[j]) {//undo filling bucket j from bucket i
+                    int most = Math.min(this.capacities[j], this.capacities[i] - current_amounts[i]);
+                    for (int moved = 1; moved <= most; moved++) {
+                        predecessors.add(withAmounts(i, current_amounts[i] + moved, j, this.capacities[j] - moved));
+                    }
+                }
+            }
+        }
+        predecessors.remove(this);
+        return predecessors;
+    }
+
+    /**
+     * Returns the goals the bidirectional search works back from: one bucket holds the
+     * desired amount and every other bucket is either empty or full. Solutions with a
+     * second partly filled bucket are still found from the forward side, but not
+     * through the backward search.
+     * @return the goal configurations.
+     */
+    @Override
+    public Collection<Configuration> getGoals() {
+        Collection<Configuration> goals = new java.util.ArrayList<>();
+        int others = this.capacities.length - 1;
+        for (int i = 0; i < this.capacities.length; i++) {
+            if (this.desired_amount > this.capacities[i]) {
+                continue;
+            }
+            for (int mask = 0; mask < (1 << others); mask++) {
+                int[] amounts = new int[this.capacities.length];
+                int bit = 0;
+                for (int j = 0; j < this.capacities.length; j++) {
+                    if (j == i) {
+                        amounts[j] = this.desired_amount;
+                    } else {
+                        amounts[j] = (mask & (1 << bit++)) != 0 ? this.capacities[j] : 0;
+                    }
+                }
+                goals.add(new WaterConfig(this.desired_amount, this.capacities, amounts));
+            }
+        }
+        return goals;
+    }
+
+    /**
+     * The goals leave out the solutions with a second partly filled bucket.
+     * @return false
+     */
+    @Override
+    public boolean hasAllGoals() {
+        return false;
+    }
+
+    /**
+     * Buckets of the same capacity can be swapped without changing the puzzle, so the
+     * canonical configuration has the amounts of such buckets in increasing order.
+     * @return the canonical configuration
+     */
+    @Override
+    public Configuration canonicalize() {
+        int[] amounts = this.current_amounts;
+        for (int i = 0; i < this.capacities.length; i++) {
+            for (int j = i + 1; j < this.capacities.length; j++) {
+                if (this.capacities[i] == this.capacities[j] && amounts[i] > amounts[j]) {
+                    if (amounts == this.current_amounts) {
+                        amounts = this.current_amounts.clone();
+                    }
+                    int temp = amounts[i];
+                    amounts[i] = amounts[j];
+                    amounts[j] = temp;
+                }
+            }
+        }
+        return amounts == this.current_amounts ? this : new WaterConfig(this.desired_amount, this.capacities, amounts);
+    }
+
+    /**
+     * Each bucket is packed into just enough bits for its capacity, filling the first long
+     * before moving on to the second (a bucket is never split between the two).
+     * @return the number of longs the buckets need, or 0 if they need more than two
+     */
+    @Override
+    public int packedLongs() {
+        int word = 0;
+        int bits = 0;
+        for (int capacity : this.capacities) {
+            int width = bitsFor(capacity);
+            if (bits + width > Long.SIZE) {
+                word++;
+                bits = 0;
+            }
+            bits += width;
+        }
+        return word < 2 ? word + 1 : 0;
+    }
+
+    /**
+     * Packs the buckets that go in the first long.
+     * @return the low bits
+     */
+    @Override
+    public long packLow() {
+        return pack(0);
+    }
+
+    /**
+     * Packs the buckets that go in the second long.
+     * @return the high bits
+     */
+    @Override
+    public long packHigh() {
+        return pack(1);
+    }
+
+    /**
+     * Rebuilds a configuration with the same buckets from its packed amounts.
+     * @param low the low bits
+     * @param high the high bits
+     * @return the configuration
+     */
+    @Override
+    public PackedConfiguration unpack(long low, long high) {
+        int[] amounts = new int[this.capacities.length];
+        int word = 0;
+        int bits = 0;
+        for (int i = 0; i < this.capacities.length; i++) {
+            int width = bitsFor(this.capacities[i]);
+            if (bits + width > Long.SIZE) {
+                word++;
+                bits = 0;
+            }
+            long packed = word == 0 ? low : high;
+            amounts[i] = (int) ((packed >>> bits) & ((1L << width) - 1));
+            bits += width;
+        }
+        return new WaterConfig(this.desired_amount, this.capacities, amounts);
+    }
+
+    /**
+     * Packs the amounts of the buckets that belong in one of the two longs.
+     * @param wanted 0 for the low long, 1 for the high one
+     * @return the packed amounts
+     */
+    private long pack(int wanted) {
+        long packed = 0;
+        int word = 0;
+        int bits = 0;
+        for (int i = 0; i < this.capacities.length; i++) {
+            int width = bitsFor(this.capacities[i]);
+            if (bits + width > Long.SIZE) {
+                word++;
+                bits = 0;
+            }
+            if (word == wanted) {
+                packed |= (long) current_amounts[i] << bits;
+            }
+            bits += width;
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the number of bits needed for any amount from 0 to the capacity.
+     * @param capacity the capacity of the bucket
+     * @return the number of bits
+     */
+    private static int bitsFor(int capacity) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(capacity));
+    }
+
+    /**
+     * Returns a copy of this configuration with two buckets set to new amounts.
+     * @param i the first bucket
+     * @param amount_i the new amount in the first bucket
+     * @param j the second bucket (may be the same as the first)
+     * @param amount_j the new amount in the second bucket
+     * @return the new configuration
+     */
+    private WaterConfig withAmounts(int i, int amount_i, int j, int amount_j) {
+        int[] temp = this.current_amounts.clone();
+        temp[i] = amount_i;
+        temp[j] = amount_j;
+        return new WaterConfig(this.desired_amount, this.capacities, temp);
+    }
+
+    /**
+     * Returns the fingerprint of this configuration, which unlike its string includes
+     * the desired amount and the capacities of the buckets.
+     * @return the fingerprint of this configuration.
+     */
+    @Override
+    public long fingerprint() {
+        return Configuration.fingerprint("water " + this.desired_amount + " "
+                + Arrays.toString(this.capacities) + " " + Arrays.toString(this.current_amounts));
     }
 
     /**
@@ -111,4 +354,21 @@ public class WaterConfig implements Configuration {
         // Returns path from start to finish as a string.
         return Arrays.toString(this.current_amounts);
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the amounts in the buckets the way {@link #toString()} does.
+     * @param out where to write the amounts
+     * @throws IOException if they cannot be written
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append('[');
+        for (int i = 0; i < current_amounts.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(Integer.toString(current_amounts[i]));
+        }
+        out.append(']');
+    }
+}